@@ -0,0 +1,36 @@
+package kpss.klogger;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * BenchmarkRunner runs the benchmarks with 1, 4 and 16 threads,
+ * reporting the throughput and the allocation rate of each benchmark.
+ *
+ * @author POUSSE Kilian
+ */
+public class BenchmarkRunner {
+
+    /** Thread counts of the runs */
+    private static final int[] THREADS = { 1, 4, 16 };
+
+    /**
+     * Runs the benchmarks.
+     * @param args an optional regular expression selecting the benchmarks (default: all of them)
+     * @throws RunnerException if a benchmark fails
+     */
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : "kpss\\.klogger\\..*";
+        for(int threads: THREADS) {
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package kpss.klogger;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JsonBenchmark compares the JSON layout with the Jackson serialization of the same log entry.
+ *
+ * @author POUSSE Kilian
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+
+    /** JSON layout */
+    private final JsonLayout layout = new JsonLayout(ExceptionFormat.DEFAULT.copy());
+
+    /** Date format of the entry */
+    private final TimestampFormat timestamp = new TimestampFormat("yyyy-MM-dd HH:mm:ss.SSS");
+
+    /** Jackson serializer */
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /** Serialized log entry */
+    private final LogEvent event = new LogEvent().set(LogLevel.INFO, "kpss.klogger.JsonBenchmark.render",
+            "Request \"GET /\" took 7 ms", System.currentTimeMillis(), 0, "main");
+
+    /**
+     * Per-thread reusable builder.
+     */
+    @State(Scope.Thread)
+    public static class Buffer {
+
+        /** Reusable builder */
+        final StringBuilder out = new StringBuilder(256);
+    }
+
+    /**
+     * Streams the entry with the JSON layout into a reusable builder.
+     * @param buffer the per-thread builder
+     * @return the JSON line
+     */
+    @Benchmark
+    public StringBuilder jsonLayout(Buffer buffer) {
+        buffer.out.setLength(0);
+        layout.render(buffer.out, event, timestamp, null);
+        return buffer.out;
+    }
+
+    /**
+     * Serializes the same fields with Jackson.
+     * @param buffer the per-thread builder
+     * @return the JSON line
+     * @throws JsonProcessingException if the entry cannot be serialized
+     */
+    @Benchmark
+    public String jackson(Buffer buffer) throws JsonProcessingException {
+        buffer.out.setLength(0);
+        timestamp.render(buffer.out, event.getTimestamp(), event.getNanos());
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("timestamp", buffer.out.toString());
+        json.put("level", event.getLevel().name());
+        json.put("thread", event.getThread());
+        json.put("context", event.getContext());
+        json.put("message", event.getMessage());
+        return mapper.writeValueAsString(json);
+    }
+}
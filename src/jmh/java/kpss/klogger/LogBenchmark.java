@@ -0,0 +1,241 @@
+package kpss.klogger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * LogBenchmark measures the logging hot path end to end and each of its parts:
+ * template formatting with and without color, caller context capture, date formatting
+ * and file output. The console is replaced by a null stream so that the terminal
+ * speed does not distort the results.
+ *
+ * @author POUSSE Kilian
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LogBenchmark {
+
+    /** Stack walker used to capture the caller context, as in KLog */
+    private static final StackWalker WALKER = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+    /** Finds the first stack frame outside of KLog, as in KLog */
+    private static final Function<Stream<StackWalker.StackFrame>, Optional<StackWalker.StackFrame>> CALLER =
+            frames -> frames.dropWhile(frame -> frame.getClassName().equals(KLog.class.getName())).findFirst();
+
+    /** Logger of the named logger benchmarks */
+    private static final Logger LOG = KLog.getLogger(LogBenchmark.class);
+
+    /** Original console */
+    private PrintStream console;
+
+    /** Log file of the end-to-end benchmarks */
+    private Path logFile;
+
+    /** Log file of the file output benchmark */
+    private Path outputFile;
+
+    /** File output of the file output benchmark */
+    private FileOutput output;
+
+    /** Compiled default file format */
+    private LogTemplate template;
+
+    /** Compiled default date format */
+    private TimestampFormat timestamp;
+
+    /** Escape codes of the default colors */
+    private ColorScheme colors;
+
+    /** Formatted log entry */
+    private LogEvent event;
+
+    /**
+     * Replaces the console with a null stream and opens the log files.
+     * @throws IOException if a log file cannot be created
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        logFile = Files.createTempFile("klogger-bench", ".log");
+        KLog.setOutPut(logFile.toString());
+
+        outputFile = Files.createTempFile("klogger-bench-output", ".log");
+        output = new ChannelFileOutput(outputFile.toString(), false, 8192, 1000, true);
+
+        template = new LogTemplate("{date} [{type}][{context}]: {message}", false, ExceptionFormat.DEFAULT.copy());
+        timestamp = new TimestampFormat("yyyy-MM-dd HH:mm:ss");
+        Map<String, LogColor> colorMap = new HashMap<>();
+        colorMap.put("INFO", new LogColor(0, 170, 255));
+        colorMap.put("context", LogColor.GRAY);
+        colorMap.put("date", new LogColor(0, 170, 0));
+        colorMap.put("message", LogColor.RESET);
+        colors = new ColorScheme(colorMap);
+        event = new LogEvent().set(LogLevel.INFO, "kpss.klogger.LogBenchmark.format", "Benchmark message",
+                System.currentTimeMillis(), 0, "main");
+    }
+
+    /**
+     * Restores the console and deletes the log files.
+     * @throws IOException if a log file cannot be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        KLog.flush();
+        output.close();
+        System.setOut(console);
+        Files.deleteIfExists(logFile);
+        Files.deleteIfExists(outputFile);
+    }
+
+    /**
+     * Per-thread reusable builder.
+     */
+    @State(Scope.Thread)
+    public static class Buffer {
+
+        /** Reusable builder */
+        final StringBuilder out = new StringBuilder(256);
+    }
+
+    /**
+     * Full log call: caller capture, formatting, console and file output.
+     */
+    @Benchmark
+    public void logEndToEnd() {
+        KLog.log("Benchmark message");
+    }
+
+    /**
+     * Full log call with an explicit context, without stack walk.
+     */
+    @Benchmark
+    public void logWithClassContext() {
+        KLog.log(LogBenchmark.class, "Benchmark message");
+    }
+
+    /**
+     * Full log call with a message pattern and arguments.
+     */
+    @Benchmark
+    public void logParameterized() {
+        KLog.log("Request {} took {} ms", "GET /", 7);
+    }
+
+    /**
+     * Log call of a disabled level.
+     */
+    @Benchmark
+    public void debugDisabled() {
+        KLog.debug("Request {} took {} ms", "GET /", 7);
+    }
+
+    /**
+     * Full log call through a logger held in a field, without stack walk or level lookup.
+     */
+    @Benchmark
+    public void logWithLogger() {
+        LOG.log("Benchmark message");
+    }
+
+    /**
+     * Log call of a disabled level through a logger held in a field.
+     */
+    @Benchmark
+    public void debugDisabledWithLogger() {
+        LOG.debug("Request {} took {} ms", "GET /", 7);
+    }
+
+    /**
+     * Template formatting with color.
+     * @param buffer the per-thread builder
+     * @return the formatted entry
+     */
+    @Benchmark
+    public StringBuilder formatWithColor(Buffer buffer) {
+        buffer.out.setLength(0);
+        template.render(buffer.out, event, timestamp, colors);
+        return buffer.out;
+    }
+
+    /**
+     * Template formatting without color.
+     * @param buffer the per-thread builder
+     * @return the formatted entry
+     */
+    @Benchmark
+    public StringBuilder formatWithoutColor(Buffer buffer) {
+        buffer.out.setLength(0);
+        template.render(buffer.out, event, timestamp, null);
+        return buffer.out;
+    }
+
+    /**
+     * Caller context capture with a single stack walk.
+     * @return the caller context
+     */
+    @Benchmark
+    public String captureContext() {
+        StackWalker.StackFrame frame = WALKER.walk(CALLER).orElse(null);
+        return frame == null ? "" : frame.getClassName() + "." + frame.getMethodName();
+    }
+
+    /**
+     * Cached date formatting.
+     * @param buffer the per-thread builder
+     * @return the formatted date
+     */
+    @Benchmark
+    public StringBuilder formatDate(Buffer buffer) {
+        buffer.out.setLength(0);
+        timestamp.render(buffer.out, System.currentTimeMillis(), 0);
+        return buffer.out;
+    }
+
+    /**
+     * Date formatting parsing the pattern on every call, as a reference.
+     * @return the formatted date
+     */
+    @Benchmark
+    public String formatDateUncached() {
+        return LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+    }
+
+    /**
+     * Buffered file output of a formatted line.
+     * @throws IOException if an I/O error occurs
+     */
+    @Benchmark
+    public void writeToFile() throws IOException {
+        output.write("2024-01-01 00:00:00 [INFO][kpss.klogger.LogBenchmark.writeToFile]: Benchmark message", false);
+    }
+}
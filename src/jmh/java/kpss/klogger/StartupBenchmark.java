@@ -0,0 +1,103 @@
+package kpss.klogger;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * StartupBenchmark measures the time to the first log line in a fresh JVM, and counts the classes
+ * loaded meanwhile, with and without a JSON configuration. Each measurement runs in its own fork,
+ * before anything else touches the logger. The console is replaced by a null stream.
+ * The classes themselves can be listed by running a program logging one line with {@code -Xlog:class+load}.
+ *
+ * @author POUSSE Kilian
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+    /** Minimal JSON configuration */
+    private static final byte[] CONFIG = "{ \"level\": \"INFO\" }".getBytes(StandardCharsets.UTF_8);
+
+    /** Class loading statistics of the JVM */
+    private ClassLoadingMXBean classLoading;
+
+    /** Original console */
+    private PrintStream console;
+
+    /**
+     * Number of classes loaded by the measured call, reported next to its time.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Classes {
+
+        /** Number of classes loaded by the measured call */
+        public long loadedClasses;
+    }
+
+    /**
+     * Replaces the console with a null stream, without touching the logger.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        classLoading = ManagementFactory.getClassLoadingMXBean();
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    /**
+     * Restores the console.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(console);
+    }
+
+    /**
+     * First log call with the default configuration.
+     * @param classes the loaded class counter
+     */
+    @Benchmark
+    public void firstLogLine(Classes classes) {
+        long before = classLoading.getTotalLoadedClassCount();
+        KLog.log("First log line");
+        classes.loadedClasses = classLoading.getTotalLoadedClassCount() - before;
+    }
+
+    /**
+     * First log call after loading a JSON configuration.
+     * @param classes the loaded class counter
+     * @throws IOException if the configuration cannot be loaded
+     */
+    @Benchmark
+    public void firstLogLineWithConfig(Classes classes) throws IOException {
+        long before = classLoading.getTotalLoadedClassCount();
+        KLog.setConfig(new ByteArrayInputStream(CONFIG));
+        KLog.log("First log line");
+        classes.loadedClasses = classLoading.getTotalLoadedClassCount() - before;
+    }
+}
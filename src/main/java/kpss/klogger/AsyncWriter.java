@@ -0,0 +1,206 @@
+package kpss.klogger;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * AsyncWriter hands log entries from the calling threads to a single background writer thread.
+ * Entries are copied into the preallocated slots of a bounded ring buffer: callers claim a
+ * sequence number, fill the slot and publish it, and the writer thread formats and writes the
+ * slots in sequence order. Claiming is a compare-and-set, retried in multi-producer mode; in
+ * single-producer mode it is never retried, and an entry losing its claim to another thread
+ * (e.g. an entry of the logger itself) is written by its caller. No lock is taken on either side.
+ * <p>
+ * Closing the writer marks the claimed sequence number, so no entry can be claimed once the
+ * writer has seen the last claimed one: every accepted entry is written before the writer stops.
+ *
+ * @author POUSSE Kilian
+ */
+class AsyncWriter {
+
+    /** The configuration used to format and write the entries */
+    private final LogConfig config;
+
+    /** Preallocated ring buffer slots */
+    private final LogEvent[] slots;
+
+    /** Sequence number published in each slot, -1 if the slot was never published */
+    private final AtomicLongArray published;
+
+    /** Index mask of the ring buffer (capacity - 1) */
+    private final int mask;
+
+    /** Mark of the claimed sequence number once the writer is closed */
+    private static final long CLOSED = Long.MIN_VALUE;
+
+    /** Multi-producer flag: false if only one thread ever logs */
+    private final boolean multiProducer;
+
+    /** Strategy used while waiting for entries or free slots */
+    private final WaitStrategy waitStrategy;
+
+    /** Policy applied when the ring buffer is full */
+    private final OverflowPolicy overflowPolicy;
+
+    /** Next sequence number to claim, with the {@link #CLOSED} mark once the writer is closed */
+    private final AtomicLong claimed = new AtomicLong();
+
+    /** Next sequence number to consume */
+    private volatile long consumed = 0;
+
+    /** Background writer thread */
+    private final Thread thread;
+
+    /**
+     * Creates and starts an asynchronous writer.
+     * @param config the configuration used to format and write the entries
+     * @param bufferSize the ring buffer capacity, rounded up to a power of two
+     * @param multiProducer true if several threads may log concurrently
+     * @param waitStrategy the strategy used while waiting
+     * @param overflowPolicy the policy applied when the buffer is full
+     */
+    AsyncWriter(LogConfig config, int bufferSize, boolean multiProducer, WaitStrategy waitStrategy, OverflowPolicy overflowPolicy) {
+        int capacity = Integer.highestOneBit(Math.max(2, bufferSize) * 2 - 1);
+        this.config = config;
+        this.slots = new LogEvent[capacity];
+        this.published = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        this.multiProducer = multiProducer;
+        this.waitStrategy = waitStrategy;
+        this.overflowPolicy = overflowPolicy;
+        for(int i = 0; i < capacity; i++) {
+            slots[i] = new LogEvent();
+            published.set(i, -1);
+        }
+
+        thread = new Thread(this::run, "KLogger-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Publishes a log entry to the writer thread.
+     * @param event the log entry, copied into a ring buffer slot
+     * @return false if the writer is closed or the caller is the writer thread, and the entry must be written
+     *         by the caller, true otherwise
+     */
+    boolean publish(LogEvent event) {
+        if(Thread.currentThread() == thread) {
+            // Logged while writing an entry (e.g. by a message supplier): waiting for a slot would wait for itself
+            return false;
+        }
+        long seq = claim(event.getLevel() == LogLevel.DEBUG);
+        if(seq == -1) {
+            config.getMetrics().asyncDropped();
+            return true;
+        }
+        if(seq == -2) {
+            return false;
+        }
+        int index = (int) seq & mask;
+        slots[index].copyFrom(event);
+        published.set(index, seq);
+        return true;
+    }
+
+    /**
+     * Claims the next sequence number, applying the overflow policy if the buffer is full.
+     * @param debug true if the entry is a DEBUG entry
+     * @return the claimed sequence number, -1 if the entry is dropped, -2 if the writer is closed
+     *         or another thread claimed the sequence number in single-producer mode
+     */
+    private long claim(boolean debug) {
+        int capacity = mask + 1;
+        boolean droppable = overflowPolicy == OverflowPolicy.DROP_NEWEST
+                || (overflowPolicy == OverflowPolicy.DROP_DEBUG && debug);
+        int limit = overflowPolicy == OverflowPolicy.DROP_DEBUG && debug ? capacity - capacity / 4 : capacity;
+        while(true) {
+            long seq = claimed.get();
+            if((seq & CLOSED) != 0) {
+                return -2;
+            }
+            if(seq - consumed >= limit) {
+                if(droppable) {
+                    return -1;
+                }
+                waitStrategy.idle();
+            }
+            else if(claimed.compareAndSet(seq, seq + 1)) {
+                return seq;
+            }
+            else if(!multiProducer) {
+                return -2;
+            }
+        }
+    }
+
+    /**
+     * Writer thread loop: writes published slots in order until closed and drained.
+     */
+    private void run() {
+        long next = 0;
+        while(true) {
+            int index = (int) next & mask;
+            if(published.get(index) == next) {
+                try {
+                    config.writeDirect(slots[index]);
+                }
+                catch(RuntimeException e) {
+                    e.printStackTrace();
+                }
+                finally {
+                    // The slot may wait long for its next entry: do not keep the arguments,
+                    // exception and context of the written one reachable meanwhile
+                    slots[index].release();
+                }
+                next++;
+                consumed = next;
+            }
+            else if(claimed.get() == (next | CLOSED)) {
+                return;
+            }
+            else {
+                waitStrategy.idle();
+            }
+        }
+    }
+
+    /**
+     * Waits until every entry published so far has been written.
+     */
+    void drain() {
+        long target = claimed.get() & ~CLOSED;
+        while(consumed < target && thread.isAlive()) {
+            waitStrategy.idle();
+        }
+    }
+
+    /**
+     * Gets the number of entries published but not written yet.
+     * @return the queue depth
+     */
+    long depth() {
+        return Math.max(0, (claimed.get() & ~CLOSED) - consumed);
+    }
+
+    /**
+     * Gets the capacity of the ring buffer.
+     * @return the number of slots
+     */
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Stops accepting entries, writes the pending ones and stops the writer thread.
+     */
+    void close() {
+        claimed.getAndUpdate(seq -> seq | CLOSED);
+        try {
+            thread.join();
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
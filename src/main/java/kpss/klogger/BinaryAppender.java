@@ -0,0 +1,164 @@
+package kpss.klogger;
+
+import java.io.IOException;
+
+/**
+ * BinaryAppender writes log entries to a log file in the compact binary format of {@link BinaryOutput},
+ * for high-volume logs: entries are not rendered when they are logged, but when the file is
+ * decoded by the {@link LogDecoder}. ERROR and CRITICAL entries are handed to the operating
+ * system immediately. Binary log files are not rolled.
+ * An appender can share the output of another one, so that a configuration reload keeps
+ * a binary log file open while changing its level.
+ *
+ * @author POUSSE Kilian
+ */
+class BinaryAppender extends LogAppender {
+
+    /** Layout of the binary appenders, recording every field */
+    static final LogLayout LAYOUT = new RawLayout();
+
+    /** Path to the log file */
+    private final String path;
+
+    /** Settings the log file was opened with */
+    private final FileSettings settings;
+
+    /** Binary output */
+    private final BinaryOutput output;
+
+    /**
+     * Creates a binary appender and opens its log file.
+     * @param name the name of the appender
+     * @param threshold the least severe level written, null to write every entry
+     * @param async true to be written by the writer thread, false to be written by the caller
+     * @param path the path to the log file
+     * @param settings the settings to open the log file with, the rolling settings are ignored
+     * @throws IOException if the file cannot be opened
+     */
+    BinaryAppender(String name, LogLevel threshold, boolean async, String path, FileSettings settings) throws IOException {
+        super(name, LAYOUT, threshold, async);
+        this.path = path;
+        this.settings = settings;
+        this.output = new BinaryOutput(settings.openUnrolled(path));
+    }
+
+    /**
+     * Creates a binary appender sharing the log file of another one.
+     * @param name the name of the appender
+     * @param threshold the least severe level written, null to write every entry
+     * @param async true to be written by the writer thread, false to be written by the caller
+     * @param source the appender whose log file is shared
+     */
+    BinaryAppender(String name, LogLevel threshold, boolean async, BinaryAppender source) {
+        super(name, LAYOUT, threshold, async);
+        this.path = source.path;
+        this.settings = source.settings;
+        this.output = source.output;
+    }
+
+    /**
+     * Checks if the appender writes to a log file opened with given settings.
+     * The append mode is not compared: it only matters when the file is opened.
+     * @param path the path to the log file
+     * @param settings the settings
+     * @return true if the path denotes the same file and the other settings are equal, false otherwise
+     */
+    boolean opens(String path, FileSettings settings) {
+        return this.settings.withAppend(true).equals(settings.withAppend(true)) && FileAppender.sameFile(this.path, path);
+    }
+
+    /**
+     * Gets the path to the log file.
+     * @return the path
+     */
+    String getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the binary output.
+     * @return the output
+     */
+    BinaryOutput getOutput() {
+        return output;
+    }
+
+    /**
+     * Creates an appender with the same settings as this closed one, opening its binary log file again
+     * in append mode or sharing the binary log file of another appender opened again.
+     * @param reopened an appender opened again on the same binary log file, null to open it
+     * @return the new appender
+     * @throws IOException if the file cannot be opened
+     */
+    @Override
+    LogAppender reopen(LogAppender reopened) throws IOException {
+        return reopened instanceof BinaryAppender
+                ? new BinaryAppender(getName(), getThreshold(), isAsync(), (BinaryAppender) reopened)
+                : new BinaryAppender(getName(), getThreshold(), isAsync(), path, settings.withAppend(true));
+    }
+
+    /**
+     * Checks if the entries are encoded from the event instead of being rendered.
+     * @return true
+     */
+    @Override
+    boolean isBinary() {
+        return true;
+    }
+
+    /**
+     * Writes a log entry to the binary log file.
+     * @param line ignored, binary entries are not rendered
+     * @param event the log entry
+     * @return the number of bytes written
+     * @throws java.nio.channels.ClosedChannelException if the output is closed
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    int append(CharSequence line, LogEvent event) throws IOException {
+        return output.write(event, event.getLevel().isAtLeast(LogLevel.ERROR));
+    }
+
+    /**
+     * Writes the buffered entries to the log file.
+     * @param force true to also force them to the storage device
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    void flush(boolean force) throws IOException {
+        output.flush(force);
+    }
+
+    /**
+     * Closes the binary log file.
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    void close() throws IOException {
+        output.close();
+    }
+
+    /**
+     * RawLayout stands for the layout of the binary appenders: it renders nothing,
+     * and reports every field as used so that the context and thread are resolved.
+     */
+    private static final class RawLayout implements LogLayout {
+
+        /** Name of the layout in the configuration */
+        static final String NAME = "binary";
+
+        @Override
+        public boolean uses(int field) {
+            return field >= 0 && field < LogTemplate.FIELDS.length;
+        }
+
+        @Override
+        public String getPattern() {
+            return NAME;
+        }
+
+        @Override
+        public void render(StringBuilder out, LogEvent event, TimestampFormat dateFormat, ColorScheme colors) {
+        }
+    }
+}
@@ -0,0 +1,464 @@
+package kpss.klogger;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * BinaryOutput writes log entries to a log file as compact binary records, to be turned back
+ * into text or JSON by the {@link LogDecoder}. Nothing is rendered when the entry is logged:
+ * the message pattern and its raw arguments are written as they are.
+ * <p>
+ * A file is a sequence of segments, one per time the file was opened. A segment starts with
+ * a header ({@code "KLOG"} and the format version) followed by records, each starting with a tag:
+ * <ul>
+ * <li>{@link #STRING}: a dictionary entry, the id and the UTF-8 text of an interned string.
+ * Contexts, message patterns, thread names, diagnostic context keys and exception class names
+ * and frames are interned on first use, so an entry refers to them by a small id.</li>
+ * <li>{@link #EVENT}: a log entry: the time since the previous entry in nanoseconds, the level
+ * and flags, the context, message pattern and thread, the arguments, then the diagnostic
+ * context fields and the exception if the flags say so, and the {@link #END} byte.</li>
+ * </ul>
+ * An entry record is always the last record of a write, so the file never ends with a zero byte
+ * of a record: the zeros at the end of a memory-mapped file are its unused part, and the file
+ * can be opened again in append mode.
+ * Integers are varints (7 bits per byte, least significant first), zigzag-encoded when they
+ * can be negative. A string reference is 0 for null, 1 for a string written inline (length and
+ * UTF-8 bytes), or the id of a dictionary entry. The dictionary of a segment is bounded: once it is
+ * full, new strings are written inline.
+ *
+ * @author POUSSE Kilian
+ */
+final class BinaryOutput {
+
+    /** Magic bytes starting a segment */
+    static final byte[] MAGIC = { 'K', 'L', 'O', 'G' };
+
+    /** Version of the format */
+    static final int VERSION = 2;
+
+    /** Record tag: dictionary entry */
+    static final int STRING = 1;
+
+    /** Record tag: log entry */
+    static final int EVENT = 2;
+
+    /** Last byte of a log entry record, never 0 */
+    static final int END = 0xFF;
+
+    /** Mask of the level ordinal in the level byte of an entry */
+    static final int LEVEL_MASK = 0x0F;
+
+    /** Flag of the level byte: the entry has an exception */
+    static final int HAS_THROWN = 0x10;
+
+    /** Flag of the level byte: the entry has diagnostic context fields */
+    static final int HAS_MDC = 0x20;
+
+    /** String reference of null */
+    static final int NULL = 0;
+
+    /** String reference of a string written inline */
+    static final int INLINE = 1;
+
+    /** Id of the first dictionary entry of a segment */
+    static final int FIRST_ID = 2;
+
+    /** Argument kind: null */
+    static final int ARG_NULL = 0;
+
+    /** Argument kind: string, the text of an object argument */
+    static final int ARG_STRING = 1;
+
+    /** Argument kind: integer */
+    static final int ARG_LONG = 2;
+
+    /** Argument kind: floating-point number */
+    static final int ARG_DOUBLE = 3;
+
+    /** Maximum number of dictionary entries per segment */
+    static final int MAX_STRINGS = 1 << 16;
+
+    /** Length above which strings are never interned */
+    private static final int MAX_INTERNED_LENGTH = 1024;
+
+    /** Lock guarding the dictionary and the time of the previous entry */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Log file output */
+    private final BufferedFileOutput output;
+
+    /** Dictionary of the current segment */
+    private final Map<String, Integer> strings = new HashMap<>();
+
+    /** Exceptions of the entry being encoded, with their index, to write circular references */
+    private final Map<Throwable, Integer> thrown = new IdentityHashMap<>();
+
+    /** Header and dictionary entries written before the record of the entry */
+    private final Bytes head = new Bytes();
+
+    /** Record of the entry */
+    private final Bytes record = new Bytes();
+
+    /** Time of the previous entry in nanoseconds since the epoch */
+    private long previous = 0;
+
+    /** Segment flag: false until the header of the current segment is written */
+    private boolean started = false;
+
+    /**
+     * Creates a binary output.
+     * @param output the log file output
+     */
+    BinaryOutput(BufferedFileOutput output) {
+        this.output = output;
+    }
+
+    /**
+     * Writes a log entry, preceded by the dictionary entries of the strings it introduces.
+     * After a failed write, a new segment is started so that the file stays decodable.
+     * @param event the log entry
+     * @param urgent true to hand the entry to the operating system immediately
+     * @return the number of bytes written
+     * @throws java.nio.channels.ClosedChannelException if the output is closed
+     * @throws IOException if an I/O error occurs
+     */
+    int write(LogEvent event, boolean urgent) throws IOException {
+        lock.lock();
+        try {
+            head.clear();
+            record.clear();
+            if(!started) {
+                head.put(MAGIC);
+                head.put(VERSION);
+                strings.clear();
+                previous = 0;
+                started = true;
+            }
+            long time = event.getTimestamp() * 1_000_000L + event.getNanos();
+            int flags = event.getLevel().ordinal();
+            if(event.getThrown() != null) {
+                flags |= HAS_THROWN;
+            }
+            if(event.getMdc().size() > 0) {
+                flags |= HAS_MDC;
+            }
+            record.put(EVENT);
+            record.putZigzag(time - previous);
+            record.put(flags);
+            putInterned(event.getContext());
+            putInterned(event.getMessage());
+            putInterned(event.getThread());
+            putArgs(event);
+            ContextMap mdc = event.getMdc();
+            if(mdc.size() > 0) {
+                record.putVarint(mdc.size());
+                for(int i = 0; i < mdc.size(); i++) {
+                    putInterned(mdc.keyAt(i));
+                    putInline(mdc.valueAt(i));
+                }
+            }
+            if(event.getThrown() != null) {
+                thrown.clear();
+                putThrown(event.getThrown());
+                thrown.clear();
+            }
+            record.put(END);
+            head.put(record);
+            int bytes = output.write(head.bytes, head.length, urgent);
+            previous = time;
+            return bytes;
+        }
+        catch(IOException | RuntimeException e) {
+            started = false;
+            throw e;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the arguments of an entry: primitive and boxed numbers as numbers, other objects as text.
+     * @param event the log entry
+     */
+    private void putArgs(LogEvent event) {
+        int count = event.getArgCount();
+        record.putVarint(count);
+        for(int i = 0; i < count; i++) {
+            byte kind = event.getArgKind(i);
+            if(kind == LogEvent.LONG) {
+                record.put(ARG_LONG);
+                record.putZigzag(event.getPrimitiveArg(i));
+                continue;
+            }
+            if(kind == LogEvent.DOUBLE) {
+                record.put(ARG_DOUBLE);
+                record.putLong(event.getPrimitiveArg(i));
+                continue;
+            }
+            Object arg = event.getObjectArg(i);
+            if(arg == null) {
+                record.put(ARG_NULL);
+            }
+            else if(arg instanceof Long || arg instanceof Integer || arg instanceof Short || arg instanceof Byte) {
+                record.put(ARG_LONG);
+                record.putZigzag(((Number) arg).longValue());
+            }
+            else if(arg instanceof Double) {
+                record.put(ARG_DOUBLE);
+                record.putLong(Double.doubleToRawLongBits((Double) arg));
+            }
+            else {
+                record.put(ARG_STRING);
+                record.putUtf8(String.valueOf(arg));
+            }
+        }
+    }
+
+    /**
+     * Writes an exception, its stack trace, its suppressed exceptions and its cause.
+     * An exception already written for the entry is written as its index plus one, 0 otherwise.
+     * @param t the exception
+     */
+    private void putThrown(Throwable t) {
+        Integer index = thrown.get(t);
+        if(index != null) {
+            record.putVarint(index + 1);
+            return;
+        }
+        thrown.put(t, thrown.size());
+        record.putVarint(0);
+        putInterned(ExceptionFormat.className(t));
+        putInline(t.getMessage());
+        StackTraceElement[] trace = t.getStackTrace();
+        record.putVarint(trace.length);
+        for(StackTraceElement frame: trace) {
+            // The class loader and module version are only kept when the frame prints them
+            String text = frame.toString();
+            String loader = frame.getClassLoaderName();
+            String version = frame.getModuleVersion();
+            putInterned(loader != null && text.startsWith(loader + "/") ? loader : null);
+            putInterned(frame.getModuleName());
+            putInterned(version != null && text.contains("@" + version + "/") ? version : null);
+            putInterned(frame.getClassName());
+            putInterned(frame.getMethodName());
+            putInterned(frame.getFileName());
+            record.putZigzag(frame.getLineNumber());
+        }
+        Throwable[] suppressed = t.getSuppressed();
+        record.putVarint(suppressed.length);
+        for(Throwable s: suppressed) {
+            putThrown(s);
+        }
+        record.put(t.getCause() != null ? 1 : 0);
+        if(t.getCause() != null) {
+            putThrown(t.getCause());
+        }
+    }
+
+    /**
+     * Writes a reference to an interned string, adding it to the dictionary on first use.
+     * @param text the string, may be null
+     */
+    private void putInterned(String text) {
+        if(text == null) {
+            record.putVarint(NULL);
+            return;
+        }
+        Integer id = strings.get(text);
+        if(id == null && strings.size() < MAX_STRINGS && text.length() <= MAX_INTERNED_LENGTH) {
+            id = FIRST_ID + strings.size();
+            strings.put(text, id);
+            head.put(STRING);
+            head.putVarint(id);
+            head.putUtf8(text);
+        }
+        if(id == null) {
+            record.putVarint(INLINE);
+            record.putUtf8(text);
+        }
+        else {
+            record.putVarint(id);
+        }
+    }
+
+    /**
+     * Writes a string inline, without interning it.
+     * @param text the string, may be null
+     */
+    private void putInline(String text) {
+        if(text == null) {
+            record.putVarint(NULL);
+            return;
+        }
+        record.putVarint(INLINE);
+        record.putUtf8(text);
+    }
+
+    /**
+     * Writes the buffered records to the log file.
+     * @param force true to also force them to the storage device
+     * @throws IOException if an I/O error occurs
+     */
+    void flush(boolean force) throws IOException {
+        output.flush(force);
+    }
+
+    /**
+     * Flushes and closes the log file.
+     * @throws IOException if an I/O error occurs
+     */
+    void close() throws IOException {
+        output.close();
+    }
+
+    /**
+     * Bytes is a growable byte array the records are encoded into.
+     */
+    private static final class Bytes {
+
+        /** Encoded bytes */
+        private byte[] bytes = new byte[256];
+
+        /** Number of encoded bytes */
+        private int length = 0;
+
+        /**
+         * Removes the encoded bytes.
+         */
+        void clear() {
+            length = 0;
+        }
+
+        /**
+         * Makes room for more bytes.
+         * @param count the number of bytes to add
+         */
+        private void reserve(int count) {
+            if(length + count > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + count));
+            }
+        }
+
+        /**
+         * Appends a byte.
+         * @param b the byte, in the low 8 bits
+         */
+        void put(int b) {
+            reserve(1);
+            bytes[length++] = (byte) b;
+        }
+
+        /**
+         * Appends bytes.
+         * @param b the bytes
+         */
+        void put(byte[] b) {
+            reserve(b.length);
+            System.arraycopy(b, 0, bytes, length, b.length);
+            length += b.length;
+        }
+
+        /**
+         * Appends the bytes of another array.
+         * @param other the array
+         */
+        void put(Bytes other) {
+            reserve(other.length);
+            System.arraycopy(other.bytes, 0, bytes, length, other.length);
+            length += other.length;
+        }
+
+        /**
+         * Appends an unsigned varint.
+         * @param value the value, read as unsigned
+         */
+        void putVarint(long value) {
+            reserve(10);
+            while((value & ~0x7FL) != 0) {
+                bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        /**
+         * Appends a signed varint, zigzag-encoded so that small negative values stay short.
+         * @param value the value
+         */
+        void putZigzag(long value) {
+            putVarint((value << 1) ^ (value >> 63));
+        }
+
+        /**
+         * Appends a long on 8 bytes, most significant first.
+         * @param value the value
+         */
+        void putLong(long value) {
+            reserve(8);
+            for(int shift = 56; shift >= 0; shift -= 8) {
+                bytes[length++] = (byte) (value >>> shift);
+            }
+        }
+
+        /**
+         * Appends a string as its length in bytes and its UTF-8 bytes.
+         * Unpaired surrogates are written as '?'.
+         * @param text the string
+         */
+        void putUtf8(String text) {
+            int size = 0;
+            int count = text.length();
+            for(int i = 0; i < count; i++) {
+                char c = text.charAt(i);
+                if(c < 0x80) {
+                    size++;
+                }
+                else if(c < 0x800) {
+                    size += 2;
+                }
+                else if(Character.isHighSurrogate(c) && i + 1 < count && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    size += 4;
+                    i++;
+                }
+                else if(Character.isSurrogate(c)) {
+                    size++;
+                }
+                else {
+                    size += 3;
+                }
+            }
+            putVarint(size);
+            reserve(size);
+            for(int i = 0; i < count; i++) {
+                char c = text.charAt(i);
+                if(c < 0x80) {
+                    bytes[length++] = (byte) c;
+                }
+                else if(c < 0x800) {
+                    bytes[length++] = (byte) (0xC0 | (c >> 6));
+                    bytes[length++] = (byte) (0x80 | (c & 0x3F));
+                }
+                else if(Character.isHighSurrogate(c) && i + 1 < count && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, text.charAt(++i));
+                    bytes[length++] = (byte) (0xF0 | (cp >> 18));
+                    bytes[length++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    bytes[length++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    bytes[length++] = (byte) (0x80 | (cp & 0x3F));
+                }
+                else if(Character.isSurrogate(c)) {
+                    bytes[length++] = (byte) '?';
+                }
+                else {
+                    bytes[length++] = (byte) (0xE0 | (c >> 12));
+                    bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    bytes[length++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+        }
+    }
+}
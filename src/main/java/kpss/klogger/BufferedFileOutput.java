@@ -0,0 +1,135 @@
+package kpss.klogger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+
+/**
+ * BufferedFileOutput is the base class of the file outputs backed by a byte buffer.
+ * Each thread encodes its log lines in UTF-8 into its own reusable buffer, without
+ * building an intermediate String, and the lock of the output is only held to copy
+ * the encoded line into the buffer of the output. Lines are therefore never interleaved,
+ * while the encoding of concurrent lines runs in parallel.
+ *
+ * @author POUSSE Kilian
+ */
+abstract class BufferedFileOutput extends FileOutput {
+
+    /** Per-thread buffer of the encoded line */
+    private static final ThreadLocal<ByteBuffer> ENCODED = ThreadLocal.withInitial(() -> ByteBuffer.allocate(512));
+
+    @Override
+    int write(CharSequence line, boolean urgent) throws IOException {
+        ByteBuffer encoded = encode(line);
+        return write(encoded.array(), encoded.position(), urgent);
+    }
+
+    /**
+     * Writes encoded bytes as one unit: bytes written concurrently are never interleaved.
+     * @param bytes the array holding the bytes
+     * @param length the number of bytes to write, from the start of the array
+     * @param urgent true to hand the bytes to the operating system immediately
+     * @return the number of bytes written
+     * @throws java.nio.channels.ClosedChannelException if the output is closed
+     * @throws IOException if an I/O error occurs
+     */
+    int write(byte[] bytes, int length, boolean urgent) throws IOException {
+        lock.lock();
+        try {
+            if(closed) {
+                throw new ClosedChannelException();
+            }
+            ByteBuffer buffer = buffer();
+            int offset = 0;
+            while(offset < length) {
+                if(!buffer.hasRemaining()) {
+                    buffer = overflow();
+                }
+                int count = Math.min(buffer.remaining(), length - offset);
+                buffer.put(bytes, offset, count);
+                offset += count;
+            }
+            written(urgent);
+            return length;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Encodes a log line and a line separator in UTF-8 into the buffer of the calling thread.
+     * @param line the log line
+     * @return the buffer of the calling thread, holding the encoded bytes before its position
+     */
+    private static ByteBuffer encode(CharSequence line) {
+        ByteBuffer buffer = ENCODED.get();
+        buffer.clear();
+        int length = line.length();
+        for(int i = 0; i < length; i++) {
+            if(buffer.remaining() < 5) {
+                buffer = grow(buffer);
+            }
+            char c = line.charAt(i);
+            if(c < 0x80) {
+                buffer.put((byte) c);
+            }
+            else if(c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+            else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(line.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, line.charAt(++i));
+                buffer.put((byte) (0xF0 | (cp >> 18)));
+                buffer.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (cp & 0x3F)));
+            }
+            else if(Character.isSurrogate(c)) {
+                buffer.put((byte) '?');
+            }
+            else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        if(!buffer.hasRemaining()) {
+            buffer = grow(buffer);
+        }
+        buffer.put((byte) '\n');
+        return buffer;
+    }
+
+    /**
+     * Replaces the buffer of the calling thread with a buffer twice as large.
+     * @param buffer the full buffer
+     * @return the new buffer, holding the bytes of the full one
+     */
+    private static ByteBuffer grow(ByteBuffer buffer) {
+        ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+        larger.put(buffer.array(), 0, buffer.position());
+        ENCODED.set(larger);
+        return larger;
+    }
+
+    /**
+     * Gets the buffer the next bytes are copied into. Called with the lock held.
+     * @return the current buffer
+     */
+    protected abstract ByteBuffer buffer();
+
+    /**
+     * Makes room in a full buffer. Called with the lock held.
+     * @return the buffer to continue copying into, with free space remaining
+     * @throws IOException if an I/O error occurs
+     */
+    protected abstract ByteBuffer overflow() throws IOException;
+
+    /**
+     * Called after each line is copied. Called with the lock held.
+     * @param urgent true if the line must be handed to the operating system immediately
+     * @throws IOException if an I/O error occurs
+     */
+    protected abstract void written(boolean urgent) throws IOException;
+}
@@ -0,0 +1,47 @@
+package kpss.klogger;
+
+import java.util.Locale;
+
+/**
+ * CallerMode defines for which log entries the caller context (class and method name) is captured.
+ * Capturing the caller walks the stack, which is the most expensive part of a log call.
+ *
+ * @author POUSSE Kilian
+ */
+enum CallerMode {
+
+    /** The caller is captured for every log entry */
+    ALWAYS,
+
+    /** The caller is captured for WARNING entries and above only */
+    WARNING,
+
+    /** The caller is never captured */
+    NEVER;
+
+    /**
+     * Checks if the caller must be captured for a log level.
+     * @param level the log level
+     * @return true if the caller must be captured, false otherwise
+     */
+    boolean captures(LogLevel level) {
+        switch(this) {
+            case ALWAYS:
+                return true;
+            case WARNING:
+                return level.isAtLeast(LogLevel.WARNING);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Parses a caller mode from its configuration name (e.g. "always", "warning", "never").
+     * @param name the configuration name
+     * @return the caller mode
+     * @throws IllegalArgumentException if the name is unknown
+     */
+    static CallerMode of(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,171 @@
+package kpss.klogger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ChannelFileOutput writes log lines to a file through a FileChannel in batches.
+ * Lines are encoded into a reusable direct buffer that is written to the file when
+ * it is full, when an urgent line (ERROR, CRITICAL) is written, or periodically
+ * from a background thread, instead of one write and flush per line.
+ *
+ * @author POUSSE Kilian
+ */
+class ChannelFileOutput extends BufferedFileOutput {
+
+    /** Shared background thread flushing the outputs periodically */
+    private static ScheduledExecutorService flusher = null;
+
+    /** Lock guarding the creation of the flushing thread */
+    private static final ReentrantLock FLUSHER_LOCK = new ReentrantLock();
+
+    /** File channel of the log file */
+    private final FileChannel channel;
+
+    /** Buffer of the pending bytes */
+    private final ByteBuffer buffer;
+
+    /** Immediate flush flag for urgent lines */
+    private final boolean flushUrgent;
+
+    /** Periodic flush task, null if there is no flush interval */
+    private final ScheduledFuture<?> task;
+
+    /**
+     * Opens a buffered log file.
+     * @param path the path to the log file
+     * @param append true to append to the file, false to overwrite it
+     * @param bufferSize the buffer size in bytes
+     * @param flushInterval the periodic flush interval in milliseconds, 0 to disable it
+     * @param flushUrgent true to flush immediately after urgent lines
+     * @throws IOException if the file cannot be opened
+     */
+    ChannelFileOutput(String path, boolean append, int bufferSize, long flushInterval, boolean flushUrgent) throws IOException {
+        this.channel = FileChannel.open(Path.of(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = ByteBuffer.allocateDirect(Math.max(64, bufferSize));
+        this.flushUrgent = flushUrgent;
+        this.task = flushInterval > 0
+                ? flusher().scheduleWithFixedDelay(this::flushQuietly, flushInterval, flushInterval, TimeUnit.MILLISECONDS)
+                : null;
+    }
+
+    /**
+     * Gets the shared flushing thread, starting it on first use.
+     * It also runs the other periodic tasks of the logger, such as the rate limit summaries.
+     * @return the flushing executor
+     */
+    static ScheduledExecutorService flusher() {
+        FLUSHER_LOCK.lock();
+        try {
+            if(flusher == null) {
+                ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, task -> {
+                    Thread thread = new Thread(task, "KLogger-flusher");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                executor.setRemoveOnCancelPolicy(true);
+                flusher = executor;
+            }
+            return flusher;
+        }
+        finally {
+            FLUSHER_LOCK.unlock();
+        }
+    }
+
+    @Override
+    protected ByteBuffer buffer() {
+        return buffer;
+    }
+
+    @Override
+    protected ByteBuffer overflow() throws IOException {
+        drainBuffer();
+        return buffer;
+    }
+
+    @Override
+    protected void written(boolean urgent) throws IOException {
+        if(urgent && flushUrgent) {
+            drainBuffer();
+        }
+    }
+
+    @Override
+    long length() throws IOException {
+        lock.lock();
+        try {
+            return channel.size() + buffer.position();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    void flush(boolean force) throws IOException {
+        lock.lock();
+        try {
+            drainBuffer();
+            if(force && channel.isOpen()) {
+                channel.force(false);
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    void close() throws IOException {
+        if(task != null) {
+            task.cancel(false);
+        }
+        lock.lock();
+        try {
+            drainBuffer();
+            closed = true;
+            channel.close();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the buffered bytes to the channel. Called with the lock held.
+     * @throws IOException if an I/O error occurs
+     */
+    private void drainBuffer() throws IOException {
+        buffer.flip();
+        try {
+            while(buffer.hasRemaining() && channel.isOpen()) {
+                channel.write(buffer);
+            }
+        }
+        finally {
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Periodic flush task: writes the buffered bytes, reporting errors without throwing.
+     */
+    private void flushQuietly() {
+        try {
+            flush(false);
+        }
+        catch(IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package kpss.klogger;
+
+import java.util.Locale;
+
+/**
+ * ColorMode defines when the console output is colored with ANSI escape codes.
+ * Escape codes are useless when the output is not a terminal (e.g. redirected to a file,
+ * collected by Docker or systemd), so by default they are only written to a terminal.
+ *
+ * @author POUSSE Kilian
+ */
+enum ColorMode {
+
+    /** The output is colored if it is a terminal and the NO_COLOR environment variable is not set */
+    AUTO,
+
+    /** The output is always colored */
+    ALWAYS,
+
+    /** The output is never colored */
+    NEVER;
+
+    /**
+     * Checks if the console output must be colored.
+     * @return true to write ANSI escape codes, false otherwise
+     */
+    boolean enabled() {
+        switch(this) {
+            case ALWAYS:
+                return true;
+            case AUTO:
+                return Terminal.COLORED;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Parses a color mode from its configuration name (e.g. "auto", "always", "never").
+     * @param name the configuration name
+     * @return the color mode
+     * @throws IllegalArgumentException if the name is unknown
+     */
+    static ColorMode of(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Terminal holds whether the console output is a terminal. The answer does not change while
+     * the application runs, so it is resolved once, the first time the automatic mode is used,
+     * instead of each time the configuration changes.
+     */
+    private static final class Terminal {
+
+        /** True if the output is a terminal and the NO_COLOR environment variable is not set */
+        static final boolean COLORED = System.console() != null && System.getenv("NO_COLOR") == null;
+    }
+}
@@ -0,0 +1,57 @@
+package kpss.klogger;
+
+import java.util.Map;
+
+/**
+ * ColorScheme holds the ANSI escape codes written around each field of a colored log entry.
+ * The codes are resolved once from the color map when the configuration changes,
+ * so rendering a colored entry only reads arrays: the {type} code is indexed by level,
+ * the other codes by field id.
+ *
+ * @author POUSSE Kilian
+ */
+final class ColorScheme {
+
+    /** Escape code written before each field, indexed by field id */
+    private final String[] fields = new String[LogTemplate.FIELDS.length];
+
+    /** Escape code written before the {type} field, indexed by level ordinal */
+    private final String[] levels = new String[LogLevel.values().length];
+
+    /** Escape code written after each field */
+    private final String reset = LogColor.RESET.toString();
+
+    /**
+     * Resolves the escape codes of a color map.
+     * Fields without a color are written with the default color;
+     * the {type} field uses the color of the level if it has no color of its own.
+     * @param colors the colors of the fields and log types
+     */
+    ColorScheme(Map<String, LogColor> colors) {
+        for(int i = 0; i < fields.length; i++) {
+            fields[i] = colors.getOrDefault(LogTemplate.FIELDS[i], LogColor.RESET).toString();
+        }
+        LogColor type = colors.get(LogTemplate.FIELDS[LogTemplate.TYPE]);
+        for(LogLevel level: LogLevel.values()) {
+            levels[level.ordinal()] = (type != null ? type : colors.getOrDefault(level.name(), LogColor.RESET)).toString();
+        }
+    }
+
+    /**
+     * Gets the escape code written before a field.
+     * @param field the field id
+     * @param level the level of the log entry
+     * @return the escape code
+     */
+    String prefix(int field, LogLevel level) {
+        return field == LogTemplate.TYPE ? levels[level.ordinal()] : fields[field];
+    }
+
+    /**
+     * Gets the escape code written after a field and at the end of a colored entry.
+     * @return the reset escape code
+     */
+    String reset() {
+        return reset;
+    }
+}
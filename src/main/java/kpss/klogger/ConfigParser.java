@@ -0,0 +1,36 @@
+package kpss.klogger;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * ConfigParser reads the JSON configuration with Jackson.
+ * It is the only class referring to Jackson, and it is loaded by the first configuration read:
+ * a program that never loads a configuration file does not load Jackson.
+ *
+ * @author POUSSE Kilian
+ */
+final class ConfigParser {
+
+    /** Jackson mapper, shared so that its deserializers are built once */
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private ConfigParser() { /* ... */ }
+
+    /**
+     * Reads a JSON document.
+     * @param json the InputStream containing the JSON document
+     * @param type the class the document is bound to
+     * @param <T> the type the document is bound to
+     * @return the bound document
+     * @throws IOException if an error occurs while reading the stream or the document is invalid
+     */
+    static <T> T read(InputStream json, Class<T> type) throws IOException {
+        return MAPPER.readValue(json, type);
+    }
+}
@@ -0,0 +1,113 @@
+package kpss.klogger;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ConfigWatcher reloads the configuration file when it changes.
+ * A background thread watches the directory of the file, and reloads the configuration once the
+ * file has not changed for {@link #SETTLE_DELAY} milliseconds, so that a file written in several
+ * steps (or replaced by an editor) is read once, complete. If the file cannot be read or is invalid,
+ * the error is logged and the current settings are kept until the next change.
+ *
+ * @author POUSSE Kilian
+ */
+class ConfigWatcher {
+
+    /** Time in milliseconds without change before the file is reloaded */
+    static final long SETTLE_DELAY = 200;
+
+    /** The configuration to reload */
+    private final LogConfig config;
+
+    /** Name of the watched file within its directory */
+    private final Path fileName;
+
+    /** Watch service of the directory */
+    private final WatchService service;
+
+    /**
+     * Starts watching a configuration file.
+     * @param config the configuration to reload
+     * @param file the path to the configuration file
+     * @throws IOException if the directory of the file cannot be watched
+     */
+    ConfigWatcher(LogConfig config, Path file) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        this.config = config;
+        this.fileName = absolute.getFileName();
+        this.service = FileSystems.getDefault().newWatchService();
+        absolute.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        Thread thread = new Thread(this::run, "KLogger-config-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Watcher thread loop: waits for a change of the file, lets it settle, then reloads it.
+     */
+    private void run() {
+        try {
+            while(true) {
+                if(!changed(service.take())) {
+                    continue;
+                }
+                // Other files of the directory (e.g. the log file) may keep changing: only the changes
+                // of the configuration file delay the reload
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SETTLE_DELAY);
+                long remaining;
+                while((remaining = deadline - System.nanoTime()) > 0) {
+                    WatchKey key = service.poll(remaining, TimeUnit.NANOSECONDS);
+                    if(key != null && changed(key)) {
+                        deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SETTLE_DELAY);
+                    }
+                }
+                try {
+                    config.reload();
+                }
+                catch(IOException | RuntimeException e) {
+                    KLog.error("Configuration not reloaded, the current settings are kept", e);
+                }
+            }
+        }
+        catch(ClosedWatchServiceException | InterruptedException e) {
+            // Watching stopped
+        }
+    }
+
+    /**
+     * Reads the events of a watch key and resets it.
+     * @param key the signalled key
+     * @return true if one of the events concerns the watched file, false otherwise
+     */
+    private boolean changed(WatchKey key) {
+        boolean changed = false;
+        for(WatchEvent<?> event: key.pollEvents()) {
+            if(fileName.equals(event.context())) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    /**
+     * Stops watching the file.
+     */
+    void close() {
+        try {
+            service.close();
+        }
+        catch(IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
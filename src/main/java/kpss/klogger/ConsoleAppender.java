@@ -0,0 +1,153 @@
+package kpss.klogger;
+
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ConsoleAppender writes log entries to the standard output or the standard error stream.
+ * The entries of every console appender of a stream are encoded under one ReentrantLock into
+ * reusable buffers and handed to the stream as one byte array: a thread waiting for the console
+ * waits on the lock, which does not pin a virtual thread to its carrier, and not on the monitor
+ * of the PrintStream, which is then never contended by the logger. The stream is looked up on each
+ * entry, so that a stream replaced with {@link System#setOut} receives the following entries.
+ *
+ * @author POUSSE Kilian
+ */
+class ConsoleAppender extends LogAppender {
+
+    /** Standard output of the console appenders */
+    private static final Console OUT = new Console(false);
+
+    /** Standard error stream of the console appenders */
+    private static final Console ERR = new Console(true);
+
+    /** Standard stream written to */
+    private final Console console;
+
+    /** Colored flag: true to render the entries with colors when the color mode allows it */
+    private final boolean colored;
+
+    /**
+     * Creates a console appender.
+     * @param name the name of the appender
+     * @param layout the layout of the log entries
+     * @param threshold the least severe level written, null to write every entry
+     * @param async true to be written by the writer thread, false to be written by the caller
+     * @param stderr true to write to the standard error stream, false to write to the standard output
+     * @param colored true to render the entries with colors when the color mode allows it
+     */
+    ConsoleAppender(String name, LogLayout layout, LogLevel threshold, boolean async, boolean stderr, boolean colored) {
+        super(name, layout, threshold, async);
+        this.console = stderr ? ERR : OUT;
+        this.colored = colored;
+    }
+
+    /**
+     * Checks if the entries are rendered with colors when the color mode allows it.
+     * @return true for a colored console, false otherwise
+     */
+    @Override
+    boolean isColored() {
+        return colored;
+    }
+
+    /**
+     * Writes a rendered log entry to the console.
+     * @param line the rendered entry, without line separator
+     * @param event the log entry
+     * @return 0, console output is not counted
+     */
+    @Override
+    int append(CharSequence line, LogEvent event) {
+        console.println(line);
+        return 0;
+    }
+
+    /**
+     * Console is the encoder of the entries written to a standard stream, shared by its appenders.
+     */
+    private static final class Console {
+
+        /** Line separator, as written by PrintStream.println */
+        private static final String SEPARATOR = System.lineSeparator();
+
+        /** Standard error flag: true for System.err, false for System.out */
+        private final boolean stderr;
+
+        /** Lock guarding the encoder and its buffers */
+        private final ReentrantLock lock = new ReentrantLock();
+
+        /** Encoder of the stream charset, replacing the characters it cannot encode */
+        private final CharsetEncoder encoder;
+
+        /** Buffer of the characters of the entry */
+        private CharBuffer chars = CharBuffer.allocate(256);
+
+        /** Buffer of the encoded entry */
+        private ByteBuffer bytes = ByteBuffer.allocate(1024);
+
+        /**
+         * Creates the encoder of a standard stream.
+         * @param stderr true for the standard error stream, false for the standard output
+         */
+        Console(boolean stderr) {
+            this.stderr = stderr;
+            this.encoder = charset(stderr ? "err" : "out").newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+
+        /**
+         * Gets the charset of a standard stream, as chosen by the JVM.
+         * @param stream "out" or "err"
+         * @return the charset of the stream, or the default charset
+         */
+        private static Charset charset(String stream) {
+            String name = System.getProperty("std" + stream + ".encoding", System.getProperty("sun.std" + stream + ".encoding"));
+            try {
+                return name != null && Charset.isSupported(name) ? Charset.forName(name) : Charset.defaultCharset();
+            }
+            catch(IllegalArgumentException e) {
+                return Charset.defaultCharset();
+            }
+        }
+
+        /**
+         * Writes a line and a line separator to the stream as one byte array.
+         * @param line the line
+         */
+        void println(CharSequence line) {
+            lock.lock();
+            try {
+                int length = line.length() + SEPARATOR.length();
+                if(chars.capacity() < length) {
+                    chars = CharBuffer.allocate(Math.max(length, chars.capacity() * 2));
+                }
+                int size = (int) Math.ceil(length * (double) encoder.maxBytesPerChar());
+                if(bytes.capacity() < size) {
+                    bytes = ByteBuffer.allocate(Math.max(size, bytes.capacity() * 2));
+                }
+                chars.clear();
+                for(int i = 0; i < line.length(); i++) {
+                    chars.put(line.charAt(i));
+                }
+                chars.put(SEPARATOR).flip();
+                bytes.clear();
+                // The output buffer holds the longest encoding: no overflow
+                encoder.reset();
+                encoder.encode(chars, bytes, true);
+                encoder.flush(bytes);
+                PrintStream stream = stderr ? System.err : System.out;
+                stream.write(bytes.array(), 0, bytes.position());
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package kpss.klogger;
+
+import java.util.Arrays;
+
+/**
+ * ContextMap is the immutable map of the diagnostic context fields (see {@link MDC}).
+ * Keys are kept sorted in a pair of arrays: a lookup is a binary search, and adding or
+ * removing a field builds a new map. Since a map never changes, a log entry captures the
+ * context of its thread by keeping a reference to the current map, whatever its size.
+ *
+ * @author POUSSE Kilian
+ */
+final class ContextMap {
+
+    /** The empty map */
+    static final ContextMap EMPTY = new ContextMap(new String[0], new String[0]);
+
+    /** Sorted keys */
+    private final String[] keys;
+
+    /** Values, in the order of the keys */
+    private final String[] values;
+
+    /**
+     * Creates a map.
+     * @param keys the sorted keys, not copied
+     * @param values the values in the order of the keys, not copied
+     */
+    private ContextMap(String[] keys, String[] values) {
+        this.keys = keys;
+        this.values = values;
+    }
+
+    /**
+     * Gets the value of a key.
+     * @param key the key
+     * @return the value, or null if the key is not in the map
+     */
+    String get(String key) {
+        int index = Arrays.binarySearch(keys, key);
+        return index >= 0 ? values[index] : null;
+    }
+
+    /**
+     * Creates a copy of this map with another value for a key.
+     * @param key the key
+     * @param value the value, null to remove the key
+     * @return the new map, or this map if it already holds the value
+     */
+    ContextMap with(String key, String value) {
+        if(value == null) {
+            return without(key);
+        }
+        int index = Arrays.binarySearch(keys, key);
+        if(index >= 0) {
+            if(value.equals(values[index])) {
+                return this;
+            }
+            String[] newValues = values.clone();
+            newValues[index] = value;
+            return new ContextMap(keys, newValues);
+        }
+        int insert = -index - 1;
+        String[] newKeys = new String[keys.length + 1];
+        String[] newValues = new String[keys.length + 1];
+        System.arraycopy(keys, 0, newKeys, 0, insert);
+        System.arraycopy(values, 0, newValues, 0, insert);
+        newKeys[insert] = key;
+        newValues[insert] = value;
+        System.arraycopy(keys, insert, newKeys, insert + 1, keys.length - insert);
+        System.arraycopy(values, insert, newValues, insert + 1, keys.length - insert);
+        return new ContextMap(newKeys, newValues);
+    }
+
+    /**
+     * Creates a copy of this map without a key.
+     * @param key the key
+     * @return the new map, or this map if it does not hold the key
+     */
+    ContextMap without(String key) {
+        int index = Arrays.binarySearch(keys, key);
+        if(index < 0) {
+            return this;
+        }
+        if(keys.length == 1) {
+            return EMPTY;
+        }
+        String[] newKeys = new String[keys.length - 1];
+        String[] newValues = new String[keys.length - 1];
+        System.arraycopy(keys, 0, newKeys, 0, index);
+        System.arraycopy(values, 0, newValues, 0, index);
+        System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+        System.arraycopy(values, index + 1, newValues, index, keys.length - index - 1);
+        return new ContextMap(newKeys, newValues);
+    }
+
+    /**
+     * Gets the number of keys.
+     * @return the size of the map
+     */
+    int size() {
+        return keys.length;
+    }
+
+    /**
+     * Gets a key by position.
+     * @param index the position, in key order
+     * @return the key
+     */
+    String keyAt(int index) {
+        return keys[index];
+    }
+
+    /**
+     * Gets a value by position.
+     * @param index the position, in key order
+     * @return the value
+     */
+    String valueAt(int index) {
+        return values[index];
+    }
+
+    /**
+     * Appends the fields as "key=value" pairs separated by spaces.
+     * @param out the builder to append to
+     */
+    void appendTo(StringBuilder out) {
+        for(int i = 0; i < keys.length; i++) {
+            if(i > 0) {
+                out.append(' ');
+            }
+            out.append(keys[i]).append('=').append(values[i]);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package kpss.klogger;
+
+/**
+ * DecodedException is an exception read back from a binary log file by the {@link LogDecoder}.
+ * It carries the class name, message, stack trace, suppressed exceptions and cause of the
+ * logged exception, so that the layouts render it exactly as they render the original.
+ *
+ * @author POUSSE Kilian
+ */
+final class DecodedException extends Throwable {
+
+    /** Serialization version */
+    private static final long serialVersionUID = 1L;
+
+    /** Fully qualified class name of the logged exception */
+    private final String className;
+
+    /**
+     * Creates a decoded exception, without stack trace.
+     * @param className the fully qualified class name of the logged exception
+     * @param message the message of the logged exception, may be null
+     */
+    DecodedException(String className, String message) {
+        super(message);
+        this.className = className;
+    }
+
+    /**
+     * Gets the class name of the logged exception.
+     * @return the fully qualified class name
+     */
+    String getClassName() {
+        return className;
+    }
+
+    /**
+     * Gets the simple class name of the logged exception.
+     * @return the class name without package and enclosing classes
+     */
+    String getSimpleName() {
+        return className.substring(Math.max(className.lastIndexOf('.'), className.lastIndexOf('$')) + 1);
+    }
+
+    /**
+     * Keeps the stack trace empty: it is set from the log file.
+     * @return this exception
+     */
+    @Override
+    public Throwable fillInStackTrace() {
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        String message = getLocalizedMessage();
+        return message != null ? className + ": " + message : className;
+    }
+}
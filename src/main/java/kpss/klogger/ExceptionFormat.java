@@ -0,0 +1,418 @@
+package kpss.klogger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ExceptionFormat writes the exception of a log entry, with its suppressed exceptions and its causes.
+ * In the text formats, the exception is written after the message as a tree of stack frames;
+ * in the JSON format, it is written as an "exception" object.
+ * <p>
+ * The frames a cause or a suppressed exception has in common with the exception enclosing it are
+ * elided, and the number of frames written per exception can be limited. The rendered text is cached
+ * per distinct stack trace, so an exception logged over and over again (e.g. while a dependency is
+ * down) is only rendered once. The same exception object logged again finds its trace by identity,
+ * without reading its stack trace: it is expected not to change once logged. Repeated traces can also be deduplicated: within a time window, only
+ * the first occurrence is written in full and the next ones are written as a single line with the
+ * number of times the trace was seen. Each layout has its own format, so that every output
+ * counts each occurrence once.
+ *
+ * @author POUSSE Kilian
+ */
+final class ExceptionFormat {
+
+    /** Default format: no frame limit, 256 cached traces, no deduplication */
+    static final ExceptionFormat DEFAULT = new ExceptionFormat(0, 256, 0);
+
+    /** Maximum number of frames written per exception, 0 for no limit */
+    private final int maxDepth;
+
+    /** Maximum number of distinct traces cached, 0 to disable the cache and the deduplication */
+    private final int cacheSize;
+
+    /** Deduplication window in milliseconds, 0 to write every trace in full */
+    private final long dedupWindow;
+
+    /** Cached traces */
+    private final Map<TraceKey, Trace> cache = new ConcurrentHashMap<>();
+
+    /** Traces of the exceptions logged recently, weakly held: Throwable keeps the identity equality of Object */
+    private final Map<Throwable, Trace> logged = new WeakHashMap<>();
+
+    /** Lock guarding the traces of the exceptions logged recently */
+    private final ReentrantLock loggedLock = new ReentrantLock();
+
+    /**
+     * Creates an exception format.
+     * @param maxDepth the maximum number of frames written per exception, 0 for no limit
+     * @param cacheSize the maximum number of distinct traces cached, 0 to disable the cache and the deduplication
+     * @param dedupWindow the deduplication window in milliseconds, 0 to write every trace in full
+     */
+    ExceptionFormat(int maxDepth, int cacheSize, long dedupWindow) {
+        this.maxDepth = maxDepth;
+        this.cacheSize = cacheSize;
+        this.dedupWindow = dedupWindow;
+    }
+
+    /**
+     * Creates a format with the same settings and an empty cache, for another layout.
+     * @return the new format
+     */
+    ExceptionFormat copy() {
+        return new ExceptionFormat(maxDepth, cacheSize, dedupWindow);
+    }
+
+    /**
+     * Appends an exception as a tree of stack frames, after the message of a text entry.
+     * @param out the builder to append to
+     * @param thrown the exception
+     */
+    void appendText(StringBuilder out, Throwable thrown) {
+        Trace trace = trace(thrown);
+        if(trace == null) {
+            appendTree(out, thrown, null, "", Collections.newSetFromMap(new IdentityHashMap<>()));
+            return;
+        }
+        long seen = trace.seen(dedupWindow);
+        if(seen > 1) {
+            out.append("\n    --> ").append(simpleName(thrown)).append(": ").append(thrown.getMessage())
+                    .append(" (same stack trace seen ").append(seen).append(" times in the last ")
+                    .append(dedupWindow / 1000).append(" s)");
+            return;
+        }
+        String text = trace.text;
+        if(text == null) {
+            int start = out.length();
+            appendTree(out, thrown, null, "", Collections.newSetFromMap(new IdentityHashMap<>()));
+            trace.text = out.substring(start);
+        }
+        else {
+            out.append(text);
+        }
+    }
+
+    /**
+     * Appends an exception as a JSON object.
+     * @param out the builder to append to
+     * @param thrown the exception
+     */
+    void appendJson(StringBuilder out, Throwable thrown) {
+        Trace trace = trace(thrown);
+        if(trace == null) {
+            appendObject(out, thrown, null, Collections.newSetFromMap(new IdentityHashMap<>()));
+            return;
+        }
+        long seen = trace.seen(dedupWindow);
+        if(seen > 1) {
+            out.append("{\"class\":");
+            JsonLayout.appendString(out, className(thrown));
+            out.append(",\"message\":");
+            JsonLayout.appendString(out, thrown.getMessage());
+            out.append(",\"repeated\":").append(seen).append('}');
+            return;
+        }
+        String json = trace.json;
+        if(json == null) {
+            int start = out.length();
+            appendObject(out, thrown, null, Collections.newSetFromMap(new IdentityHashMap<>()));
+            trace.json = out.substring(start);
+        }
+        else {
+            out.append(json);
+        }
+    }
+
+    /**
+     * Gets the cached trace of an exception, caching it on first use.
+     * The exception object is looked up first, then its stack trace.
+     * @param thrown the exception
+     * @return the cached trace, or null if the cache is disabled
+     */
+    private Trace trace(Throwable thrown) {
+        if(cacheSize <= 0) {
+            return null;
+        }
+        loggedLock.lock();
+        try {
+            Trace trace = logged.get(thrown);
+            if(trace != null) {
+                return trace;
+            }
+        }
+        finally {
+            loggedLock.unlock();
+        }
+
+        TraceKey key = new TraceKey(thrown);
+        Trace trace = cache.get(key);
+        if(trace == null) {
+            if(cache.size() >= cacheSize) {
+                cache.clear();
+            }
+            trace = cache.computeIfAbsent(key, k -> new Trace());
+        }
+        loggedLock.lock();
+        try {
+            if(logged.size() >= cacheSize) {
+                logged.clear();
+            }
+            logged.put(thrown, trace);
+        }
+        finally {
+            loggedLock.unlock();
+        }
+        return trace;
+    }
+
+    /**
+     * Gets the class name of an exception, the logged one for an exception read from a binary log file.
+     * @param thrown the exception
+     * @return the fully qualified class name
+     */
+    static String className(Throwable thrown) {
+        return thrown instanceof DecodedException ? ((DecodedException) thrown).getClassName() : thrown.getClass().getName();
+    }
+
+    /**
+     * Gets the simple class name of an exception, the logged one for an exception read from a binary log file.
+     * @param thrown the exception
+     * @return the class name without package
+     */
+    private static String simpleName(Throwable thrown) {
+        return thrown instanceof DecodedException ? ((DecodedException) thrown).getSimpleName() : thrown.getClass().getSimpleName();
+    }
+
+    /**
+     * Appends an exception, its suppressed exceptions and its causes as a tree of stack frames.
+     * @param out the builder to append to
+     * @param thrown the exception
+     * @param enclosing the stack trace of the enclosing exception, null for the logged exception
+     * @param label the label of the exception (e.g. "Caused by: ")
+     * @param visited the exceptions already written, to stop on circular references
+     */
+    private void appendTree(StringBuilder out, Throwable thrown, StackTraceElement[] enclosing, String label, Set<Throwable> visited) {
+        out.append("\n    --> ").append(label);
+        if(!visited.add(thrown)) {
+            out.append("[circular reference: ").append(simpleName(thrown)).append(']');
+            return;
+        }
+        out.append(simpleName(thrown)).append(": ").append(thrown.getMessage());
+
+        StackTraceElement[] trace = thrown.getStackTrace();
+        int shown = shownFrames(trace, enclosing);
+        int hidden = trace.length - shown;
+        for(int i = 0; i < shown; i++) {
+            out.append("\n        ").append(i < shown - 1 || hidden > 0 ? "├──" : "└──").append(' ').append(trace[i]);
+        }
+        if(hidden > 0) {
+            out.append("\n        └── ... ").append(hidden).append(" more");
+        }
+
+        for(Throwable suppressed: thrown.getSuppressed()) {
+            appendTree(out, suppressed, trace, "Suppressed: ", visited);
+        }
+        if(thrown.getCause() != null) {
+            appendTree(out, thrown.getCause(), trace, "Caused by: ", visited);
+        }
+    }
+
+    /**
+     * Appends an exception, its suppressed exceptions and its causes as a JSON object.
+     * @param out the builder to append to
+     * @param thrown the exception
+     * @param enclosing the stack trace of the enclosing exception, null for the logged exception
+     * @param visited the exceptions already written, to stop on circular references
+     */
+    private void appendObject(StringBuilder out, Throwable thrown, StackTraceElement[] enclosing, Set<Throwable> visited) {
+        out.append("{\"class\":");
+        JsonLayout.appendString(out, className(thrown));
+        if(!visited.add(thrown)) {
+            out.append(",\"circular\":true}");
+            return;
+        }
+        out.append(",\"message\":");
+        JsonLayout.appendString(out, thrown.getMessage());
+
+        StackTraceElement[] trace = thrown.getStackTrace();
+        int shown = shownFrames(trace, enclosing);
+        out.append(",\"stackTrace\":[");
+        for(int i = 0; i < shown; i++) {
+            if(i > 0) {
+                out.append(',');
+            }
+            JsonLayout.appendString(out, trace[i].toString());
+        }
+        out.append(']');
+        if(shown < trace.length) {
+            out.append(",\"omittedFrames\":").append(trace.length - shown);
+        }
+
+        Throwable[] suppressed = thrown.getSuppressed();
+        if(suppressed.length > 0) {
+            out.append(",\"suppressed\":[");
+            for(int i = 0; i < suppressed.length; i++) {
+                if(i > 0) {
+                    out.append(',');
+                }
+                appendObject(out, suppressed[i], trace, visited);
+            }
+            out.append(']');
+        }
+        if(thrown.getCause() != null) {
+            out.append(",\"cause\":");
+            appendObject(out, thrown.getCause(), trace, visited);
+        }
+        out.append('}');
+    }
+
+    /**
+     * Gets the number of frames written for an exception: the frames it does not have in common
+     * with the enclosing exception, at most {@link #maxDepth}.
+     * @param trace the stack trace of the exception
+     * @param enclosing the stack trace of the enclosing exception, null for the logged exception
+     * @return the number of frames written
+     */
+    private int shownFrames(StackTraceElement[] trace, StackTraceElement[] enclosing) {
+        int shown = trace.length;
+        if(enclosing != null) {
+            int j = enclosing.length - 1;
+            while(shown > 0 && j >= 0 && trace[shown - 1].equals(enclosing[j])) {
+                shown--;
+                j--;
+            }
+        }
+        return maxDepth > 0 ? Math.min(shown, maxDepth) : shown;
+    }
+
+    /**
+     * TraceKey identifies the rendered text of an exception: the class, message and stack trace
+     * of the exception, of its suppressed exceptions and of its causes.
+     * The hash code only covers the top frames of each stack trace, which tell most traces apart:
+     * the frames below them are only compared by equals.
+     */
+    private static final class TraceKey {
+
+        /** Number of frames of each stack trace in the hash code */
+        private static final int HASHED_FRAMES = 8;
+
+        /** Class, message and stack trace of each exception, in rendering order */
+        private final Object[] parts;
+
+        /** Hash code of the classes, messages and top frames */
+        private final int hash;
+
+        /**
+         * Creates the key of an exception.
+         * @param thrown the exception
+         */
+        TraceKey(Throwable thrown) {
+            List<Object> list = new ArrayList<>();
+            collect(thrown, list, Collections.newSetFromMap(new IdentityHashMap<>()));
+            this.parts = list.toArray();
+            int h = 1;
+            for(Object part: parts) {
+                if(part instanceof StackTraceElement[]) {
+                    StackTraceElement[] frames = (StackTraceElement[]) part;
+                    h = 31 * h + frames.length;
+                    for(int i = 0; i < frames.length && i < HASHED_FRAMES; i++) {
+                        h = 31 * h + frames[i].hashCode();
+                    }
+                }
+                else {
+                    h = 31 * h + (part != null ? part.hashCode() : 0);
+                }
+            }
+            this.hash = h;
+        }
+
+        /**
+         * Collects the parts of an exception, its suppressed exceptions and its causes.
+         * @param thrown the exception
+         * @param list the parts collected so far
+         * @param visited the exceptions already collected
+         */
+        private static void collect(Throwable thrown, List<Object> list, Set<Throwable> visited) {
+            list.add(className(thrown));
+            if(!visited.add(thrown)) {
+                return;
+            }
+            list.add(thrown.getMessage());
+            list.add(thrown.getStackTrace());
+            for(Throwable suppressed: thrown.getSuppressed()) {
+                collect(suppressed, list, visited);
+            }
+            list.add(null);
+            if(thrown.getCause() != null) {
+                collect(thrown.getCause(), list, visited);
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof TraceKey && hash == ((TraceKey) other).hash
+                    && Arrays.deepEquals(parts, ((TraceKey) other).parts);
+        }
+    }
+
+    /**
+     * Trace is the cached rendering of one distinct stack trace, with its deduplication counters.
+     */
+    private static final class Trace {
+
+        /** Rendered text, null until first rendered */
+        volatile String text;
+
+        /** Rendered JSON object, null until first rendered */
+        volatile String json;
+
+        /** Number of low bits of the state holding the occurrence count */
+        private static final int COUNT_BITS = 24;
+
+        /** Mask of the occurrence count in the state */
+        private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+        /** Creation time of the trace in milliseconds since the epoch, origin of the window starts */
+        private final long origin = System.currentTimeMillis();
+
+        /**
+         * Deduplication state, updated in one step: the start of the current window in milliseconds
+         * since the creation of the trace in the high bits, the occurrences within it in the low bits
+         */
+        private final AtomicLong state = new AtomicLong();
+
+        /**
+         * Counts an occurrence of the trace. The count stops at its maximum for the rest of the window.
+         * @param window the deduplication window in milliseconds, 0 to disable the deduplication
+         * @return the number of occurrences in the current window, 1 if the trace must be written in full
+         */
+        long seen(long window) {
+            if(window <= 0) {
+                return 1;
+            }
+            long now = Math.max(0, System.currentTimeMillis() - origin);
+            while(true) {
+                long current = state.get();
+                long count = current & COUNT_MASK;
+                long next = count == 0 || now - (current >>> COUNT_BITS) >= window ? (now << COUNT_BITS) | 1
+                        : count < COUNT_MASK ? current + 1 : current;
+                if(next == current || state.compareAndSet(current, next)) {
+                    return next & COUNT_MASK;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package kpss.klogger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * FileAppender writes log entries to a log file output.
+ * ERROR and CRITICAL entries are handed to the operating system immediately.
+ * An appender can share the output of another one, so that a configuration reload
+ * keeps a log file open while changing its layout or level.
+ *
+ * @author POUSSE Kilian
+ */
+class FileAppender extends LogAppender {
+
+    /** Path to the log file */
+    private final String path;
+
+    /** Settings the log file was opened with */
+    private final FileSettings settings;
+
+    /** Log file output */
+    private final FileOutput output;
+
+    /**
+     * Creates a file appender and opens its log file.
+     * @param name the name of the appender
+     * @param layout the layout of the log entries
+     * @param threshold the least severe level written, null to write every entry
+     * @param async true to be written by the writer thread, false to be written by the caller
+     * @param path the path to the log file
+     * @param settings the settings to open the log file with
+     * @throws IOException if the file cannot be opened
+     */
+    FileAppender(String name, LogLayout layout, LogLevel threshold, boolean async, String path, FileSettings settings) throws IOException {
+        super(name, layout, threshold, async);
+        this.path = path;
+        this.settings = settings;
+        this.output = settings.open(path);
+    }
+
+    /**
+     * Creates a file appender sharing the log file of another one.
+     * @param name the name of the appender
+     * @param layout the layout of the log entries
+     * @param threshold the least severe level written, null to write every entry
+     * @param async true to be written by the writer thread, false to be written by the caller
+     * @param source the appender whose log file is shared
+     */
+    FileAppender(String name, LogLayout layout, LogLevel threshold, boolean async, FileAppender source) {
+        super(name, layout, threshold, async);
+        this.path = source.path;
+        this.settings = source.settings;
+        this.output = source.output;
+    }
+
+    /**
+     * Checks if the appender writes to a log file opened with given settings.
+     * The append mode is not compared: it only matters when the file is opened.
+     * @param path the path to the log file
+     * @param settings the settings
+     * @return true if the path denotes the same file and the other settings are equal, false otherwise
+     */
+    boolean opens(String path, FileSettings settings) {
+        return this.settings.withAppend(true).equals(settings.withAppend(true)) && sameFile(this.path, path);
+    }
+
+    /**
+     * Checks if two paths denote the same log file.
+     * @param a the first path
+     * @param b the second path
+     * @return true if both paths are equal once made absolute and normalized, false otherwise
+     */
+    static boolean sameFile(String a, String b) {
+        return Path.of(a).toAbsolutePath().normalize().equals(Path.of(b).toAbsolutePath().normalize());
+    }
+
+    /**
+     * Gets the path to the log file.
+     * @return the path
+     */
+    String getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the log file output.
+     * @return the output
+     */
+    FileOutput getOutput() {
+        return output;
+    }
+
+    /**
+     * Creates an appender with the same settings as this closed one, opening its log file again
+     * in append mode or sharing the log file of another appender opened again.
+     * @param reopened an appender opened again on the same log file, null to open it
+     * @return the new appender
+     * @throws IOException if the file cannot be opened
+     */
+    @Override
+    LogAppender reopen(LogAppender reopened) throws IOException {
+        return reopened instanceof FileAppender
+                ? new FileAppender(getName(), getLayout(), getThreshold(), isAsync(), (FileAppender) reopened)
+                : new FileAppender(getName(), getLayout(), getThreshold(), isAsync(), path, settings.withAppend(true));
+    }
+
+    /**
+     * Writes a rendered log entry to the log file.
+     * @param line the rendered entry, without line separator
+     * @param event the log entry
+     * @return the number of bytes written
+     * @throws java.nio.channels.ClosedChannelException if the output is closed
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    int append(CharSequence line, LogEvent event) throws IOException {
+        return output.write(line, event.getLevel().isAtLeast(LogLevel.ERROR));
+    }
+
+    /**
+     * Writes the buffered entries to the log file.
+     * @param force true to also force them to the storage device
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    void flush(boolean force) throws IOException {
+        output.flush(force);
+    }
+
+    /**
+     * Closes the log file output.
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    void close() throws IOException {
+        output.close();
+    }
+}
@@ -0,0 +1,50 @@
+package kpss.klogger;
+
+import java.io.IOException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * FileOutput is the base class of the log file outputs.
+ * An output receives formatted log lines and writes them to one or more files.
+ *
+ * @author POUSSE Kilian
+ */
+abstract class FileOutput {
+
+    /** Lock guarding the state of the output */
+    protected final ReentrantLock lock = new ReentrantLock();
+
+    /** Closed flag, set by {@link #close()} with the lock held */
+    protected boolean closed = false;
+
+    /**
+     * Writes a log line followed by a line separator.
+     * Lines written concurrently are never interleaved.
+     * @param line the log line
+     * @param urgent true to hand the line to the operating system immediately (e.g. ERROR entries)
+     * @return the number of bytes written
+     * @throws java.nio.channels.ClosedChannelException if the output is closed
+     * @throws IOException if an I/O error occurs
+     */
+    abstract int write(CharSequence line, boolean urgent) throws IOException;
+
+    /**
+     * Gets the length of the log file, including the bytes not written to it yet.
+     * @return the length in bytes
+     * @throws IOException if an I/O error occurs
+     */
+    abstract long length() throws IOException;
+
+    /**
+     * Writes the buffered lines to the file.
+     * @param force true to also force them to the storage device
+     * @throws IOException if an I/O error occurs
+     */
+    abstract void flush(boolean force) throws IOException;
+
+    /**
+     * Flushes and closes the output.
+     * @throws IOException if an I/O error occurs
+     */
+    abstract void close() throws IOException;
+}
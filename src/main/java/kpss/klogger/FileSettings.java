@@ -0,0 +1,160 @@
+package kpss.klogger;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * FileSettings holds the settings a log file is opened with: file mode, buffering, append mode
+ * and rolling. Settings are immutable and compared by value, so that a configuration reload
+ * keeps the log files whose path and settings did not change open instead of reopening them.
+ *
+ * @author POUSSE Kilian
+ */
+final class FileSettings {
+
+    /** Default settings: buffered channel of 8 KiB flushed every second and on errors, append mode, no rolling */
+    static final FileSettings DEFAULT = new FileSettings("channel", 32 * 1024 * 1024, 8192, 1000, true, true,
+            0, null, 0, 0, false);
+
+    /** Log file mode: "channel" for a buffered file, "mmap" for a memory-mapped file */
+    private final String mode;
+
+    /** Size of a mapped chunk in bytes in "mmap" file mode */
+    private final int mapSize;
+
+    /** Log file buffer size in bytes */
+    private final int bufferSize;
+
+    /** Log file flush interval in milliseconds, 0 to flush only when the buffer is full */
+    private final long flushInterval;
+
+    /** Immediate flush flag for ERROR and CRITICAL entries */
+    private final boolean flushOnError;
+
+    /** Append mode flag */
+    private final boolean append;
+
+    /** Maximum size of the log file in bytes before it is rolled, 0 for no limit */
+    private final long maxSize;
+
+    /** Roll schedule: "daily", "hourly", or null for no schedule */
+    private final String schedule;
+
+    /** Maximum number of rolled files kept, 0 for no limit */
+    private final int maxFiles;
+
+    /** Maximum total size of the rolled files in bytes, 0 for no limit */
+    private final long maxTotalSize;
+
+    /** Compression flag: true to gzip the rolled files */
+    private final boolean compress;
+
+    /**
+     * Creates file settings.
+     * @param mode the log file mode: "channel" or "mmap"
+     * @param mapSize the size of a mapped chunk in bytes
+     * @param bufferSize the buffer size in bytes
+     * @param flushInterval the flush interval in milliseconds, 0 to flush only when the buffer is full
+     * @param flushOnError true to flush ERROR and CRITICAL entries immediately
+     * @param append true to append to an existing file, false to truncate it
+     * @param maxSize the maximum size of the log file in bytes, 0 for no limit
+     * @param schedule the roll schedule, null for no schedule
+     * @param maxFiles the maximum number of rolled files kept, 0 for no limit
+     * @param maxTotalSize the maximum total size of the rolled files in bytes, 0 for no limit
+     * @param compress true to gzip the rolled files
+     */
+    FileSettings(String mode, int mapSize, int bufferSize, long flushInterval, boolean flushOnError, boolean append,
+            long maxSize, String schedule, int maxFiles, long maxTotalSize, boolean compress) {
+        this.mode = mode;
+        this.mapSize = mapSize;
+        this.bufferSize = bufferSize;
+        this.flushInterval = flushInterval;
+        this.flushOnError = flushOnError;
+        this.append = append;
+        this.maxSize = maxSize;
+        this.schedule = schedule;
+        this.maxFiles = maxFiles;
+        this.maxTotalSize = maxTotalSize;
+        this.compress = compress;
+    }
+
+    /**
+     * Creates a copy of these settings with another append mode.
+     * @param append true to append to an existing file, false to truncate it
+     * @return the new settings
+     */
+    FileSettings withAppend(boolean append) {
+        return new FileSettings(mode, mapSize, bufferSize, flushInterval, flushOnError, append,
+                maxSize, schedule, maxFiles, maxTotalSize, compress);
+    }
+
+    /**
+     * Gets the log file mode.
+     * @return "channel" or "mmap"
+     */
+    String getMode() {
+        return mode;
+    }
+
+    /**
+     * Checks if existing log files are appended to.
+     * @return true in append mode, false otherwise
+     */
+    boolean isAppend() {
+        return append;
+    }
+
+    /**
+     * Opens a log file output with these settings.
+     * @param path the path to the log file
+     * @return the output, rolled if rolling is configured
+     * @throws IOException if the file cannot be opened
+     */
+    FileOutput open(String path) throws IOException {
+        if(maxSize > 0 || schedule != null) {
+            return new RollingFileOutput(path, append, this::openFile, maxSize, schedule, maxFiles, maxTotalSize, compress);
+        }
+        return openFile(path, append);
+    }
+
+    /**
+     * Opens a log file output with these settings, ignoring the rolling settings.
+     * @param path the path to the log file
+     * @return the output
+     * @throws IOException if the file cannot be opened
+     */
+    BufferedFileOutput openUnrolled(String path) throws IOException {
+        return openFile(path, append);
+    }
+
+    /**
+     * Opens the output of one log file.
+     * @param path the path to the log file
+     * @param append true to append to the file, false to overwrite it
+     * @return the mapped or buffered output
+     * @throws IOException if the file cannot be opened
+     */
+    private BufferedFileOutput openFile(String path, boolean append) throws IOException {
+        return "mmap".equalsIgnoreCase(mode)
+                ? new MappedFileOutput(path, append, mapSize)
+                : new ChannelFileOutput(path, append, bufferSize, flushInterval, flushOnError);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if(!(other instanceof FileSettings)) {
+            return false;
+        }
+        FileSettings o = (FileSettings) other;
+        return mode.equalsIgnoreCase(o.mode) && mapSize == o.mapSize && bufferSize == o.bufferSize
+                && flushInterval == o.flushInterval && flushOnError == o.flushOnError && append == o.append
+                && maxSize == o.maxSize && Objects.equals(schedule, o.schedule) && maxFiles == o.maxFiles
+                && maxTotalSize == o.maxTotalSize && compress == o.compress;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(mode.toLowerCase(Locale.ROOT), mapSize, bufferSize, flushInterval, append, maxSize, schedule);
+    }
+}
@@ -0,0 +1,145 @@
+package kpss.klogger;
+
+/**
+ * JsonLayout writes each log entry as one JSON object per line (NDJSON), for log indexers:
+ * {@code {"timestamp":"...","level":"INFO","thread":"main","context":"...","message":"..."}}.
+ * The diagnostic context fields are written as an "mdc" object, and an exception as an
+ * "exception" object with its class, message, stack trace, suppressed exceptions and cause.
+ * The object is streamed straight into the reusable builder of the entry, with the JSON
+ * string escaping done by hand, so no object tree or serializer is involved per entry.
+ * The timestamp uses the configured date format: a number for the epoch formats, a string otherwise.
+ * Colors are never applied.
+ *
+ * @author POUSSE Kilian
+ */
+class JsonLayout implements LogLayout {
+
+    /** Name of the layout in the configuration */
+    static final String NAME = "json";
+
+    /** Hexadecimal digits of the unicode escapes */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** Reusable per-thread builder of the values to escape */
+    private static final ThreadLocal<StringBuilder> VALUE = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    /** Format of the exceptions */
+    private final ExceptionFormat exceptions;
+
+    /**
+     * Creates the JSON layout.
+     * @param exceptions the format of the exceptions
+     */
+    JsonLayout(ExceptionFormat exceptions) {
+        this.exceptions = exceptions;
+    }
+
+    @Override
+    public boolean uses(int field) {
+        return field >= 0 && field < LogTemplate.FIELDS.length;
+    }
+
+    @Override
+    public String getPattern() {
+        return NAME;
+    }
+
+    @Override
+    public void render(StringBuilder out, LogEvent event, TimestampFormat dateFormat, ColorScheme colors) {
+        StringBuilder value = VALUE.get();
+
+        out.append("{\"timestamp\":");
+        value.setLength(0);
+        dateFormat.render(value, event.getTimestamp(), event.getNanos());
+        if(dateFormat.isEpoch()) {
+            out.append(value);
+        }
+        else {
+            appendString(out, value);
+        }
+        out.append(",\"level\":\"").append(event.getLevel().name()).append('"');
+        out.append(",\"thread\":");
+        appendString(out, event.getThread());
+        out.append(",\"context\":");
+        appendString(out, event.getContext());
+        out.append(",\"message\":");
+        value.setLength(0);
+        event.appendMessage(value);
+        appendString(out, value);
+        ContextMap mdc = event.getMdc();
+        if(mdc.size() > 0) {
+            out.append(",\"mdc\":{");
+            for(int i = 0; i < mdc.size(); i++) {
+                if(i > 0) {
+                    out.append(',');
+                }
+                appendString(out, mdc.keyAt(i));
+                out.append(':');
+                appendString(out, mdc.valueAt(i));
+            }
+            out.append('}');
+        }
+        if(event.getThrown() != null) {
+            out.append(",\"exception\":");
+            exceptions.appendJson(out, event.getThrown());
+        }
+        out.append('}');
+    }
+
+    /**
+     * Appends a JSON string, escaping quotes, backslashes and control characters.
+     * Unpaired surrogates are escaped too, since they cannot be encoded in UTF-8.
+     * @param out the builder to append to
+     * @param text the text to write, null to write a JSON null
+     */
+    static void appendString(StringBuilder out, CharSequence text) {
+        if(text == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        int length = text.length();
+        int start = 0;
+        for(int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if(c >= 0x20 && c != '"' && c != '\\' && !Character.isSurrogate(c)) {
+                continue;
+            }
+            if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                // A surrogate pair is a valid character, written as it is
+                i++;
+                continue;
+            }
+            out.append(text, start, i);
+            start = i + 1;
+            switch(c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                case '\b':
+                    out.append("\\b");
+                    break;
+                case '\f':
+                    out.append("\\f");
+                    break;
+                default:
+                    out.append("\\u").append(HEX[c >> 12]).append(HEX[c >> 8 & 0xF]).append(HEX[c >> 4 & 0xF]).append(HEX[c & 0xF]);
+                    break;
+            }
+        }
+        out.append(text, start, length);
+        out.append('"');
+    }
+}
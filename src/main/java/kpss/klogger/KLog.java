@@ -1,24 +1,57 @@
 package kpss.klogger;
 
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
+import java.time.Instant;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * KLog is a simple logging utility for Java applications.
  * It provides methods to initialize the logger, set the log file path, and enable or disable debug mode.
- * It also allows logging messages with different severity levels (INFO, DEBUG, WARNING, ERROR, CRITICAL).
+ * It also allows logging messages with different severity levels (DEBUG, INFO, WARNING, ERROR, CRITICAL),
+ * through its static methods or through the named loggers returned by {@link #getLogger(Class)}.
  * 
  * @author POUSSE Kilian
  */
 public class KLog {
     
     /** The default log file path. */
-    private static LogConfig config = new LogConfig();
+    private static final LogConfig config = new LogConfig();
+
+    /** Stack walker used to capture the caller context */
+    private static final StackWalker WALKER = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+    /** Finds the first stack frame outside of KLog in a single walk */
+    private static final Function<Stream<StackWalker.StackFrame>, Optional<StackWalker.StackFrame>> CALLER =
+            frames -> frames.dropWhile(frame -> frame.getClassName().equals(KLog.class.getName())).findFirst();
+
+    /** Loggers returned by {@link #getLogger(String)}, by name */
+    private static final Map<String, Logger> LOGGERS = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the logger of a class, named after the class.
+     * The logger writes its entries with the class name as context, without walking the stack.
+     * @param type the class in which messages are logged.
+     * @return the logger, the same instance for every call with the same class.
+     */
+    public static Logger getLogger(Class<?> type) {
+        return getLogger(type.getName());
+    }
+
+    /**
+     * Gets a named logger.
+     * The name is the context of the entries and selects the level overrides that apply.
+     * @param name the logger name (e.g. a class or package name).
+     * @return the logger, the same instance for every call with the same name.
+     */
+    public static Logger getLogger(String name) {
+        return LOGGERS.computeIfAbsent(name, Logger::new);
+    }
 
     /**
      * Sets the debug mode for the logger.
@@ -36,6 +69,32 @@ public class KLog {
         return config.isDebugMode();
     }
 
+    /**
+     * Sets the level threshold of the logger: messages less severe than this level are not written.
+     * Setting the DEBUG level enables debug mode.
+     * @param level the least severe level written.
+     */
+    public static void setLevel(LogLevel level) {
+        config.setLevel(level);
+    }
+
+    /**
+     * Gets the level threshold of the logger.
+     * @return the least severe level written.
+     */
+    public static LogLevel getLevel() {
+        return config.getLevels().getThreshold();
+    }
+
+    /**
+     * Sets the level threshold of a package or class and everything below it.
+     * @param name the package or class name (e.g. "com.example.db").
+     * @param level the least severe level written, or null to use the global threshold again.
+     */
+    public static void setLevel(String name, LogLevel level) {
+        config.setLevel(name, level);
+    }
+
     /**
      * Sets the append mode for the logger.
      * @param b true to enable append mode, false to disable it.
@@ -52,6 +111,41 @@ public class KLog {
         return config.isAppendMode();
     }
 
+    /**
+     * Sets the asynchronous mode for the logger.
+     * In asynchronous mode, log entries are formatted and written by a background thread.
+     * @param b true to enable asynchronous mode, false to disable it.
+     */
+    public static void setAsyncMode(boolean b) {
+        config.setAsyncMode(b);
+    }
+
+    /**
+     * Checks if the logger is in asynchronous mode.
+     * @return true if asynchronous mode is enabled, false otherwise.
+     */
+    public static boolean isAsyncMode() {
+        return config.isAsyncMode();
+    }
+
+    /**
+     * Writes every pending log entry to the log file and forces it to the storage device.
+     * Log entries are buffered and written in batches; this method guarantees that every
+     * entry logged so far is durable. Pending entries are also written when the program exits.
+     */
+    public static void flush() {
+        config.flush();
+    }
+
+    /**
+     * Takes a snapshot of the logger metrics: entries written per level, bytes written,
+     * dropped entries, failed writes, queue depth, and rendering and write latencies.
+     * @return the metrics snapshot.
+     */
+    public static LogStats stats() {
+        return config.stats();
+    }
+
     /**
      * Sets the log file path for the logger.
      * @param path the path to the log file.
@@ -66,12 +160,23 @@ public class KLog {
     }
 
     /**
-     * Sets the log file path for the logger and enables append mode.
-     * @param path the path to the log file.
-     * @throws IOException if an I/O error occurs while opening the log file.
+     * Loads the logger configuration from a JSON file.
+     * With "watch" enabled in the file, the configuration is reloaded whenever the file changes.
+     * @param path the path to the configuration file.
+     * @throws IOException if an I/O error occurs while reading the file or opening the log file.
      */
     public static void setConfig(String path) throws IOException {
-        config.init(new FileInputStream(path));
+        config.load(path);
+    }
+
+    /**
+     * Loads the configuration file given to {@link #setConfig(String)} again.
+     * The new settings replace the current ones at once, without pausing the logging threads.
+     * @throws IOException if an I/O error occurs while reading the file or opening the log file.
+     * @throws IllegalStateException if the configuration was not loaded from a file.
+     */
+    public static void reloadConfig() throws IOException {
+        config.reload();
     }
 
     /**
@@ -84,24 +189,147 @@ public class KLog {
     }
 
     /**
-     * Writes a log message to the console and the log file.
-     * @param type the type of log message (INFO, DEBUG, WARNING, ERROR, CRITICAL).
+     * Writes a log message to the console and the log file if its level is enabled.
+     * @param level the level of the log message.
+     * @param message the log message.
+     */
+    private static void write(LogLevel level, String message) {
+        write(level, message, null);
+    }
+
+    /**
+     * Writes a log message with an exception to the console and the log file if its level is enabled.
+     * @param level the level of the log message.
+     * @param message the log message.
+     * @param thrown the exception associated with the message, or null.
+     */
+    private static void write(LogLevel level, String message, Throwable thrown) {
+        LogEvent event = event(level);
+        if(event != null) {
+            write(event.message(message).thrown(thrown));
+        }
+    }
+
+    /**
+     * Writes a log message with a given context to the console and the log file if its level is enabled.
+     * @param level the level of the log message.
+     * @param context the class in which the message was logged.
      * @param message the log message.
      */
-    private static void write(String type, String message) {
-        String context = StackWalker.getInstance()
-                .walk(frames -> frames.skip(2).findFirst().get().getClassName());
-        context += "." + StackWalker.getInstance()
-                .walk(frames -> frames.skip(2).findFirst().get().getMethodName());
+    private static void write(LogLevel level, Class<?> context, String message) {
+        LogEvent event = event(level, context);
+        if(event != null) {
+            write(event.message(message));
+        }
+    }
+
+    /**
+     * Writes a log event to the console and the log file, then releases it.
+     * @param event the log event.
+     */
+    static void write(LogEvent event) {
+        try {
+            config.write(event);
+        }
+        finally {
+            event.release();
+        }
+    }
+
+    /**
+     * Creates a log event if its level is enabled for the caller.
+     * The stack is walked at most once, only if the level depends on the caller class
+     * or the caller context is needed.
+     * @param level the level of the log message.
+     * @return the log event, to be written with {@link #write(LogEvent)}, or null if the level is disabled.
+     */
+    private static LogEvent event(LogLevel level) {
+        LogSnapshot settings = config.getSnapshot();
+        LevelFilter levels = settings.getLevels();
+        if(!levels.isEnabledSomewhere(level)) {
+            return null;
+        }
+        boolean filter = !levels.isEnabledEverywhere(level);
+        boolean context = settings.needsContext(level);
+        if(!filter && !context) {
+            return event(level, "");
+        }
 
-        Map<String, String> data = new HashMap<>();
-        data.put("type", type);
-        data.put("context", context);
-        data.put("message", message);
-        data.put("date", LocalDateTime.now().format(DateTimeFormatter.ofPattern(config.getDateFormat())));
+        StackWalker.StackFrame frame = WALKER.walk(CALLER).orElse(null);
+        if(frame == null) {
+            return event(level, "");
+        }
+        if(filter && !levels.isEnabled(level, frame.getDeclaringClass())) {
+            return null;
+        }
+        return event(level, context ? frame.getClassName() + "." + frame.getMethodName() : "");
+    }
 
-        config.writeToConsole(data);
-        config.writeToFile(data);
+    /**
+     * Creates a log event with a given context if its level is enabled, without walking the stack.
+     * @param level the level of the log message.
+     * @param context the class in which the message was logged.
+     * @return the log event, to be written with {@link #write(LogEvent)}, or null if the level is disabled.
+     */
+    private static LogEvent event(LogLevel level, Class<?> context) {
+        if(!config.getLevels().isEnabled(level, context)) {
+            return null;
+        }
+        return event(level, context.getName());
+    }
+
+    /**
+     * Creates a log event.
+     * @param level the level of the log message.
+     * @param context the context in which the message was logged.
+     * @return the log event, to be written with {@link #write(LogEvent)}.
+     */
+    static LogEvent event(LogLevel level, String context) {
+        long timestamp;
+        int nanos = 0;
+        if(config.needsNanos()) {
+            Instant now = Instant.now();
+            timestamp = now.toEpochMilli();
+            nanos = now.getNano() % 1_000_000;
+        }
+        else {
+            timestamp = System.currentTimeMillis();
+        }
+        return LogEvent.acquire().set(level, context, null, timestamp, nanos, Thread.currentThread().getName())
+                .mdc(MDC.current());
+    }
+
+    /**
+     * Gets the current level settings.
+     * @return the global threshold and the per-logger overrides.
+     */
+    static LevelFilter levels() {
+        return config.getLevels();
+    }
+
+    /**
+     * Checks if a level is enabled for the caller.
+     * Use it to guard expensive work that is only needed for logging.
+     * @param level the level to check.
+     * @return true if messages of this level are written, false otherwise.
+     */
+    public static boolean isEnabled(LogLevel level) {
+        LevelFilter levels = config.getLevels();
+        if(levels.isEnabledEverywhere(level) || !levels.isEnabledSomewhere(level)) {
+            return levels.isEnabledEverywhere(level);
+        }
+        StackWalker.StackFrame frame = WALKER.walk(CALLER).orElse(null);
+        return frame == null || levels.isEnabled(level, frame.getDeclaringClass());
+    }
+
+    /**
+     * Checks if a level is enabled for a class.
+     * @param level the level to check.
+     * @param context the class in which messages are logged.
+     * @return true if messages of this level are written, false otherwise.
+     */
+    public static boolean isEnabled(LogLevel level, Class<?> context) {
+        return config.getLevels().isEnabled(level, context);
     }
 
     /**
@@ -109,16 +337,188 @@ public class KLog {
      * @param msg the message to log.
      */
     public static void log(String msg) {
-        write("INFO", msg);
+        write(LogLevel.INFO, msg);
+    }
+
+    /**
+     * Logs an informational message with the given class as context, without walking the stack.
+     * @param context the class in which the message is logged.
+     * @param msg the message to log.
+     */
+    public static void log(Class<?> context, String msg) {
+        write(LogLevel.INFO, context, msg);
+    }
+
+    /**
+     * Logs an informational message built from a pattern and one argument.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param arg the argument.
+     */
+    public static void log(String format, Object arg) {
+        LogEvent event = event(LogLevel.INFO);
+        if(event != null) {
+            write(event.message(format).arg(arg));
+        }
+    }
+
+    /**
+     * Logs an informational message built from a pattern and two arguments.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param arg1 the first argument.
+     * @param arg2 the second argument.
+     */
+    public static void log(String format, Object arg1, Object arg2) {
+        LogEvent event = event(LogLevel.INFO);
+        if(event != null) {
+            write(event.message(format).arg(arg1).arg(arg2));
+        }
+    }
+
+    /**
+     * Logs an informational message built from a pattern and arguments.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param args the arguments.
+     */
+    public static void log(String format, Object... args) {
+        LogEvent event = event(LogLevel.INFO);
+        if(event != null) {
+            write(event.message(format).args(args));
+        }
+    }
+
+    /**
+     * Logs an informational message built from a pattern and a long argument, without boxing it.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param arg the argument.
+     */
+    public static void log(String format, long arg) {
+        LogEvent event = event(LogLevel.INFO);
+        if(event != null) {
+            write(event.message(format).arg(arg));
+        }
+    }
+
+    /**
+     * Logs an informational message built from a pattern and a double argument, without boxing it.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param arg the argument.
+     */
+    public static void log(String format, double arg) {
+        LogEvent event = event(LogLevel.INFO);
+        if(event != null) {
+            write(event.message(format).arg(arg));
+        }
+    }
+
+    /**
+     * Logs an informational message supplied on demand.
+     * The supplier is only called if the entry is written, by the writer thread if every sink is asynchronous.
+     * @param msg the supplier of the message to log.
+     */
+    public static void log(Supplier<String> msg) {
+        LogEvent event = event(LogLevel.INFO);
+        if(event != null) {
+            write(event.message(msg));
+        }
     }
 
     /**
-     * Logs a debug message if debug mode is enabled.
+     * Logs a debug message if the DEBUG level is enabled.
      * @param msg the message to log.
      */
     public static void debug(String msg) {
-        if(isDebugMode()) {
-            write("DEBUG", msg);
+        write(LogLevel.DEBUG, msg);
+    }
+
+    /**
+     * Logs a debug message with the given class as context if the DEBUG level is enabled, without walking the stack.
+     * @param context the class in which the message is logged.
+     * @param msg the message to log.
+     */
+    public static void debug(Class<?> context, String msg) {
+        write(LogLevel.DEBUG, context, msg);
+    }
+
+    /**
+     * Logs a debug message built from a pattern and one argument if the DEBUG level is enabled.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param arg the argument.
+     */
+    public static void debug(String format, Object arg) {
+        LogEvent event = event(LogLevel.DEBUG);
+        if(event != null) {
+            write(event.message(format).arg(arg));
+        }
+    }
+
+    /**
+     * Logs a debug message built from a pattern and two arguments if the DEBUG level is enabled.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param arg1 the first argument.
+     * @param arg2 the second argument.
+     */
+    public static void debug(String format, Object arg1, Object arg2) {
+        LogEvent event = event(LogLevel.DEBUG);
+        if(event != null) {
+            write(event.message(format).arg(arg1).arg(arg2));
+        }
+    }
+
+    /**
+     * Logs a debug message built from a pattern and arguments if the DEBUG level is enabled.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param args the arguments.
+     */
+    public static void debug(String format, Object... args) {
+        LogEvent event = event(LogLevel.DEBUG);
+        if(event != null) {
+            write(event.message(format).args(args));
+        }
+    }
+
+    /**
+     * Logs a debug message built from a pattern and a long argument if the DEBUG level is enabled, without boxing it.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param arg the argument.
+     */
+    public static void debug(String format, long arg) {
+        LogEvent event = event(LogLevel.DEBUG);
+        if(event != null) {
+            write(event.message(format).arg(arg));
+        }
+    }
+
+    /**
+     * Logs a debug message built from a pattern and a double argument if the DEBUG level is enabled, without boxing it.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param arg the argument.
+     */
+    public static void debug(String format, double arg) {
+        LogEvent event = event(LogLevel.DEBUG);
+        if(event != null) {
+            write(event.message(format).arg(arg));
+        }
+    }
+
+    /**
+     * Logs a debug message supplied on demand if the DEBUG level is enabled.
+     * The supplier is only called if the entry is written, by the writer thread if every sink is asynchronous.
+     * @param msg the supplier of the message to log.
+     */
+    public static void debug(Supplier<String> msg) {
+        LogEvent event = event(LogLevel.DEBUG);
+        if(event != null) {
+            write(event.message(msg));
         }
     }
 
@@ -127,7 +527,94 @@ public class KLog {
      * @param msg the message to log.
      */
     public static void warning(String msg) {
-        write("WARNING", msg);
+        write(LogLevel.WARNING, msg);
+    }
+
+    /**
+     * Logs a warning message with the given class as context, without walking the stack.
+     * @param context the class in which the message is logged.
+     * @param msg the message to log.
+     */
+    public static void warning(Class<?> context, String msg) {
+        write(LogLevel.WARNING, context, msg);
+    }
+
+    /**
+     * Logs a warning message built from a pattern and one argument.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param arg the argument.
+     */
+    public static void warning(String format, Object arg) {
+        LogEvent event = event(LogLevel.WARNING);
+        if(event != null) {
+            write(event.message(format).arg(arg));
+        }
+    }
+
+    /**
+     * Logs a warning message built from a pattern and two arguments.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param arg1 the first argument.
+     * @param arg2 the second argument.
+     */
+    public static void warning(String format, Object arg1, Object arg2) {
+        LogEvent event = event(LogLevel.WARNING);
+        if(event != null) {
+            write(event.message(format).arg(arg1).arg(arg2));
+        }
+    }
+
+    /**
+     * Logs a warning message built from a pattern and arguments.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param args the arguments.
+     */
+    public static void warning(String format, Object... args) {
+        LogEvent event = event(LogLevel.WARNING);
+        if(event != null) {
+            write(event.message(format).args(args));
+        }
+    }
+
+    /**
+     * Logs a warning message built from a pattern and a long argument, without boxing it.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param arg the argument.
+     */
+    public static void warning(String format, long arg) {
+        LogEvent event = event(LogLevel.WARNING);
+        if(event != null) {
+            write(event.message(format).arg(arg));
+        }
+    }
+
+    /**
+     * Logs a warning message built from a pattern and a double argument, without boxing it.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param arg the argument.
+     */
+    public static void warning(String format, double arg) {
+        LogEvent event = event(LogLevel.WARNING);
+        if(event != null) {
+            write(event.message(format).arg(arg));
+        }
+    }
+
+    /**
+     * Logs a warning message supplied on demand.
+     * The supplier is only called if the entry is written, by the writer thread if every sink is asynchronous.
+     * @param msg the supplier of the message to log.
+     */
+    public static void warning(Supplier<String> msg) {
+        LogEvent event = event(LogLevel.WARNING);
+        if(event != null) {
+            write(event.message(msg));
+        }
     }
 
     /**
@@ -135,7 +622,107 @@ public class KLog {
      * @param msg the message to log.
      */
     public static void error(String msg) {
-        write("ERROR", msg);
+        write(LogLevel.ERROR, msg);
+    }
+
+    /**
+     * Logs an error message with the given class as context, without walking the stack.
+     * @param context the class in which the message is logged.
+     * @param msg the message to log.
+     */
+    public static void error(Class<?> context, String msg) {
+        write(LogLevel.ERROR, context, msg);
+    }
+
+    /**
+     * Logs an error message built from a pattern and one argument.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param arg the argument.
+     */
+    public static void error(String format, Object arg) {
+        LogEvent event = event(LogLevel.ERROR);
+        if(event != null) {
+            write(event.message(format).arg(arg));
+        }
+    }
+
+    /**
+     * Logs an error message built from a pattern and two arguments.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param arg1 the first argument.
+     * @param arg2 the second argument.
+     */
+    public static void error(String format, Object arg1, Object arg2) {
+        LogEvent event = event(LogLevel.ERROR);
+        if(event != null) {
+            write(event.message(format).arg(arg1).arg(arg2));
+        }
+    }
+
+    /**
+     * Logs an error message built from a pattern and arguments.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param args the arguments.
+     */
+    public static void error(String format, Object... args) {
+        LogEvent event = event(LogLevel.ERROR);
+        if(event != null) {
+            write(event.message(format).args(args));
+        }
+    }
+
+    /**
+     * Logs an error message built from a pattern and a long argument, without boxing it.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param arg the argument.
+     */
+    public static void error(String format, long arg) {
+        LogEvent event = event(LogLevel.ERROR);
+        if(event != null) {
+            write(event.message(format).arg(arg));
+        }
+    }
+
+    /**
+     * Logs an error message built from a pattern and a double argument, without boxing it.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param arg the argument.
+     */
+    public static void error(String format, double arg) {
+        LogEvent event = event(LogLevel.ERROR);
+        if(event != null) {
+            write(event.message(format).arg(arg));
+        }
+    }
+
+    /**
+     * Logs an error message supplied on demand.
+     * The supplier is only called if the entry is written, by the writer thread if every sink is asynchronous.
+     * @param msg the supplier of the message to log.
+     */
+    public static void error(Supplier<String> msg) {
+        LogEvent event = event(LogLevel.ERROR);
+        if(event != null) {
+            write(event.message(msg));
+        }
+    }
+
+    /**
+     * Logs an error message with an exception and the given class as context.
+     * @param context the class in which the message is logged.
+     * @param msg the message to log.
+     * @param e the exception associated with the error.
+     */
+    public static void error(Class<?> context, String msg, Exception e) {
+        LogEvent event = event(LogLevel.ERROR, context);
+        if(event != null) {
+            write(event.message(msg).thrown(e));
+        }
     }
 
     /**
@@ -144,7 +731,10 @@ public class KLog {
      * @param e the exception associated with the error.
      */
     public static void error(String msg, Exception e) {
-        write("ERROR", msg + exceptionToStr(e));
+        LogEvent event = event(LogLevel.ERROR);
+        if(event != null) {
+            write(event.message(msg).thrown(e));
+        }
     }
 
     /**
@@ -152,7 +742,10 @@ public class KLog {
      * @param e the exception associated with the error.
      */
     public static void error(Exception e) {
-        write("ERROR", "An exception was caught" + exceptionToStr(e));
+        LogEvent event = event(LogLevel.ERROR);
+        if(event != null) {
+            write(event.message("An exception was caught").thrown(e));
+        }
     }
 
     /**
@@ -161,8 +754,8 @@ public class KLog {
      */
     public static void critical(String msg) {
         int code = 1;
-        write("CRITICAL", msg + criticalCode(code));
-        System.exit(code);
+        write(LogLevel.CRITICAL, msg + criticalCode(code));
+        terminate(code);
     }
 
     /**
@@ -171,8 +764,8 @@ public class KLog {
      * @param code the exit code for the program termination.
      */
     public static void critical(String msg, int code) {
-        write("CRITICAL", msg + criticalCode(code));
-        System.exit(code);
+        write(LogLevel.CRITICAL, msg + criticalCode(code));
+        terminate(code);
     }
 
     /**
@@ -182,8 +775,8 @@ public class KLog {
      */
     public static void critical(String msg, Exception e) {
         int code = e.hashCode();
-        write("CRITICAL", msg + exceptionToStr(e) + criticalCode(code));
-        System.exit(code);
+        write(LogLevel.CRITICAL, msg + criticalCode(code), e);
+        terminate(code);
     }
 
     /**
@@ -192,24 +785,8 @@ public class KLog {
      */
     public static void critical(Exception e) {
         int code = e.hashCode();
-        write("CRITICAL", "An exception was caught" + exceptionToStr(e) + criticalCode(code));
-        System.exit(code);
-    }
-
-    /**
-     * Converts an exception to a string representation.
-     * @param e the exception to convert.
-     * @return the string representation of the exception.
-     */
-    private static String exceptionToStr(Exception e) {
-        StringBuilder str = new StringBuilder("\n    --> " + e.getClass().getSimpleName() + ": " + e.getMessage());
-        int i = e.getStackTrace().length;
-        for(StackTraceElement element: e.getStackTrace()) {
-            String branch =  i > 1 ? "├──" : "└──";
-            str.append("\n        " + branch +" ").append(element.toString());
-            i--;
-        }
-        return str.toString();
+        write(LogLevel.CRITICAL, "An exception was caught" + criticalCode(code), e);
+        terminate(code);
     }
 
     /**
@@ -217,11 +794,20 @@ public class KLog {
      * @param code the error code.
      * @return the string representation of the critical error code.
      */
-    private static String criticalCode(int code) {
+    static String criticalCode(int code) {
         StringBuilder str = new StringBuilder("\n    --> Critical error code: " + code);
         return str.toString();
     }
 
+    /**
+     * Writes every pending log entry and terminates the program after a critical error.
+     * @param code the exit code for the program termination.
+     */
+    static void terminate(int code) {
+        config.flush();
+        System.exit(code);
+    }
+
     /**
      * Private constructor to prevent instantiation of the KLog class.
      */
@@ -0,0 +1,135 @@
+package kpss.klogger;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LatencyHistogram records durations in nanoseconds into log-linear buckets.
+ * Each power of two is split into {@value #SUB_BUCKETS} buckets, so a recorded value is known
+ * within 12.5% over the whole range, with a fixed number of buckets. Recording is lock-free:
+ * each bucket is a {@link LongAdder}, which stripes its count over several cells when threads
+ * record concurrently instead of contending on a single counter.
+ *
+ * @author POUSSE Kilian
+ */
+final class LatencyHistogram {
+
+    /** Bits of a value kept below its highest one bit */
+    private static final int SUB_BITS = 3;
+
+    /** Number of buckets per power of two */
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    /** Number of buckets: the exact small values, then one set of sub-buckets per power of two */
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    /** Number of values recorded in each bucket */
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+
+    /** Sum of the recorded values */
+    private final LongAdder sum = new LongAdder();
+
+    /** Largest recorded value */
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Creates an empty histogram.
+     */
+    LatencyHistogram() {
+        for(int i = 0; i < BUCKETS; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a duration.
+     * @param nanos the duration in nanoseconds, negative values are recorded as 0
+     */
+    void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts[bucket(value)].increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Gets the bucket of a value.
+     * @param value the value, not negative
+     * @return the bucket index
+     */
+    static int bucket(long value) {
+        if(value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Gets the largest value of a bucket.
+     * @param bucket the bucket index
+     * @return the largest value counted in the bucket
+     */
+    static long highestValue(int bucket) {
+        if(bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long width = 1L << (exponent - SUB_BITS);
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BITS);
+        return lowest + width - 1;
+    }
+
+    /**
+     * Takes a snapshot of the recorded durations.
+     * Values recorded during the snapshot may or may not be included.
+     * @return the count, mean, percentiles and maximum of the recorded durations
+     */
+    LogStats.Latency snapshot() {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts[i].sum();
+            total += snapshot[i];
+        }
+        long largest = max.get();
+        return new LogStats.Latency(total, total == 0 ? 0 : sum.sum() / total,
+                percentile(snapshot, total, 0.50, largest), percentile(snapshot, total, 0.90, largest),
+                percentile(snapshot, total, 0.99, largest), percentile(snapshot, total, 0.999, largest), largest);
+    }
+
+    /**
+     * Gets a percentile of the recorded durations.
+     * @param snapshot the bucket counts
+     * @param total the sum of the bucket counts
+     * @param quantile the quantile, between 0 and 1
+     * @param largest the largest recorded value
+     * @return the highest value of the bucket holding the percentile, at most the largest value
+     */
+    private static long percentile(long[] snapshot, long total, double quantile, long largest) {
+        if(total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for(int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if(seen >= rank) {
+                return Math.min(highestValue(i), largest);
+            }
+        }
+        return largest;
+    }
+
+    /**
+     * Clears the recorded durations.
+     */
+    void reset() {
+        for(LongAdder count: counts) {
+            count.reset();
+        }
+        sum.reset();
+        max.reset();
+    }
+}
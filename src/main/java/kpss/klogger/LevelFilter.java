@@ -0,0 +1,174 @@
+package kpss.klogger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * LevelFilter holds the global level threshold and the per-logger overrides.
+ * An override applies to a logger name (usually a class name) and to every name below it:
+ * "com.example" applies to "com.example.Service" and "com.example.Service$Inner".
+ * The most specific override wins. Resolved thresholds are cached per class and per name,
+ * so the prefix search only runs once for each logger.
+ * A filter is immutable: changing a level builds a new filter, which also drops the caches.
+ *
+ * @author POUSSE Kilian
+ */
+final class LevelFilter {
+
+    /** Global threshold */
+    private final LogLevel threshold;
+
+    /** Override prefixes, the longest first */
+    private final String[] prefixes;
+
+    /** Override levels, in the order of the prefixes */
+    private final LogLevel[] levels;
+
+    /** Least severe threshold of the filter */
+    private final LogLevel min;
+
+    /** Most severe threshold of the filter */
+    private final LogLevel max;
+
+    /** Thresholds resolved per class */
+    private final ClassValue<LogLevel> byClass = new ClassValue<LogLevel>() {
+        @Override
+        protected LogLevel computeValue(Class<?> type) {
+            return resolve(type.getName());
+        }
+    };
+
+    /** Thresholds resolved per logger name */
+    private final Map<String, LogLevel> byName = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a filter.
+     * @param threshold the global threshold
+     * @param overrides the thresholds of logger names and their children
+     */
+    LevelFilter(LogLevel threshold, Map<String, LogLevel> overrides) {
+        this.threshold = threshold;
+        List<String> names = new ArrayList<>(overrides.keySet());
+        names.sort((a, b) -> b.length() - a.length());
+        this.prefixes = names.toArray(new String[0]);
+        this.levels = new LogLevel[prefixes.length];
+        LogLevel low = threshold;
+        LogLevel high = threshold;
+        for(int i = 0; i < prefixes.length; i++) {
+            levels[i] = overrides.get(prefixes[i]);
+            low = levels[i].ordinal() < low.ordinal() ? levels[i] : low;
+            high = levels[i].ordinal() > high.ordinal() ? levels[i] : high;
+        }
+        this.min = low;
+        this.max = high;
+    }
+
+    /**
+     * Gets the global threshold.
+     * @return the global threshold
+     */
+    LogLevel getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Gets the per-logger overrides.
+     * @return the thresholds of logger names and their children
+     */
+    Map<String, LogLevel> getOverrides() {
+        Map<String, LogLevel> overrides = new HashMap<>();
+        for(int i = 0; i < prefixes.length; i++) {
+            overrides.put(prefixes[i], levels[i]);
+        }
+        return Collections.unmodifiableMap(overrides);
+    }
+
+    /**
+     * Creates a copy of this filter with another global threshold.
+     * @param threshold the new global threshold
+     * @return the new filter
+     */
+    LevelFilter withThreshold(LogLevel threshold) {
+        return new LevelFilter(threshold, getOverrides());
+    }
+
+    /**
+     * Creates a copy of this filter with another override.
+     * @param name the logger name
+     * @param level the threshold of the logger and its children, null to remove the override
+     * @return the new filter
+     */
+    LevelFilter withOverride(String name, LogLevel level) {
+        Map<String, LogLevel> overrides = new HashMap<>(getOverrides());
+        if(level == null) {
+            overrides.remove(name);
+        }
+        else {
+            overrides.put(name, level);
+        }
+        return new LevelFilter(threshold, overrides);
+    }
+
+    /**
+     * Checks if a level is enabled for at least one logger.
+     * @param level the level to check
+     * @return false if the level is disabled everywhere, true otherwise
+     */
+    boolean isEnabledSomewhere(LogLevel level) {
+        return level.isAtLeast(min);
+    }
+
+    /**
+     * Checks if a level is enabled for every logger, so that the logger does not need to be known.
+     * @param level the level to check
+     * @return true if the level is enabled everywhere, false otherwise
+     */
+    boolean isEnabledEverywhere(LogLevel level) {
+        return level.isAtLeast(max);
+    }
+
+    /**
+     * Checks if a level is enabled for the logger of a class.
+     * @param level the level to check
+     * @param type the class the entry is logged from
+     * @return true if the level is enabled, false otherwise
+     */
+    boolean isEnabled(LogLevel level, Class<?> type) {
+        return level.isAtLeast(prefixes.length == 0 ? threshold : byClass.get(type));
+    }
+
+    /**
+     * Checks if a level is enabled for a named logger.
+     * @param level the level to check
+     * @param name the logger name
+     * @return true if the level is enabled, false otherwise
+     */
+    boolean isEnabled(LogLevel level, String name) {
+        return level.isAtLeast(prefixes.length == 0 ? threshold : byName.computeIfAbsent(name, this::resolve));
+    }
+
+    /**
+     * Resolves the threshold of a logger name with the most specific override.
+     * @param name the logger name
+     * @return the threshold of the logger
+     */
+    LogLevel resolve(String name) {
+        for(int i = 0; i < prefixes.length; i++) {
+            String prefix = prefixes[i];
+            if(name.startsWith(prefix)) {
+                if(name.length() == prefix.length()) {
+                    return levels[i];
+                }
+                char next = name.charAt(prefix.length());
+                if(next == '.' || next == '$') {
+                    return levels[i];
+                }
+            }
+        }
+        return threshold;
+    }
+}
@@ -0,0 +1,133 @@
+package kpss.klogger;
+
+import java.io.IOException;
+
+/**
+ * LogAppender is the base class of the log sinks: the console, a log file, etc.
+ * Each appender has its own layout, level threshold and writing mode, and receives the log
+ * entries already rendered by the {@link LogPipeline}: appenders sharing a layout are given
+ * the same rendered line.
+ *
+ * @author POUSSE Kilian
+ */
+abstract class LogAppender {
+
+    /** Name of the appender, unique within a pipeline */
+    private final String name;
+
+    /** Layout of the log entries */
+    private final LogLayout layout;
+
+    /** Least severe level written, null to write every entry */
+    private final LogLevel threshold;
+
+    /** Asynchronous flag: true to be written by the writer thread */
+    private final boolean async;
+
+    /**
+     * Creates an appender.
+     * @param name the name of the appender
+     * @param layout the layout of the log entries
+     * @param threshold the least severe level written, null to write every entry
+     * @param async true to be written by the writer thread, false to be written by the caller
+     */
+    LogAppender(String name, LogLayout layout, LogLevel threshold, boolean async) {
+        this.name = name;
+        this.layout = layout;
+        this.threshold = threshold;
+        this.async = async;
+    }
+
+    /**
+     * Gets the name of the appender.
+     * @return the name, unique within a pipeline
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the layout of the log entries.
+     * @return the layout
+     */
+    LogLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Gets the level threshold.
+     * @return the least severe level written, null if every entry is written
+     */
+    LogLevel getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Checks if the appender is written by the writer thread.
+     * @return true in asynchronous mode, false otherwise
+     */
+    boolean isAsync() {
+        return async;
+    }
+
+    /**
+     * Checks if the appender writes an entry of a level.
+     * @param level the log level
+     * @return true if the level is at least the threshold, false otherwise
+     */
+    boolean accepts(LogLevel level) {
+        return threshold == null || level.isAtLeast(threshold);
+    }
+
+    /**
+     * Checks if the entries are rendered with colors when the color mode allows it.
+     * @return true for a colored appender, false otherwise
+     */
+    boolean isColored() {
+        return false;
+    }
+
+    /**
+     * Checks if the entries are encoded from the event instead of being rendered by the layout.
+     * @return true for a binary appender, false otherwise
+     */
+    boolean isBinary() {
+        return false;
+    }
+
+    /**
+     * Writes a rendered log entry.
+     * @param line the rendered entry, without line separator, null for a binary appender
+     * @param event the log entry
+     * @return the number of bytes written to a file, 0 for other sinks
+     * @throws java.nio.channels.ClosedChannelException if the appender is closed
+     * @throws IOException if an I/O error occurs
+     */
+    abstract int append(CharSequence line, LogEvent event) throws IOException;
+
+    /**
+     * Creates an appender with the same settings as this closed one, opening its output again
+     * in append mode or sharing the output of another appender opened again.
+     * @param reopened an appender opened again on the same output, null to open it
+     * @return the new appender, this appender if it has no output to open
+     * @throws IOException if the output cannot be opened
+     */
+    LogAppender reopen(LogAppender reopened) throws IOException {
+        return this;
+    }
+
+    /**
+     * Writes the buffered entries.
+     * @param force true to also force them to the storage device
+     * @throws IOException if an I/O error occurs
+     */
+    void flush(boolean force) throws IOException {
+    }
+
+    /**
+     * Closes the appender.
+     * @throws IOException if an I/O error occurs
+     */
+    void close() throws IOException {
+    }
+}
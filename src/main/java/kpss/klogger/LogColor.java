@@ -1,10 +1,13 @@
 package kpss.klogger;
 
 import java.awt.Color;
+import java.util.Locale;
 
 /**
  * LogColor is a utility class for creating ANSI escape codes for colored console output.
  * It provides predefined colors and allows creating custom colors using RGB or hexadecimal values.
+ * The color is kept as a packed RGB value and its escape code is computed once, when it is set:
+ * AWT is only loaded by the methods taking or returning a {@link Color}.
  * 
  * @author POUSSE Kilian
  */
@@ -66,8 +69,8 @@ public class LogColor {
     /** ANSI escape code for the color */
     private String ansi = "";
 
-    /** RGB color value */
-    private Color color = new Color(0, 0, 0);
+    /** RGB color value, packed as 0xRRGGBB */
+    private int rgb = 0;
 
     /**
      * Private constructor to prevent instantiation without parameters.
@@ -124,7 +127,15 @@ public class LogColor {
      * @return the Color object representing the color
      */
     public Color getColor() {
-        return color;
+        return new Color(rgb);
+    }
+
+    /**
+     * Returns the RGB color value.
+     * @return the color packed as 0xRRGGBB
+     */
+    public int getRGB() {
+        return rgb;
     }
 
     /**
@@ -132,8 +143,7 @@ public class LogColor {
      * @param color the Color object representing the color
      */
     public void setColor(Color color) {
-        this.color = color;
-        this.ansi = String.format("\u001B[38;2;%d;%d;%dm", color.getRed(), color.getGreen(), color.getBlue());
+        setColor(color.getRGB());
     }
 
     /**
@@ -141,10 +151,13 @@ public class LogColor {
      * @param r the red component (0-255)
      * @param g the green component (0-255)
      * @param b the blue component (0-255)
+     * @throws IllegalArgumentException if a component is outside of the range 0-255
      */
     public void setColor(int r, int g, int b) {
-        this.color = new Color(r, g, b);
-        this.ansi = String.format("\u001B[38;2;%d;%d;%dm", r, g, b);
+        if(((r | g | b) & ~0xFF) != 0) {
+            throw new IllegalArgumentException("Color component outside of the range 0-255.");
+        }
+        setColor((r << 16) | (g << 8) | b);
     }
 
     /**
@@ -152,11 +165,9 @@ public class LogColor {
      * @param hexa the hexadecimal color value (e.g., 0xFF0000 for red)
      */
     public void setColor(int hexa) {
-        int r = (hexa >> 16) & 0xFF;
-        int g = (hexa >> 8) & 0xFF;
-        int b = hexa & 0xFF;
-        this.color = new Color(r, g, b);
-        this.ansi = String.format("\u001B[38;2;%d;%d;%dm", r, g, b);
+        this.rgb = hexa & 0xFFFFFF;
+        this.ansi = new StringBuilder(19).append("\u001B[38;2;").append((rgb >> 16) & 0xFF).append(';')
+                .append((rgb >> 8) & 0xFF).append(';').append(rgb & 0xFF).append('m').toString();
     }
 
     /**
@@ -170,8 +181,7 @@ public class LogColor {
         int r = Integer.parseInt(hexa.substring(1, 3), 16);
         int g = Integer.parseInt(hexa.substring(3, 5), 16);
         int b = Integer.parseInt(hexa.substring(5, 7), 16);
-        this.color = new Color(r, g, b);
-        this.ansi = String.format("\u001B[38;2;%d;%d;%dm", r, g, b);
+        setColor(r, g, b);
     }
 
     /**
@@ -179,6 +189,6 @@ public class LogColor {
      * @return the hexadecimal color value (e.g., #FF0000 for red)
      */
     public String getHexa() {
-        return String.format("#%02X%02X%02X", color.getRed(), color.getGreen(), color.getBlue());
+        return "#" + Integer.toHexString(0x1000000 | rgb).substring(1).toUpperCase(Locale.ROOT);
     }
 }
@@ -1,49 +1,109 @@
 package kpss.klogger;
 
-import java.io.FileWriter;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * LogConfig is a configuration class for the KLogger library.
  * It allows setting up the logging format, colors, and file output options.
+ * Log entries are written to a {@link LogPipeline} of appenders: by default the console and,
+ * once opened, the log file; the "sinks" section of the JSON configuration declares any other set.
+ * The settings used by log calls are published as an immutable {@link LogSnapshot}:
+ * configuration changes are serialized and swap in a new snapshot, while log calls
+ * read the current one without locking.
+ * <p>
+ * Loading a configuration builds the whole snapshot aside (compiled layouts, colors, opened files)
+ * and publishes it in a single swap. Log files whose path and settings did not change stay open;
+ * the appenders left behind are flushed and closed by a background thread. A configuration loaded
+ * from a file can be reloaded, by {@link #reload()} or on change with the "watch" setting.
  * 
  * @author POUSSE Kilian
  */
 class LogConfig {
 
-    /** Debug mode flag */
-    private boolean debugMode = false;
+    /** Name of the default console appender */
+    static final String CONSOLE = "console";
 
-    /** Append mode flag */
-    private boolean appendMode = true;
+    /** Name of the default log file appender, the one opened by {@link #openLogFile(String)} */
+    static final String FILE = "file";
+
+    /** Type and default name of the binary log file sinks */
+    static final String BINARY = "binary";
+
+    /** Type and default name of the routing log file sinks */
+    static final String ROUTING = "routing";
+
+    /** Metrics of the logger, kept across configuration changes */
+    private final LogMetrics metrics = new LogMetrics();
+
+    /** Current settings used to write log entries */
+    private volatile LogSnapshot snapshot;
+
+    /** Lock serializing the configuration changes, not a monitor so that a virtual thread holding it is not pinned */
+    private final ReentrantLock configLock = new ReentrantLock();
+
+    /** Lock held while appenders are replaced, so that writers of a closed appender can wait for the new one */
+    private final ReentrantLock outputLock = new ReentrantLock();
 
     /** Log file path */
     private String logFilePath = null;
 
-    /** Log file writer */
-    private FileWriter logFile = null;
+    /** Settings the log files are opened with */
+    private FileSettings fileSettings = FileSettings.DEFAULT;
+
+    /** Path of the configuration file, null if the configuration was not loaded from a file */
+    private String configPath = null;
 
-    /** Map of log types to their corresponding colors */
-    private Map<String, LogColor> colors = new HashMap<>();
+    /** Watcher reloading the configuration file on change, null if the file is not watched */
+    private ConfigWatcher watcher = null;
 
     /** Console log format */
     private String consoleFormat = "[{type}][{context}]: {message}";
 
-    /** File log format */
+    /** Log file format */
     private String fileFormat = "{date} [{type}][{context}]: {message}";
 
-    /** Date format for log entries */
-    private String dateFormat = "yyyy-MM-dd HH:mm:ss";
+    /** Escaped braces flag: "{{" and "}}" are read as literal braces in formats */
+    private boolean escapeBraces = false;
+
+    /** Format of the logged exceptions */
+    private ExceptionFormat exceptionFormat = ExceptionFormat.DEFAULT;
+
+    /** Ring buffer capacity in asynchronous mode */
+    private int asyncBufferSize = 1024;
+
+    /** Multi-producer flag in asynchronous mode: false if only one thread ever logs */
+    private boolean multiProducer = true;
+
+    /** Wait strategy in asynchronous mode */
+    private WaitStrategy waitStrategy = WaitStrategy.PARK;
+
+    /** Overflow policy in asynchronous mode */
+    private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+    /** Periodic task reporting the entries dropped by the rate limit, null if entries are not throttled */
+    private ScheduledFuture<?> summaries = null;
 
     /**
      * Default constructor for LogConfig.
      * Initializes the default colors for log types.
      */
     LogConfig() { 
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "KLogger-shutdown"));
+        Map<String, LogColor> colors = new HashMap<>();
         colors.put("INFO", new LogColor(0, 170, 255));    // #00AAFF
         colors.put("DEBUG", new LogColor(170, 170, 170)); // #AAAAAA
         colors.put("WARNING", LogColor.YELLOW);                 // #FFFF00
@@ -52,6 +112,34 @@ class LogConfig {
         colors.put("context", LogColor.GRAY);                   // #AAAAAA
         colors.put("date", new LogColor(0, 170, 0));      // #00AA00
         colors.put("message", LogColor.RESET);                  // #FFFFFF
+        LogPipeline pipeline = new LogPipeline(List.of(new ConsoleAppender(CONSOLE,
+                LogLayout.compile(consoleFormat, escapeBraces, exceptionFormat), null, false, false, true)), null, false);
+        snapshot = new LogSnapshot(new LevelFilter(LogLevel.INFO, Map.of()), new TimestampFormat("yyyy-MM-dd HH:mm:ss"),
+                colors, ColorMode.AUTO, CallerMode.ALWAYS, null, pipeline, null);
+    }
+
+    /**
+     * Gets the current settings.
+     * @return the snapshot to use for one log entry
+     */
+    LogSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Gets the metrics of the logger.
+     * @return the metrics registry
+     */
+    LogMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Takes a snapshot of the metrics of the logger.
+     * @return the counters, queue depth and latencies
+     */
+    public LogStats stats() {
+        return metrics.snapshot(snapshot.getWriter());
     }
 
     /**
@@ -59,7 +147,7 @@ class LogConfig {
      * @return the log file path
      */
     public boolean isDebugMode() {
-        return debugMode;
+        return snapshot.getLevels().getThreshold() == LogLevel.DEBUG;
     }
 
     /**
@@ -67,7 +155,55 @@ class LogConfig {
      * @param debugMode true to enable debug mode, false to disable it
      */
     public void setDebugMode(boolean debugMode) {
-        this.debugMode = debugMode;
+        configLock.lock();
+        try {
+            if(debugMode) {
+                setLevel(LogLevel.DEBUG);
+            }
+            else if(isDebugMode()) {
+                setLevel(LogLevel.INFO);
+            }
+        }
+        finally {
+            configLock.unlock();
+        }
+    }
+
+    /**
+     * Gets the level thresholds.
+     * @return the global threshold and per-logger overrides
+     */
+    public LevelFilter getLevels() {
+        return snapshot.getLevels();
+    }
+
+    /**
+     * Sets the global level threshold.
+     * @param level the least severe level written
+     */
+    public void setLevel(LogLevel level) {
+        configLock.lock();
+        try {
+            snapshot = snapshot.withLevels(snapshot.getLevels().withThreshold(level));
+        }
+        finally {
+            configLock.unlock();
+        }
+    }
+
+    /**
+     * Sets the level threshold of a logger and its children (e.g. a package or class name).
+     * @param name the logger name
+     * @param level the least severe level written, null to use the global threshold again
+     */
+    public void setLevel(String name, LogLevel level) {
+        configLock.lock();
+        try {
+            snapshot = snapshot.withLevels(snapshot.getLevels().withOverride(name, level));
+        }
+        finally {
+            configLock.unlock();
+        }
     }
 
     /**
@@ -75,58 +211,339 @@ class LogConfig {
      * @return true if append mode is enabled, false otherwise
      */
     public boolean isAppendMode() {
-        return appendMode;
+        configLock.lock();
+        try {
+            return fileSettings.isAppend();
+        }
+        finally {
+            configLock.unlock();
+        }
     }
 
     /**
      * Sets the append mode for the log file.
+     * The log file is reopened in the new mode.
      * @param appendMode true to enable append mode, false to disable it
      */
     public void setAppendMode(boolean appendMode) {
-        this.appendMode = appendMode;
-        closeLogFile();
+        configLock.lock();
         try {
-            openLogFile(logFilePath);
+            this.fileSettings = fileSettings.withAppend(appendMode);
+            if(logFilePath == null) {
+                return;
+            }
+            try {
+                openLogFile(logFilePath);
+            }
+            catch(IOException e) {
+                e.printStackTrace();
+            }
         }
-        catch(IOException e) {
-            e.printStackTrace();
+        finally {
+            configLock.unlock();
         }
     }
 
     /**
-     * Sets the log file path.
-     * @param logFilePath the path to the log file
+     * Gets the caller capture mode.
+     * @return the caller capture mode
+     */
+    public CallerMode getCallerMode() {
+        return snapshot.getCallerMode();
+    }
+
+    /**
+     * Sets the caller capture mode.
+     * @param callerMode the caller capture mode
+     */
+    public void setCallerMode(CallerMode callerMode) {
+        configLock.lock();
+        try {
+            snapshot = snapshot.withCallerMode(callerMode);
+        }
+        finally {
+            configLock.unlock();
+        }
+    }
+
+    /**
+     * Gets the console color mode.
+     * @return the console color mode
+     */
+    public ColorMode getColorMode() {
+        return snapshot.getColorMode();
+    }
+
+    /**
+     * Sets the console color mode.
+     * @param colorMode the console color mode
+     */
+    public void setColorMode(ColorMode colorMode) {
+        configLock.lock();
+        try {
+            snapshot = snapshot.withColorMode(colorMode);
+        }
+        finally {
+            configLock.unlock();
+        }
+    }
+
+    /**
+     * Checks if the caller context must be captured for a log entry.
+     * It is captured for the entries throttled by the rate limit, which counts them per caller;
+     * otherwise, it is never captured if none of the formats references {context}.
+     * @param level the log level
+     * @return true if the caller must be captured, false otherwise
+     */
+    public boolean needsContext(LogLevel level) {
+        return snapshot.needsContext(level);
+    }
+
+    /**
+     * Checks if the asynchronous mode is enabled.
+     * @return true if every appender is written by a background thread, false otherwise
+     */
+    public boolean isAsyncMode() {
+        return snapshot.getPipeline().isAsyncAll();
+    }
+
+    /**
+     * Sets the asynchronous mode.
+     * Appenders declared asynchronous are written by the background thread in both modes.
+     * Pending entries are written before the current writer thread is stopped.
+     * @param asyncMode true to write every appender from a background thread, false to write the
+     *                  synchronous appenders from the caller
+     */
+    public void setAsyncMode(boolean asyncMode) {
+        configLock.lock();
+        try {
+            LogPipeline pipeline = snapshot.getPipeline().withAsync(asyncMode);
+            AsyncWriter old = snapshot.getWriter();
+            if(old != null) {
+                // Pending entries are written to the appenders they were published for;
+                // meanwhile, callers write their entries themselves
+                old.close();
+            }
+            snapshot = snapshot.withPipeline(pipeline).withWriter(pipeline.hasAsync()
+                    ? new AsyncWriter(this, asyncBufferSize, multiProducer, waitStrategy, overflowPolicy)
+                    : null);
+        }
+        finally {
+            configLock.unlock();
+        }
+    }
+
+    /**
+     * Waits until every log entry published to the asynchronous writer has been written.
+     * Does nothing in synchronous mode.
+     */
+    public void drain() {
+        AsyncWriter writer = snapshot.getWriter();
+        if(writer != null) {
+            writer.drain();
+        }
+    }
+
+    /**
+     * Writes every pending log entry to the appenders and forces the log files to the storage device.
+     * The entries dropped by the rate limit are reported first.
+     * In asynchronous mode, waits for the writer thread to write the published entries first.
+     */
+    public void flush() {
+        summarize(snapshot.getRateLimiter(), true);
+        drain();
+        snapshot.getPipeline().flush(true);
+    }
+
+    /**
+     * Shutdown hook: stops the asynchronous writer after it wrote the pending entries,
+     * then flushes and closes the appenders.
+     */
+    private void shutdown() {
+        configLock.lock();
+        try {
+            AsyncWriter writer = snapshot.getWriter();
+            snapshot = snapshot.withWriter(null);
+            if(writer != null) {
+                writer.close();
+            }
+            flush();
+            close(snapshot.getPipeline().getAppenders());
+        }
+        finally {
+            configLock.unlock();
+        }
+    }
+
+    /**
+     * Opens the log file and makes it the output of the "file" appender.
+     * The appender keeps its layout, level threshold and writing mode if it already exists.
+     * The previous log file is closed once the new one is in place; a log file opened again
+     * under the same path is closed first, and its writers wait for the new one.
+     * @param path the path to the log file
+     * @throws IOException if the file cannot be opened
      */
     public void openLogFile(String path) throws IOException {
-        logFilePath = path;
-        logFile = new FileWriter(logFilePath, appendMode);
+        configLock.lock();
+        try {
+            LogPipeline pipeline = snapshot.getPipeline();
+            LogAppender old = pipeline.get(FILE);
+            outputLock.lock();
+            try {
+                boolean reopened = old instanceof FileAppender && FileAppender.sameFile(((FileAppender) old).getPath(), path);
+                if(reopened) {
+                    // The same file cannot be open twice (e.g. both mapped): close it first,
+                    // writers wait for the new appender on the lock
+                    old.close();
+                }
+                LogAppender appender;
+                try {
+                    appender = old != null
+                            ? new FileAppender(FILE, old.getLayout(), old.getThreshold(), old.isAsync(), path, fileSettings)
+                            : new FileAppender(FILE, LogLayout.compile(fileFormat, escapeBraces, exceptionFormat), null, false, path, fileSettings);
+                }
+                catch(IOException e) {
+                    if(reopened) {
+                        // Keep the current log file
+                        snapshot = snapshot.withPipeline(pipeline.with(old.reopen(null)));
+                    }
+                    throw e;
+                }
+                snapshot = snapshot.withPipeline(pipeline.with(appender));
+                logFilePath = path;
+            }
+            finally {
+                outputLock.unlock();
+            }
+            retire(pipeline, snapshot.getPipeline());
+        }
+        finally {
+            configLock.unlock();
+        }
     }
 
     /**
-     * Sets the log file path.
-     * @return the log file path
+     * Closes the log file: the "file" appender is removed.
      */
     public void closeLogFile() {
-        if(logFile != null) {
-            try {
-                logFile.close();
+        configLock.lock();
+        try {
+            LogPipeline pipeline = snapshot.getPipeline();
+            snapshot = snapshot.withPipeline(pipeline.without(FILE));
+            logFilePath = null;
+            retire(pipeline, snapshot.getPipeline());
+        }
+        finally {
+            configLock.unlock();
+        }
+    }
+
+    /**
+     * Closes the appenders of a replaced pipeline that are not used by the new one,
+     * from a background thread. The appenders write their buffered entries before closing.
+     * Late writers of a closed appender are redirected to the appender with the same name
+     * in the new pipeline, if there is one.
+     * @param old the replaced pipeline
+     * @param current the new pipeline
+     */
+    private void retire(LogPipeline old, LogPipeline current) {
+        List<LogAppender> retired = unused(old, current);
+        if(!retired.isEmpty()) {
+            new Thread(() -> close(retired), "KLogger-closer").start();
+        }
+    }
+
+    /**
+     * Gets the appenders of a pipeline whose output is not used by another pipeline.
+     * @param old the pipeline
+     * @param current the other pipeline
+     * @return the appenders of the first pipeline to close
+     */
+    private static List<LogAppender> unused(LogPipeline old, LogPipeline current) {
+        Set<Object> used = Collections.newSetFromMap(new IdentityHashMap<>());
+        for(LogAppender appender: current.getAppenders()) {
+            used.add(target(appender));
+        }
+        List<LogAppender> retired = new ArrayList<>();
+        for(LogAppender appender: old.getAppenders()) {
+            if(!used.contains(target(appender))) {
+                retired.add(appender);
             }
-            catch(IOException e) {
-                e.printStackTrace();
+        }
+        return retired;
+    }
+
+    /**
+     * Restores the current settings after a failed configuration load: closes the files opened
+     * for the new settings, opens again the current log files closed for them, and restarts the
+     * writer thread if it was stopped. Called with the output lock held if log files were closed,
+     * so that their writers wait for the restored appenders.
+     * @param current the current settings
+     * @param failed the appenders created for the new settings
+     * @param closed the current appenders closed for the new settings
+     * @param keepWriter true if the writer thread was kept running
+     */
+    private void rollback(LogSnapshot current, LogPipeline failed, List<LogAppender> closed, boolean keepWriter) {
+        LogPipeline pipeline = current.getPipeline();
+        if(closed.isEmpty()) {
+            retire(failed, pipeline);
+        }
+        else {
+            // The files opened again under the same paths are closed first
+            close(unused(failed, pipeline));
+            Set<Object> targets = Collections.newSetFromMap(new IdentityHashMap<>());
+            for(LogAppender appender: closed) {
+                targets.add(target(appender));
+            }
+            Map<Object, LogAppender> reopened = new IdentityHashMap<>();
+            for(LogAppender appender: current.getPipeline().getAppenders()) {
+                Object target = target(appender);
+                if(targets.contains(target)) {
+                    try {
+                        LogAppender copy = appender.reopen(reopened.get(target));
+                        reopened.putIfAbsent(target, copy);
+                        pipeline = pipeline.with(copy);
+                    }
+                    catch(IOException e) {
+                        e.printStackTrace();
+                    }
+                }
             }
         }
+        AsyncWriter writer = current.getWriter();
+        if(writer != null && !keepWriter) {
+            writer = new AsyncWriter(this, asyncBufferSize, multiProducer, waitStrategy, overflowPolicy);
+        }
+        snapshot = current.withPipeline(pipeline).withWriter(writer);
+    }
+
+    /**
+     * Gets what an appender writes to, which the appenders sharing it close only once.
+     * @param appender the appender
+     * @return the log file output, the binary output or the open log files of the appender,
+     *         the appender itself for the other sinks
+     */
+    private static Object target(LogAppender appender) {
+        if(appender instanceof FileAppender) {
+            return ((FileAppender) appender).getOutput();
+        }
+        if(appender instanceof BinaryAppender) {
+            return ((BinaryAppender) appender).getOutput();
+        }
+        if(appender instanceof RoutingAppender) {
+            return ((RoutingAppender) appender).getRoutes();
+        }
+        return appender;
     }
 
     /**
-     * Writes a log entry to the log file.
-     * @param data the log entry data
+     * Closes appenders.
+     * @param appenders the appenders to close
      */
-    public void writeToFile(Map<String, String> data) {
-        if(logFile != null) {
-            String text = format(fileFormat, data, false);
+    private static void close(List<LogAppender> appenders) {
+        for(LogAppender appender: appenders) {
             try {
-                logFile.write(text + "\n");
-                logFile.flush();
+                appender.close();
             }
             catch(IOException e) {
                 e.printStackTrace();
@@ -135,37 +552,163 @@ class LogConfig {
     }
 
     /**
-     * Writes a log entry to the console.
-     * @param data the log entry data
+     * Writes a log entry to the appenders,
+     * or hands it to the writer thread for the asynchronous ones.
+     * Entries over the rate limit of their call site are dropped; CRITICAL entries are never dropped.
+     * @param event the log entry
+     */
+    public void write(LogEvent event) {
+        LogSnapshot current = snapshot;
+        RateLimiter limiter = current.getRateLimiter();
+        if(limiter != null && event.getLevel() != LogLevel.CRITICAL) {
+            // Without context, the call site is identified by the message pattern
+            String context = event.getContext();
+            String pattern = context.isEmpty() ? event.getPattern() : null;
+            long dropped = limiter.acquire(context, pattern, event.getTimestamp());
+            if(dropped < 0) {
+                metrics.rateLimited();
+                return;
+            }
+            if(dropped > 0) {
+                publish(current, summary(limiter, context, pattern, dropped, event.getTimestamp(), event.getNanos(),
+                        event.getThread()).mdc(event.getMdc()));
+            }
+        }
+        publish(current, event);
+    }
+
+    /**
+     * Creates the summary entry of the entries of a call site dropped by the rate limit.
+     * @param limiter the rate limiter
+     * @param context the context of the call site, empty if it is identified by its message pattern
+     * @param pattern the message pattern of the call site, null if it is identified by its context
+     * @param dropped the number of dropped entries
+     * @param timestamp the time of the summary in milliseconds since the epoch
+     * @param nanos the nanoseconds within the millisecond
+     * @param thread the name of the thread writing the summary
+     * @return the WARNING entry
      */
-    public void writeToConsole(Map<String, String> data) {
-        String text = format(consoleFormat, data, true);
-        System.out.println(text + LogColor.RESET);
+    private static LogEvent summary(RateLimiter limiter, String context, String pattern, long dropped, long timestamp, int nanos,
+            String thread) {
+        if(pattern != null) {
+            return new LogEvent().set(LogLevel.WARNING, context, "{} log entries \"{}\" suppressed by the rate limit in the last {} ms",
+                    timestamp, nanos, thread).args(new Object[] {dropped, pattern, limiter.getInterval()});
+        }
+        return new LogEvent().set(LogLevel.WARNING, context, "{} log entries suppressed by the rate limit in the last {} ms",
+                timestamp, nanos, thread).arg(dropped).arg(limiter.getInterval());
     }
 
     /**
-     * Formats a log entry using the specified template and values.
-     * @param template the log entry template
-     * @param values the values to replace in the template
-     * @param withColor true to enable color formatting, false otherwise
-     * @return the formatted log entry
+     * Writes the summaries of the entries dropped by the rate limit and not reported yet.
+     * @param limiter the rate limiter, null if entries are not throttled
+     * @param all true to report every call site, false to report only the call sites whose interval ended
      */
-    private String format(String template, Map<String, String> values, boolean withColor) {
-        for(Map.Entry<String, String> entry: values.entrySet()) {
-            String value = entry.getValue();
-            if(withColor) {
-                LogColor color = LogColor.RESET;
-                if(colors.containsKey(entry.getKey())) {
-                    color = colors.get(entry.getKey());
-                }
-                else if(entry.getKey().equals("type")) {
-                    color = colors.getOrDefault(value, LogColor.RESET);
-                }
-                value = color + value + LogColor.RESET;
+    private void summarize(RateLimiter limiter, boolean all) {
+        if(limiter == null) {
+            return;
+        }
+        LogSnapshot current = snapshot;
+        long now = System.currentTimeMillis();
+        String thread = Thread.currentThread().getName();
+        limiter.summarize(now, all, (context, pattern, dropped) -> publish(current,
+                summary(limiter, context, pattern, dropped, now, 0, thread)));
+    }
+
+    /**
+     * Replaces the periodic task reporting the entries dropped by the rate limit by call sites
+     * that stopped logging. The entries dropped under the replaced limit are reported first.
+     * Called with the configuration lock held.
+     * @param old the replaced rate limiter, null if entries were not throttled
+     * @param limiter the new rate limiter, null if entries are not throttled
+     */
+    private void schedule(RateLimiter old, RateLimiter limiter) {
+        if(summaries != null) {
+            summaries.cancel(false);
+            summaries = null;
+        }
+        summarize(old, true);
+        if(limiter != null) {
+            long interval = Math.max(1, limiter.getInterval());
+            summaries = ChannelFileOutput.flusher().scheduleWithFixedDelay(() -> summarize(limiter, false),
+                    interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes a log entry to the synchronous appenders and hands it to the writer thread
+     * for the asynchronous ones.
+     * If there is no writer thread, or if it does not take the entry (closed, or claimed by another thread
+     * in single-producer mode), every appender is written by the caller.
+     * @param settings the settings to write the entry with
+     * @param event the log entry
+     */
+    private void publish(LogSnapshot settings, LogEvent event) {
+        metrics.event(event.getLevel());
+        LogPipeline pipeline = settings.getPipeline();
+        AsyncWriter writer = settings.getWriter();
+        if(writer == null) {
+            pipeline.write(event, settings.getDateFormat(), true, true, this);
+            return;
+        }
+        pipeline.write(event, settings.getDateFormat(), true, false, this);
+        if(pipeline.hasAsync() && !writer.publish(event)) {
+            pipeline.write(event, settings.getDateFormat(), false, true, this);
+        }
+    }
+
+    /**
+     * Writes a log entry to the asynchronous appenders, with the current settings.
+     * Called by the writer thread.
+     * @param event the log entry
+     */
+    public void writeDirect(LogEvent event) {
+        LogSnapshot current = snapshot;
+        current.getPipeline().write(event, current.getDateFormat(), false, true, this);
+    }
+
+    /**
+     * Writes a rendered log entry to an appender.
+     * If the appender was closed by a configuration change in the meantime,
+     * the entry is written to the appender that replaced it.
+     * @param appender the appender
+     * @param line the rendered entry
+     * @param event the log entry
+     */
+    void append(LogAppender appender, CharSequence line, LogEvent event) {
+        while(appender != null) {
+            try {
+                long start = metrics.start();
+                int bytes = appender.append(line, event);
+                metrics.written(start);
+                metrics.bytes(bytes);
+                return;
+            }
+            catch(ClosedChannelException e) {
+                appender = replacement(appender);
+            }
+            catch(IOException e) {
+                metrics.writeError();
+                e.printStackTrace();
+                return;
             }
-            template = template.replace("{" + entry.getKey() + "}", value);
         }
-        return template;
+    }
+
+    /**
+     * Gets the appender that replaced a closed appender,
+     * waiting for the configuration change in progress to complete.
+     * @param closed the closed appender
+     * @return the appender with the same name, or null if it was removed for good
+     */
+    private LogAppender replacement(LogAppender closed) {
+        outputLock.lock();
+        try {
+            LogAppender appender = snapshot.getPipeline().get(closed.getName());
+            return appender == closed ? null : appender;
+        }
+        finally {
+            outputLock.unlock();
+        }
     }
 
     /**
@@ -173,47 +716,464 @@ class LogConfig {
      * @return the date format
      */
     public String getDateFormat() {
-        return dateFormat;
+        return snapshot.getDateFormat().getPattern();
+    }
+
+    /**
+     * Checks if log timestamps need a sub-millisecond precision.
+     * @return true if the date format renders nanoseconds, false otherwise
+     */
+    public boolean needsNanos() {
+        return snapshot.getDateFormat().needsNanos();
     }
 
     /**
      * Initializes the logger configuration from an open InputStream (e.g. a JSON file stream).
-     * @param jsonStream the InputStream containing the JSON configuration
-     * @throws IOException if an error occurs while reading the stream
+     * The new settings are built aside and replace the current ones in a single swap.
+     * A configuration file watched for changes is no longer watched.
+     * @param json the InputStream containing the JSON configuration
+     * @throws IOException if an error occurs while reading the stream or opening a log file
      */
     public void init(InputStream json) throws IOException {
-        ObjectMapper objectMapper = new ObjectMapper();
-        ConfigJson configJson = objectMapper.readValue(json, ConfigJson.class);
+        configLock.lock();
+        try {
+            apply(ConfigParser.read(json, ConfigJson.class));
+            configPath = null;
+            watch(false);
+        }
+        finally {
+            configLock.unlock();
+        }
+    }
+
+    /**
+     * Loads the logger configuration from a JSON file, and watches the file for changes
+     * if the configuration enables "watch".
+     * The new settings are built aside and replace the current ones in a single swap.
+     * @param path the path to the configuration file
+     * @throws IOException if an error occurs while reading the file or opening a log file
+     */
+    public void load(String path) throws IOException {
+        configLock.lock();
+        try {
+            ConfigJson configJson;
+            try(InputStream json = new FileInputStream(path)) {
+                configJson = ConfigParser.read(json, ConfigJson.class);
+            }
+            apply(configJson);
+            if(!path.equals(configPath)) {
+                watch(false);
+            }
+            configPath = path;
+            watch(configJson.watch);
+        }
+        finally {
+            configLock.unlock();
+        }
+    }
+
+    /**
+     * Loads the configuration file again.
+     * If the file cannot be read or is invalid, the current settings are kept.
+     * @throws IOException if an error occurs while reading the file or opening a log file
+     * @throws IllegalStateException if the configuration was not loaded from a file
+     */
+    public void reload() throws IOException {
+        configLock.lock();
+        try {
+            if(configPath == null) {
+                throw new IllegalStateException("The configuration was not loaded from a file");
+            }
+            load(configPath);
+        }
+        finally {
+            configLock.unlock();
+        }
+    }
+
+    /**
+     * Starts or stops watching the configuration file.
+     * @param enabled true to reload the configuration file when it changes, false otherwise
+     * @throws IOException if the file cannot be watched
+     */
+    private void watch(boolean enabled) throws IOException {
+        if(enabled && watcher == null) {
+            watcher = new ConfigWatcher(this, Path.of(configPath));
+        }
+        else if(!enabled && watcher != null) {
+            watcher.close();
+            watcher = null;
+        }
+    }
+
+    /**
+     * Applies a JSON configuration.
+     * Everything is prepared aside: compiled layouts and date format, colors, level thresholds and
+     * appenders, opening only the log files that are not already open with the same settings.
+     * The result is published in a single swap, then the appenders left behind are closed in the
+     * background. Log calls never wait, except the writers of a log file reopened under the same path
+     * with other settings, which wait for the new file.
+     * @param configJson the JSON configuration
+     * @throws IOException if a log file cannot be opened, in which case the current settings are kept
+     */
+    private void apply(ConfigJson configJson) throws IOException {
+        LogSnapshot current = snapshot;
 
+        String dateFormat = current.getDateFormat().getPattern();
+        String consoleFormat = this.consoleFormat;
+        String fileFormat = this.fileFormat;
         if (configJson.formats != null) {
-            this.dateFormat = configJson.formats.getOrDefault("date", dateFormat);
-            this.consoleFormat = configJson.formats.getOrDefault("console", consoleFormat);
-            this.fileFormat = configJson.formats.getOrDefault("file", fileFormat);
+            dateFormat = configJson.formats.getOrDefault("date", dateFormat);
+            consoleFormat = configJson.formats.getOrDefault("console", consoleFormat);
+            fileFormat = configJson.formats.getOrDefault("file", fileFormat);
+        }
+        boolean escapes = configJson.escapeBraces;
+        ExceptionFormat exceptions = this.exceptionFormat;
+        if(configJson.exceptions != null) {
+            exceptions = new ExceptionFormat(configJson.exceptions.maxDepth, configJson.exceptions.cacheSize,
+                    configJson.exceptions.dedupWindow * 1000L);
+        }
+        TimestampFormat timestampFormat = current.getDateFormat();
+        if(!dateFormat.equals(timestampFormat.getPattern())) {
+            timestampFormat = new TimestampFormat(dateFormat);
+        }
+        CallerMode callerMode = current.getCallerMode();
+        if(configJson.caller != null) {
+            callerMode = CallerMode.of(configJson.caller);
+        }
+        RateLimiter rateLimiter = current.getRateLimiter();
+        if(configJson.rateLimit != null) {
+            rateLimiter = configJson.rateLimit.limit > 0
+                    ? new RateLimiter(configJson.rateLimit.limit, configJson.rateLimit.interval)
+                    : null;
+        }
+        ColorMode colorMode = current.getColorMode();
+        if(configJson.color != null) {
+            colorMode = ColorMode.of(configJson.color);
+        }
+
+        Map<String, LogLevel> overrides = new HashMap<>();
+        if(configJson.levels != null) {
+            for(Map.Entry<String, String> entry: configJson.levels.entrySet()) {
+                overrides.put(entry.getKey(), LogLevel.of(entry.getValue()));
+            }
         }
+        LogLevel threshold = configJson.debug ? LogLevel.DEBUG : LogLevel.INFO;
+        if(configJson.level != null) {
+            threshold = LogLevel.of(configJson.level);
+        }
+        Map<String, LogColor> colors = new HashMap<>(current.getColors());
+        configJson.getColors(colors);
+
+        BufferJson buffer = configJson.buffer != null ? configJson.buffer : new BufferJson();
+        RollingJson rolling = configJson.rolling != null ? configJson.rolling : new RollingJson();
+        FileSettings files = new FileSettings(configJson.fileMode != null ? configJson.fileMode : fileSettings.getMode(),
+                buffer.mapSize, buffer.size, buffer.flushInterval, buffer.flushOnError, configJson.append,
+                rolling.maxSize, rolling.schedule, rolling.maxFiles, rolling.maxTotalSize, rolling.compress);
+
+        boolean asyncAll = current.getPipeline().isAsyncAll();
+        int bufferSize = asyncBufferSize;
+        boolean producers = multiProducer;
+        WaitStrategy wait = waitStrategy;
+        OverflowPolicy overflow = overflowPolicy;
+        if(configJson.async != null) {
+            asyncAll = configJson.async.enabled;
+            bufferSize = configJson.async.bufferSize;
+            producers = !"single".equalsIgnoreCase(configJson.async.producers);
+            wait = WaitStrategy.of(configJson.async.wait);
+            overflow = OverflowPolicy.of(configJson.async.overflow);
+        }
+        if(configJson.sinks != null) {
+            checkSinks(configJson.sinks);
+        }
+        boolean async = asyncAll;
+        for(SinkJson sink: configJson.sinks != null ? configJson.sinks : List.<SinkJson>of()) {
+            async |= sink.async;
+        }
+
+        // Entries pending in a writer that does not stay are written to the current appenders first;
+        // meanwhile, and until the new settings are published, callers write their entries themselves
+        AsyncWriter writer = current.getWriter();
+        boolean keepWriter = async && writer != null && bufferSize == asyncBufferSize && producers == multiProducer
+                && wait == waitStrategy && overflow == overflowPolicy;
+        if(writer != null && !keepWriter) {
+            writer.close();
+        }
+
+        LogPipeline old = current.getPipeline();
+        List<LogAppender> appenders = new ArrayList<>();
+        List<LogAppender> closed = new ArrayList<>();
+        String filePath = configJson.file;
+        try {
+            Map<String, LogLayout> layouts = new HashMap<>();
+            List<SinkJson> sinks = configJson.sinks;
+            if(sinks == null) {
+                // Default sinks: the console, and the log file if one is open or configured
+                sinks = new ArrayList<>();
+                SinkJson console = new SinkJson();
+                console.format = consoleFormat;
+                sinks.add(console);
+                if(filePath == null) {
+                    filePath = logFilePath;
+                }
+            }
+            for(SinkJson sink: sinks) {
+                boolean file = "file".equalsIgnoreCase(sink.type) || ROUTING.equalsIgnoreCase(sink.type);
+                String name = sinkName(sink, appenders);
+                String format = sink.format != null ? sink.format : file ? fileFormat : consoleFormat;
+                boolean colored = !file && sink.color;
+                ExceptionFormat sinkExceptions = exceptions;
+                LogLevel level = sink.level != null ? LogLevel.of(sink.level) : null;
+                if(BINARY.equalsIgnoreCase(sink.type)) {
+                    appenders.add(openFile(name, BinaryAppender.LAYOUT, level, sink.async, sink.file, files, appenders, old, closed));
+                    continue;
+                }
+                LogLayout layout = layouts.computeIfAbsent((colored ? "color:" : "plain:") + format,
+                        key -> LogLayout.compile(format, escapes, sinkExceptions));
+                if(ROUTING.equalsIgnoreCase(sink.type)) {
+                    appenders.add(openRouting(name, layout, level, sink, files, appenders, old, closed));
+                }
+                else if(file) {
+                    String path = FILE.equals(name) && filePath != null ? filePath : sink.file;
+                    appenders.add(openFile(name, layout, level, sink.async, path, files, appenders, old, closed));
+                }
+                else {
+                    appenders.add(new ConsoleAppender(name, layout, level, sink.async,
+                            "stderr".equalsIgnoreCase(sink.target), colored));
+                }
+            }
+            if(filePath != null && !containsName(appenders, FILE)) {
+                appenders.add(openFile(FILE, LogLayout.compile(fileFormat, escapes, exceptions), null, false,
+                        filePath, files, appenders, old, closed));
+            }
 
-        this.debugMode = configJson.debug;
-        this.appendMode = configJson.append;
-        configJson.getColors(this.colors);
+            LogPipeline pipeline = new LogPipeline(appenders, null, asyncAll);
+            if(!keepWriter) {
+                writer = pipeline.hasAsync() ? new AsyncWriter(this, bufferSize, producers, wait, overflow) : null;
+            }
+            snapshot = new LogSnapshot(new LevelFilter(threshold, overrides), timestampFormat, colors, colorMode,
+                    callerMode, rateLimiter, pipeline, writer);
+        }
+        catch(IOException | RuntimeException e) {
+            // Keep the current settings, without the files opened for the new ones
+            rollback(current, new LogPipeline(appenders, null, false), closed, keepWriter);
+            throw e;
+        }
+        finally {
+            if(outputLock.isHeldByCurrentThread()) {
+                outputLock.unlock();
+            }
+        }
+        retire(old, snapshot.getPipeline());
+        if(rateLimiter != current.getRateLimiter()) {
+            schedule(current.getRateLimiter(), rateLimiter);
+        }
 
-        if(configJson.file != null) openLogFile(configJson.file);
+        this.consoleFormat = consoleFormat;
+        this.fileFormat = fileFormat;
+        this.escapeBraces = escapes;
+        this.exceptionFormat = exceptions;
+        this.fileSettings = files;
+        this.asyncBufferSize = bufferSize;
+        this.multiProducer = producers;
+        this.waitStrategy = wait;
+        this.overflowPolicy = overflow;
+        LogAppender file = snapshot.getPipeline().get(FILE);
+        this.logFilePath = file instanceof FileAppender ? ((FileAppender) file).getPath() : null;
+        if(configJson.metrics != null) {
+            metrics.setTiming(configJson.metrics.timing);
+            metrics.register(configJson.metrics.jmx, this::stats);
+        }
 
         KLog.log("Logger configuration loaded from JSON file: " + logFilePath);
-        if(debugMode) {
-            KLog.debug("Debug mode: " + debugMode);
-            KLog.debug("Append mode: " + appendMode);
+        if(isDebugMode()) {
+            LogSnapshot loaded = snapshot;
+            KLog.debug("Level: " + loaded.getLevels().getThreshold());
+            KLog.debug("Level overrides: " + loaded.getLevels().getOverrides());
+            KLog.debug("Append mode: " + files.isAppend());
+            KLog.debug("Async mode: " + isAsyncMode());
+            KLog.debug("Caller mode: " + loaded.getCallerMode());
+            KLog.debug("Color mode: " + loaded.getColorMode());
             KLog.debug("Console format: \"" + consoleFormat + "\"");
             KLog.debug("File format: \"" + fileFormat + "\"");
+            List<String> names = new ArrayList<>();
+            for(LogAppender appender: loaded.getPipeline().getAppenders()) {
+                names.add(appender.getName());
+            }
+            KLog.debug("Sinks: " + names);
             KLog.debug("Date format: \"" + dateFormat + "\"");
             KLog.debug("Log file path: \"" + logFilePath + "\"");
+            KLog.debug("File mode: " + files.getMode());
             String colorsString = "";
-            for(Map.Entry<String, LogColor> entry: colors.entrySet()) {
+            for(Map.Entry<String, LogColor> entry: loaded.getColors().entrySet()) {
                 colorsString += entry.getKey() + "='" + entry.getValue().getHexa() + "', ";
             }
             KLog.debug("Colors: {" + colorsString.substring(0, colorsString.length() - 2) + "}");
         }
     }
 
+    /**
+     * Creates a file appender for a new configuration, a binary one for the binary layout.
+     * A log file already open with the same settings, by the current appenders or by an appender created
+     * for the new configuration, is shared instead of being opened again. A log file open otherwise is closed first and opened again
+     * in append mode: the output lock is then held until the new configuration is published,
+     * so that its writers wait for it.
+     * @param name the name of the appender
+     * @param layout the layout of the log entries, {@link BinaryAppender#LAYOUT} for a binary log file
+     * @param threshold the least severe level written, null to write every entry
+     * @param async true to be written by the writer thread
+     * @param path the path to the log file
+     * @param files the settings to open the log file with
+     * @param created the appenders created so far for the new configuration
+     * @param old the current appenders
+     * @param closed the current appenders closed so far, to open again if the configuration fails
+     * @return the appender
+     * @throws IOException if the file cannot be opened
+     */
+    private LogAppender openFile(String name, LogLayout layout, LogLevel threshold, boolean async, String path,
+            FileSettings files, List<LogAppender> created, LogPipeline old, List<LogAppender> closed) throws IOException {
+        boolean binary = layout == BinaryAppender.LAYOUT;
+        for(LogAppender appender: shared(created, old)) {
+            if(!binary && appender instanceof FileAppender && ((FileAppender) appender).opens(path, files)) {
+                return new FileAppender(name, layout, threshold, async, (FileAppender) appender);
+            }
+            if(binary && appender instanceof BinaryAppender && ((BinaryAppender) appender).opens(path, files)) {
+                return new BinaryAppender(name, threshold, async, (BinaryAppender) appender);
+            }
+        }
+        for(LogAppender appender: old.getAppenders()) {
+            String open = appender instanceof FileAppender ? ((FileAppender) appender).getPath()
+                    : appender instanceof BinaryAppender ? ((BinaryAppender) appender).getPath() : null;
+            if(open != null && FileAppender.sameFile(open, path)) {
+                // The same file cannot be open twice (e.g. both mapped)
+                if(!outputLock.isHeldByCurrentThread()) {
+                    outputLock.lock();
+                }
+                appender.close();
+                closed.add(appender);
+                // The entries just written are kept whatever the append mode
+                files = files.withAppend(true);
+                break;
+            }
+        }
+        return binary ? new BinaryAppender(name, threshold, async, path, files)
+                : new FileAppender(name, layout, threshold, async, path, files);
+    }
+
+    /**
+     * Creates a routing appender for a new configuration.
+     * The log files open with the same settings, by the current appenders or by an appender created
+     * for the new configuration, are shared instead of being opened again. Log files open otherwise are closed first, and opened again in append mode
+     * by their next entry: the output lock is then held until the new configuration is published,
+     * so that their writers wait for it.
+     * @param name the name of the appender
+     * @param layout the layout of the log entries
+     * @param threshold the least severe level written, null to write every entry
+     * @param sink the declared sink
+     * @param files the settings to open the log files with
+     * @param created the appenders created so far for the new configuration
+     * @param old the current appenders
+     * @param closed the current appenders closed so far, to open again if the configuration fails
+     * @return the appender
+     * @throws IOException if a log file open otherwise cannot be closed
+     */
+    private LogAppender openRouting(String name, LogLayout layout, LogLevel threshold, SinkJson sink,
+            FileSettings files, List<LogAppender> created, LogPipeline old, List<LogAppender> closed) throws IOException {
+        for(LogAppender appender: shared(created, old)) {
+            if(appender instanceof RoutingAppender
+                    && ((RoutingAppender) appender).opens(sink.file, sink.fallback, sink.maxOpen, files)) {
+                return new RoutingAppender(name, layout, threshold, sink.async, (RoutingAppender) appender);
+            }
+        }
+        for(LogAppender appender: old.getAppenders()) {
+            if(appender instanceof RoutingAppender && ((RoutingAppender) appender).samePath(sink.file)) {
+                if(!outputLock.isHeldByCurrentThread()) {
+                    outputLock.lock();
+                }
+                appender.close();
+                closed.add(appender);
+                files = files.withAppend(true);
+                break;
+            }
+        }
+        return new RoutingAppender(name, layout, threshold, sink.async, sink.file, sink.fallback, sink.maxOpen, files);
+    }
+
+    /**
+     * Gets the appenders whose log files a new appender can share.
+     * @param created the appenders created so far for the new configuration
+     * @param old the current appenders
+     * @return the created appenders, then the current ones
+     */
+    private static List<LogAppender> shared(List<LogAppender> created, LogPipeline old) {
+        List<LogAppender> appenders = new ArrayList<>(created);
+        appenders.addAll(old.getAppenders());
+        return appenders;
+    }
+
+    /**
+     * Gets the name of a declared sink: its "name", or its type followed by a number if there
+     * are several sinks of that type without a name.
+     * @param sink the declared sink
+     * @param appenders the appenders created so far
+     * @return the name of the sink
+     */
+    private static String sinkName(SinkJson sink, List<LogAppender> appenders) {
+        if(sink.name != null) {
+            return sink.name;
+        }
+        String type = "file".equalsIgnoreCase(sink.type) ? FILE : BINARY.equalsIgnoreCase(sink.type) ? BINARY
+                : ROUTING.equalsIgnoreCase(sink.type) ? ROUTING : CONSOLE;
+        String name = type;
+        for(int i = 2; containsName(appenders, name); i++) {
+            name = type + i;
+        }
+        return name;
+    }
+
+    /**
+     * Checks the "sinks" section of the JSON configuration before anything is opened.
+     * @param sinks the declared sinks
+     * @throws IllegalArgumentException if a sink has an unknown type, an unknown level, no log file,
+     *         or is a routing sink without routing key or open files
+     */
+    private static void checkSinks(List<SinkJson> sinks) {
+        for(SinkJson sink: sinks) {
+            boolean routing = ROUTING.equalsIgnoreCase(sink.type);
+            if("file".equalsIgnoreCase(sink.type) || BINARY.equalsIgnoreCase(sink.type) || routing) {
+                if(sink.file == null) {
+                    throw new IllegalArgumentException("File sink without file: " + sink.name);
+                }
+            }
+            else if(!"console".equalsIgnoreCase(sink.type)) {
+                throw new IllegalArgumentException("Unknown sink type: " + sink.type);
+            }
+            if(routing) {
+                RoutingAppender.routingKey(sink.file);
+                if(sink.maxOpen <= 0) {
+                    throw new IllegalArgumentException("Invalid maxOpen for routing sink: " + sink.maxOpen);
+                }
+            }
+            if(sink.level != null) {
+                LogLevel.of(sink.level);
+            }
+        }
+    }
 
+    /**
+     * Checks if an appender of a list has a name.
+     * @param appenders the appenders
+     * @param name the name
+     * @return true if one of the appenders has the name, false otherwise
+     */
+    private static boolean containsName(List<LogAppender> appenders, String name) {
+        for(LogAppender appender: appenders) {
+            if(appender.getName().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
     /**
      * ConfigJson is a nested class representing the JSON configuration structure.
@@ -231,11 +1191,53 @@ class LogConfig {
         /** Debug mode flag */
         public boolean debug;
 
+        /** Global level threshold, overrides the debug mode flag */
+        public String level;
+
+        /** Level thresholds of logger names and their children */
+        public Map<String, String> levels;
+
         /** Append mode flag */
         public boolean append;
 
+        /** Escaped braces flag for formats */
+        public boolean escapeBraces;
+
         public String file;
 
+        /** Log file mode: "channel" or "mmap" */
+        public String fileMode;
+
+        /** Log file buffer settings */
+        public BufferJson buffer;
+
+        /** Log file rolling settings */
+        public RollingJson rolling;
+
+        /** Caller capture mode: "always", "warning" or "never" */
+        public String caller;
+
+        /** Console color mode: "auto", "always" or "never" */
+        public String color;
+
+        /** Asynchronous mode settings */
+        public AsyncJson async;
+
+        /** Exception rendering settings */
+        public ExceptionsJson exceptions;
+
+        /** Per-call-site rate limit settings */
+        public RateLimitJson rateLimit;
+
+        /** Watch flag: true to reload the configuration file when it changes */
+        public boolean watch;
+
+        /** Metrics settings */
+        public MetricsJson metrics;
+
+        /** Appenders the entries are written to, null for the console and the "file" log file */
+        public List<SinkJson> sinks;
+
         /**
          * Gets the colors from the JSON configuration.
          * @return a HashMap of colors for log types
@@ -248,4 +1250,139 @@ class LogConfig {
             }
         }
     }
+
+    /**
+     * BufferJson is the "buffer" section of the JSON configuration.
+     */
+    private static class BufferJson {
+
+        /** Buffer size in bytes */
+        public int size = 8192;
+
+        /** Flush interval in milliseconds, 0 to flush only when the buffer is full */
+        public long flushInterval = 1000;
+
+        /** Immediate flush flag for ERROR and CRITICAL entries */
+        public boolean flushOnError = true;
+
+        /** Size of a mapped chunk in bytes in "mmap" file mode */
+        public int mapSize = 32 * 1024 * 1024;
+    }
+
+    /**
+     * RollingJson is the "rolling" section of the JSON configuration.
+     */
+    private static class RollingJson {
+
+        /** Maximum size of the log file in bytes, 0 for no limit */
+        public long maxSize;
+
+        /** Roll schedule: "daily", "hourly", or null for no schedule */
+        public String schedule;
+
+        /** Maximum number of rolled files kept, 0 for no limit */
+        public int maxFiles;
+
+        /** Maximum total size of the rolled files in bytes, 0 for no limit */
+        public long maxTotalSize;
+
+        /** Compression flag: true to gzip the rolled files */
+        public boolean compress;
+    }
+
+    /**
+     * ExceptionsJson is the "exceptions" section of the JSON configuration.
+     */
+    private static class ExceptionsJson {
+
+        /** Maximum number of frames written per exception, 0 for no limit */
+        public int maxDepth = 0;
+
+        /** Maximum number of distinct stack traces cached, 0 to disable the cache and the deduplication */
+        public int cacheSize = 256;
+
+        /** Deduplication window in seconds, 0 to write every stack trace in full */
+        public long dedupWindow = 0;
+    }
+
+    /**
+     * RateLimitJson is the "rateLimit" section of the JSON configuration.
+     */
+    private static class RateLimitJson {
+
+        /** Number of entries written per call site and interval, 0 for no limit */
+        public long limit = 0;
+
+        /** Interval length in milliseconds */
+        public long interval = 1000;
+    }
+
+    /**
+     * SinkJson is one entry of the "sinks" section of the JSON configuration.
+     */
+    private static class SinkJson {
+
+        /** Name of the sink, defaults to its type; the "file" sink is the one opened by KLog.setOutPut */
+        public String name;
+
+        /** Sink type: "console", "file", "binary" or "routing" */
+        public String type = "console";
+
+        /** Log format of the sink, defaults to the console or file format; binary sinks have none */
+        public String format;
+
+        /** Least severe level written, null to write every entry */
+        public String level;
+
+        /** Asynchronous flag: true to write the sink from the writer thread */
+        public boolean async;
+
+        /** Log file path of a file or binary sink, with one {mdc.key} placeholder for a routing sink */
+        public String file;
+
+        /** Route of a routing sink for the entries without the routing key */
+        public String fallback = "default";
+
+        /** Maximum number of log files a routing sink keeps open */
+        public int maxOpen = RoutingAppender.DEFAULT_MAX_OPEN;
+
+        /** Stream of a console sink: "stdout" or "stderr" */
+        public String target = "stdout";
+
+        /** Color flag of a console sink */
+        public boolean color = true;
+    }
+
+    /**
+     * MetricsJson is the "metrics" section of the JSON configuration.
+     */
+    private static class MetricsJson {
+
+        /** Timing flag: false to skip the latency measurements */
+        public boolean timing = true;
+
+        /** JMX flag: true to register the metrics with the platform MBean server */
+        public boolean jmx = false;
+    }
+
+    /**
+     * AsyncJson is the "async" section of the JSON configuration.
+     */
+    private static class AsyncJson {
+
+        /** Asynchronous mode flag */
+        public boolean enabled;
+
+        /** Ring buffer capacity */
+        public int bufferSize = 1024;
+
+        /** Producer mode: "single" or "multi" */
+        public String producers = "multi";
+
+        /** Wait strategy: "spin", "yield" or "park" */
+        public String wait = "park";
+
+        /** Overflow policy: "block", "drop-debug" or "drop-newest" */
+        public String overflow = "block";
+    }
 }
\ No newline at end of file
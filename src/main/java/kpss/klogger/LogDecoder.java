@@ -0,0 +1,423 @@
+package kpss.klogger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * LogDecoder turns a binary log file written by a "binary" sink back into text, with a log format
+ * such as the file format, or into JSON with the "json" format.
+ * The file is read as a stream, one record at a time: only the dictionary of interned strings
+ * is kept in memory, so files of any size can be decoded.
+ * <p>
+ * Usage: {@code java -cp KLogger.jar kpss.klogger.LogDecoder [--format <format>] [--date <pattern>] <file> [<output>]}
+ * <p>
+ * The exit status is 0 once the whole file is decoded, 1 if it cannot be decoded, 2 for a usage error,
+ * and 3 if the file is truncated: the entries before the incomplete one are still decoded.
+ *
+ * @author POUSSE Kilian
+ */
+public final class LogDecoder {
+
+    /** Default log format: the default file format */
+    private static final String DEFAULT_FORMAT = "{date} [{type}][{context}]: {message}";
+
+    /** Default date format */
+    private static final String DEFAULT_DATE = "yyyy-MM-dd HH:mm:ss";
+
+    /** Levels, indexed by ordinal */
+    private static final LogLevel[] LEVELS = LogLevel.values();
+
+    /** Binary log file */
+    private final DataInputStream in;
+
+    /** Layout of the decoded entries */
+    private final LogLayout layout;
+
+    /** Formatter of the date */
+    private final TimestampFormat dateFormat;
+
+    /** Dictionary of the current segment, indexed by id minus {@link BinaryOutput#FIRST_ID} */
+    private final List<String> strings = new ArrayList<>();
+
+    /** Exceptions of the entry being decoded, to resolve circular references */
+    private final List<DecodedException> thrown = new ArrayList<>();
+
+    /** Reused entry */
+    private final LogEvent event = new LogEvent();
+
+    /** Reused buffer of the UTF-8 bytes of a string */
+    private byte[] text = new byte[256];
+
+    /** Time of the previous entry in nanoseconds since the epoch */
+    private long previous = 0;
+
+    /** Header flag: false until the header of the first segment is read */
+    private boolean header = false;
+
+    /**
+     * Creates a decoder.
+     * @param in the binary log file
+     * @param layout the layout of the decoded entries
+     * @param dateFormat the formatter of the date
+     */
+    LogDecoder(InputStream in, LogLayout layout, TimestampFormat dateFormat) {
+        this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+        this.layout = layout;
+        this.dateFormat = dateFormat;
+    }
+
+    /**
+     * Decodes a binary log file.
+     * @param args the options, the binary log file and the optional output file (standard output by default)
+     */
+    public static void main(String[] args) {
+        String format = DEFAULT_FORMAT;
+        String date = DEFAULT_DATE;
+        List<String> files = new ArrayList<>();
+        for(int i = 0; i < args.length; i++) {
+            if(("--format".equals(args[i]) || "-f".equals(args[i])) && i + 1 < args.length) {
+                format = args[++i];
+            }
+            else if(("--date".equals(args[i]) || "-d".equals(args[i])) && i + 1 < args.length) {
+                date = args[++i];
+            }
+            else {
+                files.add(args[i]);
+            }
+        }
+        if(files.isEmpty() || files.size() > 2) {
+            System.err.println("Usage: LogDecoder [--format <format>|json] [--date <pattern>] <file> [<output>]");
+            System.exit(2);
+        }
+
+        LogLayout layout = LogLayout.compile(format, false, ExceptionFormat.DEFAULT);
+        TimestampFormat dateFormat = new TimestampFormat(date);
+        int status;
+        try(InputStream input = new FileInputStream(files.get(0))) {
+            if(files.size() > 1) {
+                try(OutputStream output = new FileOutputStream(files.get(1))) {
+                    status = decode(input, output, layout, dateFormat);
+                }
+            }
+            else {
+                status = decode(input, System.out, layout, dateFormat);
+            }
+        }
+        catch(IOException | RuntimeException e) {
+            System.err.println("Cannot decode " + files.get(0) + ": " + e.getMessage());
+            status = 1;
+        }
+        if(status != 0) {
+            System.exit(status);
+        }
+    }
+
+    /**
+     * Decodes a binary log file into an output stream, which is flushed but not closed.
+     * @param input the binary log file
+     * @param output the output of the decoded entries
+     * @param layout the layout of the decoded entries
+     * @param dateFormat the formatter of the date
+     * @return the exit status: 0 if the whole file was decoded, 3 if its last entry is incomplete
+     * @throws IOException if the file cannot be read or is not a binary log file, or the output cannot be written
+     */
+    private static int decode(InputStream input, OutputStream output, LogLayout layout, TimestampFormat dateFormat) throws IOException {
+        Writer out = new OutputStreamWriter(new BufferedOutputStream(output, 1 << 16), StandardCharsets.UTF_8);
+        try {
+            new LogDecoder(input, layout, dateFormat).decode(out);
+            return 0;
+        }
+        catch(EOFException e) {
+            System.err.println("Truncated log file: the last entry is incomplete");
+            return 3;
+        }
+        finally {
+            out.flush();
+        }
+    }
+
+    /**
+     * Decodes every entry of the file, writing one line per entry.
+     * @param out the writer of the decoded entries
+     * @return the number of entries decoded
+     * @throws EOFException if the file ends within a record
+     * @throws IOException if the file cannot be read or is not a binary log file
+     */
+    long decode(Writer out) throws IOException {
+        StringBuilder line = new StringBuilder(256);
+        long count = 0;
+        while(next()) {
+            line.setLength(0);
+            layout.render(line, event, dateFormat, null);
+            line.append('\n');
+            out.append(line);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Reads the records up to the next entry.
+     * @return true if an entry was read, false at the end of the file
+     * @throws EOFException if the file ends within a record
+     * @throws IOException if the file cannot be read or is not a binary log file
+     */
+    boolean next() throws IOException {
+        while(true) {
+            int tag = in.read();
+            // Zeros are the unused end of a memory-mapped file that was not closed
+            if(tag <= 0) {
+                return false;
+            }
+            if(tag == BinaryOutput.MAGIC[0]) {
+                readHeader();
+                header = true;
+            }
+            else if(!header) {
+                throw new IOException("Not a binary log file");
+            }
+            else if(tag == BinaryOutput.STRING) {
+                int id = (int) readVarint();
+                if(id != BinaryOutput.FIRST_ID + strings.size()) {
+                    throw new IOException("Unexpected string id " + id);
+                }
+                strings.add(readUtf8());
+            }
+            else if(tag == BinaryOutput.EVENT) {
+                readEvent();
+                return true;
+            }
+            else {
+                throw new IOException("Unknown record tag " + tag);
+            }
+        }
+    }
+
+    /**
+     * Gets the entry read by the last call to {@link #next()}. The entry is reused by the next call.
+     * @return the entry
+     */
+    LogEvent getEvent() {
+        return event;
+    }
+
+    /**
+     * Reads the header of a segment, after its first byte, and starts a new dictionary.
+     * @throws IOException if the header is not a supported binary log file header
+     */
+    private void readHeader() throws IOException {
+        byte[] magic = new byte[BinaryOutput.MAGIC.length];
+        magic[0] = BinaryOutput.MAGIC[0];
+        in.readFully(magic, 1, magic.length - 1);
+        if(!Arrays.equals(magic, BinaryOutput.MAGIC)) {
+            throw new IOException("Not a binary log file");
+        }
+        int version = in.readUnsignedByte();
+        if(version != BinaryOutput.VERSION) {
+            throw new IOException("Unsupported binary log version " + version);
+        }
+        strings.clear();
+        previous = 0;
+    }
+
+    /**
+     * Reads an entry record, after its tag, into the reused entry.
+     * @throws IOException if the record cannot be read
+     */
+    private void readEvent() throws IOException {
+        long time = previous + readZigzag();
+        previous = time;
+        int flags = in.readUnsignedByte();
+        int level = flags & BinaryOutput.LEVEL_MASK;
+        if(level >= LEVELS.length) {
+            throw new IOException("Unknown level " + level);
+        }
+        String context = readString();
+        String message = readString();
+        String thread = readString();
+        event.set(LEVELS[level], context, message, Math.floorDiv(time, 1_000_000L),
+                (int) Math.floorMod(time, 1_000_000L), thread);
+
+        int count = (int) readVarint();
+        Object[] array = count > 2 ? new Object[count] : null;
+        for(int i = 0; i < count; i++) {
+            int kind = in.readUnsignedByte();
+            switch(kind) {
+                case BinaryOutput.ARG_NULL:
+                    if(array == null) {
+                        event.arg((Object) null);
+                    }
+                    break;
+                case BinaryOutput.ARG_STRING:
+                    String value = readUtf8();
+                    if(array != null) {
+                        array[i] = value;
+                    }
+                    else {
+                        event.arg(value);
+                    }
+                    break;
+                case BinaryOutput.ARG_LONG:
+                    long number = readZigzag();
+                    if(array != null) {
+                        array[i] = number;
+                    }
+                    else {
+                        event.arg(number);
+                    }
+                    break;
+                case BinaryOutput.ARG_DOUBLE:
+                    double real = Double.longBitsToDouble(in.readLong());
+                    if(array != null) {
+                        array[i] = real;
+                    }
+                    else {
+                        event.arg(real);
+                    }
+                    break;
+                default:
+                    throw new IOException("Unknown argument kind " + kind);
+            }
+        }
+        if(array != null) {
+            event.args(array);
+        }
+
+        if((flags & BinaryOutput.HAS_MDC) != 0) {
+            ContextMap mdc = ContextMap.EMPTY;
+            int size = (int) readVarint();
+            for(int i = 0; i < size; i++) {
+                String key = readString();
+                mdc = mdc.with(key, readString());
+            }
+            event.mdc(mdc);
+        }
+        if((flags & BinaryOutput.HAS_THROWN) != 0) {
+            thrown.clear();
+            event.thrown(readThrown());
+            thrown.clear();
+        }
+        if(in.readUnsignedByte() != BinaryOutput.END) {
+            throw new IOException("Malformed entry record");
+        }
+    }
+
+    /**
+     * Reads an exception, its stack trace, its suppressed exceptions and its cause.
+     * @return the exception
+     * @throws IOException if the exception cannot be read
+     */
+    private DecodedException readThrown() throws IOException {
+        int reference = (int) readVarint();
+        if(reference > 0) {
+            if(reference > thrown.size()) {
+                throw new IOException("Unknown exception reference " + reference);
+            }
+            return thrown.get(reference - 1);
+        }
+        DecodedException decoded = new DecodedException(readString(), readString());
+        thrown.add(decoded);
+        StackTraceElement[] trace = new StackTraceElement[(int) readVarint()];
+        for(int i = 0; i < trace.length; i++) {
+            String loader = readString();
+            String module = readString();
+            String version = readString();
+            String className = readString();
+            String method = readString();
+            String file = readString();
+            trace[i] = new StackTraceElement(loader, module, version, className, method, file, (int) readZigzag());
+        }
+        decoded.setStackTrace(trace);
+        int suppressed = (int) readVarint();
+        for(int i = 0; i < suppressed; i++) {
+            DecodedException s = readThrown();
+            if(s != decoded) {
+                decoded.addSuppressed(s);
+            }
+        }
+        if(in.readUnsignedByte() != 0) {
+            DecodedException cause = readThrown();
+            if(cause != decoded) {
+                decoded.initCause(cause);
+            }
+        }
+        return decoded;
+    }
+
+    /**
+     * Reads a string reference.
+     * @return the string, null for a null reference
+     * @throws IOException if the reference is not in the dictionary
+     */
+    private String readString() throws IOException {
+        long reference = readVarint();
+        if(reference == BinaryOutput.NULL) {
+            return null;
+        }
+        if(reference == BinaryOutput.INLINE) {
+            return readUtf8();
+        }
+        long index = reference - BinaryOutput.FIRST_ID;
+        if(index >= strings.size()) {
+            throw new IOException("Unknown string id " + reference);
+        }
+        return strings.get((int) index);
+    }
+
+    /**
+     * Reads a string as its length in bytes and its UTF-8 bytes.
+     * @return the string
+     * @throws IOException if the string cannot be read
+     */
+    private String readUtf8() throws IOException {
+        long length = readVarint();
+        if(length > Integer.MAX_VALUE) {
+            throw new IOException("String too long: " + length);
+        }
+        if(length > text.length) {
+            text = new byte[Math.max((int) length, text.length * 2)];
+        }
+        in.readFully(text, 0, (int) length);
+        return new String(text, 0, (int) length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads an unsigned varint.
+     * @return the value
+     * @throws IOException if the varint cannot be read
+     */
+    private long readVarint() throws IOException {
+        long value = 0;
+        for(int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Reads a zigzag-encoded signed varint.
+     * @return the value
+     * @throws IOException if the varint cannot be read
+     */
+    private long readZigzag() throws IOException {
+        long value = readVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,417 @@
+package kpss.klogger;
+
+import java.util.function.Supplier;
+
+/**
+ * LogEvent holds the data of one log entry: its level, context, message, exception, timestamp, thread
+ * and diagnostic context fields.
+ * The message may be a pattern with "{}" placeholders and arguments, or a supplier: it is only
+ * rendered when the entry is formatted, which is on the writer thread in asynchronous mode.
+ * Up to two arguments are stored inline, primitive arguments without boxing.
+ * Events are recycled: each thread reuses its own event for every log call, and the
+ * asynchronous writer copies them into preallocated ring buffer slots, so logging
+ * does not allocate a new object per entry.
+ *
+ * @author POUSSE Kilian
+ */
+final class LogEvent {
+
+    /** Maximum number of arguments stored inline */
+    private static final int INLINE_ARGS = 2;
+
+    /** Argument kind: object */
+    static final byte OBJECT = 0;
+
+    /** Argument kind: long */
+    static final byte LONG = 1;
+
+    /** Argument kind: double */
+    static final byte DOUBLE = 2;
+
+    /** Per-thread reusable event */
+    private static final ThreadLocal<LogEvent> RECYCLER = ThreadLocal.withInitial(LogEvent::new);
+
+    /** Log level */
+    private LogLevel level;
+
+    /** Context in which the entry was logged (e.g. class and method name) */
+    private String context;
+
+    /** Log message, or message pattern if the event has arguments */
+    private String message;
+
+    /** Supplier of the message, called once when the message is first read, null if there is none */
+    private Supplier<String> supplier;
+
+    /** Number of message arguments */
+    private int argCount = 0;
+
+    /** Kinds of the inline arguments */
+    private final byte[] argKinds = new byte[INLINE_ARGS];
+
+    /** Inline object arguments */
+    private final Object[] objectArgs = new Object[INLINE_ARGS];
+
+    /** Inline primitive arguments (long values or double bits) */
+    private final long[] primitiveArgs = new long[INLINE_ARGS];
+
+    /** Argument array, used instead of the inline arguments if not null */
+    private Object[] arrayArgs = null;
+
+    /** Exception logged with the entry, null if there is none */
+    private Throwable thrown;
+
+    /** Creation time in milliseconds since the epoch */
+    private long timestamp;
+
+    /** Nanoseconds within the creation millisecond (0-999999) */
+    private int nanos;
+
+    /** Name of the thread that logged the entry */
+    private String thread;
+
+    /** Diagnostic context fields of the thread that logged the entry */
+    private ContextMap mdc = ContextMap.EMPTY;
+
+    /** In-use flag of a recycled event */
+    private boolean inUse = false;
+
+    /**
+     * Gets a reusable event for the current thread.
+     * A new event is returned if the thread's event is already in use (nested log call).
+     * @return an event to fill, to be released after use
+     */
+    static LogEvent acquire() {
+        LogEvent event = RECYCLER.get();
+        if(event.inUse) {
+            return new LogEvent();
+        }
+        event.inUse = true;
+        return event;
+    }
+
+    /**
+     * Releases an event obtained from {@link #acquire()} so that it can be reused,
+     * or a written ring buffer slot. The references to the data of the entry are cleared.
+     */
+    void release() {
+        inUse = false;
+        level = null;
+        context = null;
+        message = null;
+        supplier = null;
+        thrown = null;
+        thread = null;
+        mdc = ContextMap.EMPTY;
+        clearArgs();
+    }
+
+    /**
+     * Removes the message arguments.
+     */
+    private void clearArgs() {
+        argCount = 0;
+        arrayArgs = null;
+        objectArgs[0] = null;
+        objectArgs[1] = null;
+    }
+
+    /**
+     * Sets the data of the event.
+     * @param level the log level
+     * @param context the context in which the entry was logged
+     * @param message the log message
+     * @param timestamp the creation time in milliseconds since the epoch
+     * @param nanos the nanoseconds within the creation millisecond
+     * @param thread the name of the thread that logged the entry
+     * @return this event
+     */
+    LogEvent set(LogLevel level, String context, String message, long timestamp, int nanos, String thread) {
+        this.level = level;
+        this.context = context;
+        this.message = message;
+        this.supplier = null;
+        this.thrown = null;
+        this.timestamp = timestamp;
+        this.nanos = nanos;
+        this.thread = thread;
+        this.mdc = ContextMap.EMPTY;
+        clearArgs();
+        return this;
+    }
+
+    /**
+     * Sets the log message or message pattern.
+     * @param message the log message
+     * @return this event
+     */
+    LogEvent message(String message) {
+        this.message = message;
+        return this;
+    }
+
+    /**
+     * Sets the supplier of the log message, called when the message is first read.
+     * @param supplier the supplier of the log message
+     * @return this event
+     */
+    LogEvent message(Supplier<String> supplier) {
+        this.message = null;
+        this.supplier = supplier;
+        return this;
+    }
+
+    /**
+     * Sets the exception logged with the entry.
+     * @param thrown the exception, null if there is none
+     * @return this event
+     */
+    LogEvent thrown(Throwable thrown) {
+        this.thrown = thrown;
+        return this;
+    }
+
+    /**
+     * Sets the diagnostic context fields of the entry.
+     * @param mdc the immutable context map of the logging thread
+     * @return this event
+     */
+    LogEvent mdc(ContextMap mdc) {
+        this.mdc = mdc;
+        return this;
+    }
+
+    /**
+     * Adds an object argument to the message pattern.
+     * @param arg the argument
+     * @return this event
+     */
+    LogEvent arg(Object arg) {
+        if(argCount < INLINE_ARGS) {
+            argKinds[argCount] = OBJECT;
+            objectArgs[argCount++] = arg;
+        }
+        return this;
+    }
+
+    /**
+     * Adds a long argument to the message pattern, without boxing it.
+     * @param arg the argument
+     * @return this event
+     */
+    LogEvent arg(long arg) {
+        if(argCount < INLINE_ARGS) {
+            argKinds[argCount] = LONG;
+            primitiveArgs[argCount++] = arg;
+        }
+        return this;
+    }
+
+    /**
+     * Adds a double argument to the message pattern, without boxing it.
+     * @param arg the argument
+     * @return this event
+     */
+    LogEvent arg(double arg) {
+        if(argCount < INLINE_ARGS) {
+            argKinds[argCount] = DOUBLE;
+            primitiveArgs[argCount++] = Double.doubleToRawLongBits(arg);
+        }
+        return this;
+    }
+
+    /**
+     * Sets the arguments of the message pattern.
+     * The array is not copied and must not be modified afterwards.
+     * @param args the arguments
+     * @return this event
+     */
+    LogEvent args(Object[] args) {
+        arrayArgs = args;
+        argCount = args == null ? 0 : args.length;
+        return this;
+    }
+
+    /**
+     * Renders the message into the given builder, replacing each "{}" with the next argument.
+     * Placeholders without an argument are kept as they are.
+     * @param out the builder to append to
+     */
+    void appendMessage(StringBuilder out) {
+        String message = getMessage();
+        if(argCount == 0 || message == null) {
+            out.append(message);
+            return;
+        }
+        int start = 0;
+        for(int arg = 0; arg < argCount; arg++) {
+            int index = message.indexOf("{}", start);
+            if(index < 0) {
+                break;
+            }
+            out.append(message, start, index);
+            appendArg(out, arg);
+            start = index + 2;
+        }
+        out.append(message, start, message.length());
+    }
+
+    /**
+     * Appends one message argument.
+     * @param out the builder to append to
+     * @param arg the argument index
+     */
+    private void appendArg(StringBuilder out, int arg) {
+        if(arrayArgs != null) {
+            out.append(arrayArgs[arg]);
+            return;
+        }
+        switch(argKinds[arg]) {
+            case LONG:
+                out.append(primitiveArgs[arg]);
+                break;
+            case DOUBLE:
+                out.append(Double.longBitsToDouble(primitiveArgs[arg]));
+                break;
+            default:
+                out.append(objectArgs[arg]);
+                break;
+        }
+    }
+
+    /**
+     * Gets the number of message arguments.
+     * @return the number of arguments
+     */
+    int getArgCount() {
+        return argCount;
+    }
+
+    /**
+     * Gets the kind of a message argument.
+     * @param arg the argument index
+     * @return {@link #LONG} or {@link #DOUBLE} for a primitive argument, {@link #OBJECT} otherwise
+     */
+    byte getArgKind(int arg) {
+        return arrayArgs != null ? OBJECT : argKinds[arg];
+    }
+
+    /**
+     * Gets an object message argument.
+     * @param arg the argument index, of kind {@link #OBJECT}
+     * @return the argument
+     */
+    Object getObjectArg(int arg) {
+        return arrayArgs != null ? arrayArgs[arg] : objectArgs[arg];
+    }
+
+    /**
+     * Gets a primitive message argument.
+     * @param arg the argument index, of kind {@link #LONG} or {@link #DOUBLE}
+     * @return the long value, or the bits of the double value
+     */
+    long getPrimitiveArg(int arg) {
+        return primitiveArgs[arg];
+    }
+
+    /**
+     * Copies the data of another event into this event.
+     * @param other the event to copy
+     */
+    void copyFrom(LogEvent other) {
+        set(other.level, other.context, other.message, other.timestamp, other.nanos, other.thread);
+        supplier = other.supplier;
+        thrown = other.thrown;
+        mdc = other.mdc;
+        argCount = other.argCount;
+        arrayArgs = other.arrayArgs;
+        for(int i = 0; i < INLINE_ARGS; i++) {
+            argKinds[i] = other.argKinds[i];
+            objectArgs[i] = other.objectArgs[i];
+            primitiveArgs[i] = other.primitiveArgs[i];
+        }
+    }
+
+    /**
+     * Gets the log level.
+     * @return the log level
+     */
+    LogLevel getLevel() {
+        return level;
+    }
+
+    /**
+     * Gets the context in which the entry was logged.
+     * @return the context
+     */
+    String getContext() {
+        return context;
+    }
+
+    /**
+     * Gets the log message, or the message pattern if the event has arguments.
+     * A message supplier is called on first read; a supplier that fails gives a message naming the failure.
+     * @return the log message
+     */
+    String getMessage() {
+        if(supplier != null) {
+            Supplier<String> pending = supplier;
+            supplier = null;
+            try {
+                message = pending.get();
+            }
+            catch(RuntimeException e) {
+                message = "Log message supplier failed: " + e;
+            }
+        }
+        return message;
+    }
+
+    /**
+     * Gets the log message or message pattern as it was logged, without calling the message supplier.
+     * @return the log message, null if it is given by a supplier not called yet
+     */
+    String getPattern() {
+        return message;
+    }
+
+    /**
+     * Gets the exception logged with the entry.
+     * @return the exception, null if there is none
+     */
+    Throwable getThrown() {
+        return thrown;
+    }
+
+    /**
+     * Gets the diagnostic context fields of the entry.
+     * @return the immutable context map
+     */
+    ContextMap getMdc() {
+        return mdc;
+    }
+
+    /**
+     * Gets the creation time.
+     * @return the creation time in milliseconds since the epoch
+     */
+    long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Gets the nanoseconds within the creation millisecond.
+     * @return the nanoseconds (0-999999)
+     */
+    int getNanos() {
+        return nanos;
+    }
+
+    /**
+     * Gets the name of the thread that logged the entry.
+     * @return the thread name
+     */
+    String getThread() {
+        return thread;
+    }
+}
@@ -0,0 +1,46 @@
+package kpss.klogger;
+
+/**
+ * LogLayout turns a log entry into one line of text for a console or file output.
+ * A layout is either a text template such as {@code "{date} [{type}]: {message}"},
+ * or the structured {@value JsonLayout#NAME} layout writing one JSON object per line.
+ *
+ * @author POUSSE Kilian
+ */
+interface LogLayout {
+
+    /**
+     * Compiles a log format.
+     * @param pattern the log format pattern, or {@value JsonLayout#NAME} for the JSON layout
+     * @param escapes true to read "{{" and "}}" as literal braces in a text pattern
+     * @param exceptions the settings of the exception format, copied for the layout
+     * @return the compiled layout
+     */
+    static LogLayout compile(String pattern, boolean escapes, ExceptionFormat exceptions) {
+        return JsonLayout.NAME.equalsIgnoreCase(pattern)
+                ? new JsonLayout(exceptions.copy())
+                : new LogTemplate(pattern, escapes, exceptions.copy());
+    }
+
+    /**
+     * Checks if the layout writes a field.
+     * @param field the field id, one of the {@link LogTemplate} field ids
+     * @return true if the field is written, false otherwise
+     */
+    boolean uses(int field);
+
+    /**
+     * Gets the source pattern.
+     * @return the pattern this layout was compiled from
+     */
+    String getPattern();
+
+    /**
+     * Renders a log entry into the given builder.
+     * @param out the builder to append to
+     * @param event the log entry
+     * @param dateFormat the formatter of the date
+     * @param colors the escape codes of the fields, null to render the entry without color
+     */
+    void render(StringBuilder out, LogEvent event, TimestampFormat dateFormat, ColorScheme colors);
+}
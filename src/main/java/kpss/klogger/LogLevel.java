@@ -0,0 +1,46 @@
+package kpss.klogger;
+
+import java.util.Locale;
+
+/**
+ * LogLevel is the severity of a log entry, ordered from the least to the most severe.
+ * An entry is written if its level is at least the threshold of the logger it is logged from.
+ *
+ * @author POUSSE Kilian
+ */
+public enum LogLevel {
+
+    /** Detailed information for debugging */
+    DEBUG,
+
+    /** Informational message */
+    INFO,
+
+    /** Potential problem */
+    WARNING,
+
+    /** Error the program can recover from */
+    ERROR,
+
+    /** Error terminating the program */
+    CRITICAL;
+
+    /**
+     * Checks if this level is at least as severe as another level.
+     * @param other the level to compare with
+     * @return true if this level is the same as or more severe than the other level
+     */
+    public boolean isAtLeast(LogLevel other) {
+        return ordinal() >= other.ordinal();
+    }
+
+    /**
+     * Parses a level from its configuration name (e.g. "debug", "INFO").
+     * @param name the configuration name
+     * @return the level
+     * @throws IllegalArgumentException if the name is unknown
+     */
+    public static LogLevel of(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,312 @@
+package kpss.klogger;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * LogMetrics is the registry of the logger metrics: entries written per level, bytes written,
+ * dropped entries, failed writes, and the latencies of rendering and writing entries.
+ * Counters are {@link LongAdder}s and latencies are {@link LatencyHistogram}s, so recording
+ * from many logging threads is lock-free and does not contend on a shared counter.
+ * Latencies cost two clock reads per entry and sink and can be disabled.
+ *
+ * @author POUSSE Kilian
+ */
+final class LogMetrics {
+
+    /** JMX object name of the metrics */
+    static final String OBJECT_NAME = "kpss.klogger:type=LogMetrics";
+
+    /** Number of entries written, indexed by level ordinal */
+    private final LongAdder[] events = new LongAdder[LogLevel.values().length];
+
+    /** Number of bytes written to the log files */
+    private final LongAdder bytesWritten = new LongAdder();
+
+    /** Number of entries dropped by the rate limit */
+    private final LongAdder rateLimited = new LongAdder();
+
+    /** Number of entries dropped by the overflow policy of the asynchronous mode */
+    private final LongAdder asyncDropped = new LongAdder();
+
+    /** Number of failed writes */
+    private final LongAdder writeErrors = new LongAdder();
+
+    /** Time spent rendering entries */
+    private final LatencyHistogram formatLatency = new LatencyHistogram();
+
+    /** Time spent writing rendered entries to the sinks */
+    private final LatencyHistogram writeLatency = new LatencyHistogram();
+
+    /** Timing flag: false to skip the latency measurements */
+    private volatile boolean timing = true;
+
+    /** Registered JMX object name, null if the metrics are not registered */
+    private ObjectName registered = null;
+
+    /** Lock serializing the registration changes */
+    private final ReentrantLock registerLock = new ReentrantLock();
+
+    /**
+     * Creates an empty registry.
+     */
+    LogMetrics() {
+        for(int i = 0; i < events.length; i++) {
+            events[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Counts an entry written.
+     * @param level the level of the entry
+     */
+    void event(LogLevel level) {
+        events[level.ordinal()].increment();
+    }
+
+    /**
+     * Counts bytes written to a log file.
+     * @param bytes the number of bytes
+     */
+    void bytes(int bytes) {
+        if(bytes > 0) {
+            bytesWritten.add(bytes);
+        }
+    }
+
+    /**
+     * Counts an entry dropped by the rate limit.
+     */
+    void rateLimited() {
+        rateLimited.increment();
+    }
+
+    /**
+     * Counts an entry dropped by the overflow policy of the asynchronous mode.
+     */
+    void asyncDropped() {
+        asyncDropped.increment();
+    }
+
+    /**
+     * Counts a failed write.
+     */
+    void writeError() {
+        writeErrors.increment();
+    }
+
+    /**
+     * Starts a latency measurement.
+     * @return the current time in nanoseconds, or 0 if latencies are not measured
+     */
+    long start() {
+        return timing ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time spent rendering an entry.
+     * @param start the value returned by {@link #start()}
+     */
+    void formatted(long start) {
+        if(start != 0) {
+            formatLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Records the time spent writing an entry to a sink.
+     * @param start the value returned by {@link #start()}
+     */
+    void written(long start) {
+        if(start != 0) {
+            writeLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Enables or disables the latency measurements.
+     * @param timing true to measure latencies, false to only count
+     */
+    void setTiming(boolean timing) {
+        this.timing = timing;
+    }
+
+    /**
+     * Takes a snapshot of the metrics.
+     * @param writer the current asynchronous writer, null in synchronous mode
+     * @return the snapshot
+     */
+    LogStats snapshot(AsyncWriter writer) {
+        long[] counts = new long[events.length];
+        for(int i = 0; i < counts.length; i++) {
+            counts[i] = events[i].sum();
+        }
+        return new LogStats(counts, bytesWritten.sum(), rateLimited.sum(), asyncDropped.sum(), writeErrors.sum(),
+                writer != null ? writer.depth() : 0, writer != null ? writer.capacity() : 0,
+                formatLatency.snapshot(), writeLatency.snapshot());
+    }
+
+    /**
+     * Clears the counters and latencies.
+     * Values recorded during the reset may or may not be kept.
+     */
+    void reset() {
+        for(LongAdder count: events) {
+            count.reset();
+        }
+        bytesWritten.reset();
+        rateLimited.reset();
+        asyncDropped.reset();
+        writeErrors.reset();
+        formatLatency.reset();
+        writeLatency.reset();
+    }
+
+    /**
+     * Registers or unregisters the metrics with the platform MBean server.
+     * @param enabled true to register the metrics, false to unregister them
+     * @param stats the supplier of the current snapshot
+     */
+    void register(boolean enabled, Supplier<LogStats> stats) {
+        registerLock.lock();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if(enabled && registered == null) {
+                ObjectName name = new ObjectName(OBJECT_NAME);
+                if(server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+                server.registerMBean(new StandardMBean(new Bean(stats, this::reset), LogMetricsMBean.class), name);
+                registered = name;
+            }
+            else if(!enabled && registered != null) {
+                server.unregisterMBean(registered);
+                registered = null;
+            }
+        }
+        catch(JMException e) {
+            e.printStackTrace();
+        }
+        finally {
+            registerLock.unlock();
+        }
+    }
+
+    /**
+     * Bean is the JMX view of the metrics: each attribute reads a fresh snapshot.
+     */
+    private static final class Bean implements LogMetricsMBean {
+
+        /** Supplier of the current snapshot */
+        private final Supplier<LogStats> stats;
+
+        /** Reset action */
+        private final Runnable reset;
+
+        /**
+         * Creates the JMX view.
+         * @param stats the supplier of the current snapshot
+         * @param reset the reset action
+         */
+        Bean(Supplier<LogStats> stats, Runnable reset) {
+            this.stats = stats;
+            this.reset = reset;
+        }
+
+        @Override
+        public long getTotalEvents() {
+            return stats.get().getTotalEvents();
+        }
+
+        @Override
+        public long getDebugEvents() {
+            return stats.get().getEvents(LogLevel.DEBUG);
+        }
+
+        @Override
+        public long getInfoEvents() {
+            return stats.get().getEvents(LogLevel.INFO);
+        }
+
+        @Override
+        public long getWarningEvents() {
+            return stats.get().getEvents(LogLevel.WARNING);
+        }
+
+        @Override
+        public long getErrorEvents() {
+            return stats.get().getEvents(LogLevel.ERROR);
+        }
+
+        @Override
+        public long getCriticalEvents() {
+            return stats.get().getEvents(LogLevel.CRITICAL);
+        }
+
+        @Override
+        public long getBytesWritten() {
+            return stats.get().getBytesWritten();
+        }
+
+        @Override
+        public long getRateLimited() {
+            return stats.get().getRateLimited();
+        }
+
+        @Override
+        public long getAsyncDropped() {
+            return stats.get().getAsyncDropped();
+        }
+
+        @Override
+        public long getWriteErrors() {
+            return stats.get().getWriteErrors();
+        }
+
+        @Override
+        public long getQueueDepth() {
+            return stats.get().getQueueDepth();
+        }
+
+        @Override
+        public long getFormatLatencyP50() {
+            return stats.get().getFormatLatency().getP50();
+        }
+
+        @Override
+        public long getFormatLatencyP99() {
+            return stats.get().getFormatLatency().getP99();
+        }
+
+        @Override
+        public long getFormatLatencyMax() {
+            return stats.get().getFormatLatency().getMax();
+        }
+
+        @Override
+        public long getWriteLatencyP50() {
+            return stats.get().getWriteLatency().getP50();
+        }
+
+        @Override
+        public long getWriteLatencyP99() {
+            return stats.get().getWriteLatency().getP99();
+        }
+
+        @Override
+        public long getWriteLatencyMax() {
+            return stats.get().getWriteLatency().getMax();
+        }
+
+        @Override
+        public void reset() {
+            reset.run();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package kpss.klogger;
+
+/**
+ * LogMetricsMBean is the JMX view of the logger metrics, registered as
+ * {@value LogMetrics#OBJECT_NAME} when the "jmx" metrics setting is enabled.
+ * Latencies are in nanoseconds.
+ *
+ * @author POUSSE Kilian
+ */
+public interface LogMetricsMBean {
+
+    /**
+     * Gets the number of entries written at any level.
+     * @return the number of entries
+     */
+    long getTotalEvents();
+
+    /**
+     * Gets the number of DEBUG entries written.
+     * @return the number of entries
+     */
+    long getDebugEvents();
+
+    /**
+     * Gets the number of INFO entries written.
+     * @return the number of entries
+     */
+    long getInfoEvents();
+
+    /**
+     * Gets the number of WARNING entries written.
+     * @return the number of entries
+     */
+    long getWarningEvents();
+
+    /**
+     * Gets the number of ERROR entries written.
+     * @return the number of entries
+     */
+    long getErrorEvents();
+
+    /**
+     * Gets the number of CRITICAL entries written.
+     * @return the number of entries
+     */
+    long getCriticalEvents();
+
+    /**
+     * Gets the number of bytes written to the log files.
+     * @return the number of bytes
+     */
+    long getBytesWritten();
+
+    /**
+     * Gets the number of entries dropped by the rate limit.
+     * @return the number of entries
+     */
+    long getRateLimited();
+
+    /**
+     * Gets the number of entries dropped because the asynchronous ring buffer was full.
+     * @return the number of entries
+     */
+    long getAsyncDropped();
+
+    /**
+     * Gets the number of writes that failed with an I/O error.
+     * @return the number of failed writes
+     */
+    long getWriteErrors();
+
+    /**
+     * Gets the number of entries waiting for the writer thread.
+     * @return the queue depth, 0 in synchronous mode
+     */
+    long getQueueDepth();
+
+    /**
+     * Gets the median time spent rendering an entry.
+     * @return the median in nanoseconds
+     */
+    long getFormatLatencyP50();
+
+    /**
+     * Gets the 99th percentile of the time spent rendering an entry.
+     * @return the percentile in nanoseconds
+     */
+    long getFormatLatencyP99();
+
+    /**
+     * Gets the longest time spent rendering an entry.
+     * @return the maximum in nanoseconds
+     */
+    long getFormatLatencyMax();
+
+    /**
+     * Gets the median time spent writing an entry to a sink.
+     * @return the median in nanoseconds
+     */
+    long getWriteLatencyP50();
+
+    /**
+     * Gets the 99th percentile of the time spent writing an entry to a sink.
+     * @return the percentile in nanoseconds
+     */
+    long getWriteLatencyP99();
+
+    /**
+     * Gets the longest time spent writing an entry to a sink.
+     * @return the maximum in nanoseconds
+     */
+    long getWriteLatencyMax();
+
+    /**
+     * Clears the counters and latencies.
+     */
+    void reset();
+}
@@ -0,0 +1,268 @@
+package kpss.klogger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * LogPipeline fans each log entry out to a list of appenders.
+ * Appenders using the same layout with the same colors are grouped together, and a group renders
+ * the entry once, on first use, into a reusable per-thread builder that is then handed to every
+ * appender of the group accepting the entry's level. Entries below the threshold of every
+ * appender of a group are never rendered. Binary appenders encode the entry itself and never
+ * have it rendered.
+ * <p>
+ * Each appender is written either by the calling thread or by the asynchronous writer thread;
+ * the asynchronous mode of the whole pipeline hands every appender to the writer thread.
+ * A pipeline is immutable: adding, replacing or removing an appender creates a new pipeline.
+ *
+ * @author POUSSE Kilian
+ */
+final class LogPipeline {
+
+    /** Reusable per-thread builder for rendering log entries */
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    /** Appenders, in configuration order */
+    private final List<LogAppender> appenders;
+
+    /** Escape codes of the colored appenders, null if the entries are not colored */
+    private final ColorScheme colors;
+
+    /** Asynchronous mode flag: true to write every appender from the writer thread */
+    private final boolean asyncAll;
+
+    /** Appenders grouped by layout and colors */
+    private final Group[] groups;
+
+    /**
+     * Creates a pipeline.
+     * @param appenders the appenders, copied
+     * @param colors the escape codes of the colored appenders, null if the entries are not colored
+     * @param asyncAll true to write every appender from the writer thread
+     */
+    LogPipeline(List<LogAppender> appenders, ColorScheme colors, boolean asyncAll) {
+        this.appenders = Collections.unmodifiableList(new ArrayList<>(appenders));
+        this.colors = colors;
+        this.asyncAll = asyncAll;
+        List<Group> list = new ArrayList<>();
+        for(LogAppender appender: this.appenders) {
+            ColorScheme scheme = appender.isColored() && !(appender.getLayout() instanceof JsonLayout) ? colors : null;
+            Group group = null;
+            for(Group g: list) {
+                if(g.layout == appender.getLayout() && g.colors == scheme) {
+                    group = g;
+                }
+            }
+            if(group == null) {
+                group = new Group(appender.getLayout(), scheme);
+                list.add(group);
+            }
+            group.add(appender);
+        }
+        this.groups = list.toArray(new Group[0]);
+    }
+
+    /**
+     * Creates a copy of this pipeline with an appender added,
+     * replacing the appender with the same name if there is one.
+     * @param appender the appender
+     * @return the new pipeline
+     */
+    LogPipeline with(LogAppender appender) {
+        List<LogAppender> list = new ArrayList<>(appenders);
+        for(int i = 0; i < list.size(); i++) {
+            if(list.get(i).getName().equals(appender.getName())) {
+                list.set(i, appender);
+                return new LogPipeline(list, colors, asyncAll);
+            }
+        }
+        list.add(appender);
+        return new LogPipeline(list, colors, asyncAll);
+    }
+
+    /**
+     * Creates a copy of this pipeline without an appender.
+     * @param name the name of the appender to remove
+     * @return the new pipeline
+     */
+    LogPipeline without(String name) {
+        List<LogAppender> list = new ArrayList<>(appenders);
+        list.removeIf(appender -> appender.getName().equals(name));
+        return new LogPipeline(list, colors, asyncAll);
+    }
+
+    /**
+     * Creates a copy of this pipeline with other colors.
+     * @param colors the escape codes of the colored appenders, null if the entries are not colored
+     * @return the new pipeline
+     */
+    LogPipeline withColors(ColorScheme colors) {
+        return new LogPipeline(appenders, colors, asyncAll);
+    }
+
+    /**
+     * Creates a copy of this pipeline with another asynchronous mode.
+     * @param asyncAll true to write every appender from the writer thread
+     * @return the new pipeline
+     */
+    LogPipeline withAsync(boolean asyncAll) {
+        return new LogPipeline(appenders, colors, asyncAll);
+    }
+
+    /**
+     * Gets an appender by name.
+     * @param name the name of the appender
+     * @return the appender, null if there is none with that name
+     */
+    LogAppender get(String name) {
+        for(LogAppender appender: appenders) {
+            if(appender.getName().equals(name)) {
+                return appender;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the appenders.
+     * @return an unmodifiable list of appenders, in configuration order
+     */
+    List<LogAppender> getAppenders() {
+        return appenders;
+    }
+
+    /**
+     * Checks if every appender is written by the writer thread.
+     * @return true in asynchronous mode, false otherwise
+     */
+    boolean isAsyncAll() {
+        return asyncAll;
+    }
+
+    /**
+     * Checks if at least one appender is written by the writer thread.
+     * @return true if the pipeline needs an asynchronous writer, false otherwise
+     */
+    boolean hasAsync() {
+        if(asyncAll) {
+            return true;
+        }
+        for(LogAppender appender: appenders) {
+            if(appender.isAsync()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if one of the layouts writes a field.
+     * @param field the field id, one of the {@link LogTemplate} field ids
+     * @return true if the field is written, false otherwise
+     */
+    boolean uses(int field) {
+        for(LogAppender appender: appenders) {
+            if(appender.getLayout().uses(field)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes a log entry to the appenders of one or both writing modes.
+     * @param event the log entry
+     * @param dateFormat the formatter of the date
+     * @param sync true to write the appenders written by the calling thread
+     * @param async true to write the appenders written by the writer thread
+     * @param config the configuration, which resolves the replacement of a closed appender
+     */
+    void write(LogEvent event, TimestampFormat dateFormat, boolean sync, boolean async, LogConfig config) {
+        LogLevel level = event.getLevel();
+        LogMetrics metrics = config.getMetrics();
+        for(Group group: groups) {
+            StringBuilder line = null;
+            for(LogAppender appender: group.appenders) {
+                if(!((asyncAll || appender.isAsync()) ? async : sync) || !appender.accepts(level)) {
+                    continue;
+                }
+                if(line == null && !appender.isBinary()) {
+                    long start = metrics.start();
+                    line = group.render(event, dateFormat);
+                    metrics.formatted(start);
+                }
+                config.append(appender, line, event);
+            }
+        }
+    }
+
+    /**
+     * Writes the buffered entries of every appender.
+     * @param force true to also force them to the storage device
+     */
+    void flush(boolean force) {
+        for(LogAppender appender: appenders) {
+            try {
+                appender.flush(force);
+            }
+            catch(IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Group is a set of appenders sharing one layout and one color scheme,
+     * and therefore one rendered line per entry.
+     */
+    private static final class Group {
+
+        /** Layout of the appenders */
+        private final LogLayout layout;
+
+        /** Escape codes of the appenders, null if the entries are not colored */
+        private final ColorScheme colors;
+
+        /** Appenders of the group */
+        private LogAppender[] appenders = new LogAppender[0];
+
+        /**
+         * Creates an empty group.
+         * @param layout the layout of the appenders
+         * @param colors the escape codes of the appenders, null if the entries are not colored
+         */
+        Group(LogLayout layout, ColorScheme colors) {
+            this.layout = layout;
+            this.colors = colors;
+        }
+
+        /**
+         * Adds an appender to the group.
+         * @param appender the appender
+         */
+        void add(LogAppender appender) {
+            appenders = Arrays.copyOf(appenders, appenders.length + 1);
+            appenders[appenders.length - 1] = appender;
+        }
+
+        /**
+         * Renders a log entry.
+         * The returned builder is reused by the calling thread on its next call.
+         * @param event the log entry
+         * @param dateFormat the formatter of the date
+         * @return the rendered entry
+         */
+        StringBuilder render(LogEvent event, TimestampFormat dateFormat) {
+            StringBuilder out = BUFFER.get();
+            out.setLength(0);
+            layout.render(out, event, dateFormat, colors);
+            if(colors != null) {
+                out.append(colors.reset());
+            }
+            return out;
+        }
+    }
+}
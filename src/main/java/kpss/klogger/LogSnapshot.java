@@ -0,0 +1,197 @@
+package kpss.klogger;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * LogSnapshot is an immutable view of the settings used to write log entries:
+ * level thresholds, date format, colors and color mode, caller mode, rate limiter,
+ * appender pipeline and asynchronous writer.
+ * The configuration publishes a new snapshot for every change, and each log call reads the
+ * current snapshot once, so an entry is always written with one consistent set of settings,
+ * without taking any lock.
+ *
+ * @author POUSSE Kilian
+ */
+final class LogSnapshot {
+
+    /** Level thresholds: global threshold and per-logger overrides */
+    private final LevelFilter levels;
+
+    /** Compiled date format */
+    private final TimestampFormat dateFormat;
+
+    /** Map of log types to their corresponding colors */
+    private final Map<String, LogColor> colors;
+
+    /** Console color mode */
+    private final ColorMode colorMode;
+
+    /** Caller capture mode */
+    private final CallerMode callerMode;
+
+    /** Context flag: true if one of the layouts references {context} */
+    private final boolean contextUsed;
+
+    /** Per-call-site rate limiter, null if entries are not throttled */
+    private final RateLimiter rateLimiter;
+
+    /** Appenders the entries are written to, with the colors of the color mode */
+    private final LogPipeline pipeline;
+
+    /** Asynchronous writer, null in synchronous mode */
+    private final AsyncWriter writer;
+
+    /**
+     * Creates a snapshot.
+     * @param levels the level thresholds
+     * @param dateFormat the compiled date format
+     * @param colors the colors of the fields and log types, copied
+     * @param colorMode the console color mode
+     * @param callerMode the caller capture mode
+     * @param rateLimiter the per-call-site rate limiter, null if entries are not throttled
+     * @param pipeline the appenders the entries are written to
+     * @param writer the asynchronous writer, null in synchronous mode
+     */
+    LogSnapshot(LevelFilter levels, TimestampFormat dateFormat, Map<String, LogColor> colors, ColorMode colorMode,
+            CallerMode callerMode, RateLimiter rateLimiter, LogPipeline pipeline, AsyncWriter writer) {
+        this.levels = levels;
+        this.dateFormat = dateFormat;
+        this.colors = Collections.unmodifiableMap(new HashMap<>(colors));
+        this.colorMode = colorMode;
+        this.callerMode = callerMode;
+        this.contextUsed = pipeline.uses(LogTemplate.CONTEXT);
+        this.rateLimiter = rateLimiter;
+        this.pipeline = pipeline.withColors(colorMode.enabled() ? new ColorScheme(this.colors) : null);
+        this.writer = writer;
+    }
+
+    /**
+     * Creates a copy of this snapshot with other level thresholds.
+     * @param levels the new level thresholds
+     * @return the new snapshot
+     */
+    LogSnapshot withLevels(LevelFilter levels) {
+        return new LogSnapshot(levels, dateFormat, colors, colorMode, callerMode, rateLimiter, pipeline, writer);
+    }
+
+    /**
+     * Creates a copy of this snapshot with another console color mode.
+     * @param colorMode the new console color mode
+     * @return the new snapshot
+     */
+    LogSnapshot withColorMode(ColorMode colorMode) {
+        return new LogSnapshot(levels, dateFormat, colors, colorMode, callerMode, rateLimiter, pipeline, writer);
+    }
+
+    /**
+     * Creates a copy of this snapshot with another caller capture mode.
+     * @param callerMode the new caller capture mode
+     * @return the new snapshot
+     */
+    LogSnapshot withCallerMode(CallerMode callerMode) {
+        return new LogSnapshot(levels, dateFormat, colors, colorMode, callerMode, rateLimiter, pipeline, writer);
+    }
+
+    /**
+     * Creates a copy of this snapshot with another rate limiter.
+     * @param rateLimiter the new rate limiter, null if entries are not throttled
+     * @return the new snapshot
+     */
+    LogSnapshot withRateLimiter(RateLimiter rateLimiter) {
+        return new LogSnapshot(levels, dateFormat, colors, colorMode, callerMode, rateLimiter, pipeline, writer);
+    }
+
+    /**
+     * Creates a copy of this snapshot with other appenders.
+     * @param pipeline the new appender pipeline
+     * @return the new snapshot
+     */
+    LogSnapshot withPipeline(LogPipeline pipeline) {
+        return new LogSnapshot(levels, dateFormat, colors, colorMode, callerMode, rateLimiter, pipeline, writer);
+    }
+
+    /**
+     * Creates a copy of this snapshot with another asynchronous writer.
+     * @param writer the new asynchronous writer, null in synchronous mode
+     * @return the new snapshot
+     */
+    LogSnapshot withWriter(AsyncWriter writer) {
+        return new LogSnapshot(levels, dateFormat, colors, colorMode, callerMode, rateLimiter, pipeline, writer);
+    }
+
+    /**
+     * Gets the level thresholds.
+     * @return the global threshold and per-logger overrides
+     */
+    LevelFilter getLevels() {
+        return levels;
+    }
+
+    /**
+     * Gets the compiled date format.
+     * @return the date format
+     */
+    TimestampFormat getDateFormat() {
+        return dateFormat;
+    }
+
+    /**
+     * Gets the colors of the fields and log types.
+     * @return an unmodifiable map of colors
+     */
+    Map<String, LogColor> getColors() {
+        return colors;
+    }
+
+    /**
+     * Gets the console color mode.
+     * @return the console color mode
+     */
+    ColorMode getColorMode() {
+        return colorMode;
+    }
+
+    /**
+     * Gets the caller capture mode.
+     * @return the caller capture mode
+     */
+    CallerMode getCallerMode() {
+        return callerMode;
+    }
+
+    /**
+     * Checks if the caller context must be captured for a log entry.
+     * It is never captured if none of the layouts references {context}.
+     * @param level the log level
+     * @return true if the caller must be captured, false otherwise
+     */
+    boolean needsContext(LogLevel level) {
+        return contextUsed && callerMode.captures(level);
+    }
+
+    /**
+     * Gets the per-call-site rate limiter.
+     * @return the rate limiter, null if entries are not throttled
+     */
+    RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Gets the appenders the entries are written to.
+     * @return the appender pipeline
+     */
+    LogPipeline getPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * Gets the asynchronous writer.
+     * @return the asynchronous writer, null in synchronous mode
+     */
+    AsyncWriter getWriter() {
+        return writer;
+    }
+}
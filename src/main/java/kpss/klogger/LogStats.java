@@ -0,0 +1,273 @@
+package kpss.klogger;
+
+/**
+ * LogStats is a snapshot of the logger metrics, returned by {@link KLog#stats()}.
+ * Counters are totals since the program started (or since the metrics were last reset);
+ * latencies are in nanoseconds.
+ *
+ * @author POUSSE Kilian
+ */
+public final class LogStats {
+
+    /** Number of entries written, indexed by level ordinal */
+    private final long[] events;
+
+    /** Number of bytes written to the log files */
+    private final long bytesWritten;
+
+    /** Number of entries dropped by the rate limit */
+    private final long rateLimited;
+
+    /** Number of entries dropped by the overflow policy of the asynchronous mode */
+    private final long asyncDropped;
+
+    /** Number of failed writes */
+    private final long writeErrors;
+
+    /** Number of entries waiting for the writer thread */
+    private final long queueDepth;
+
+    /** Capacity of the asynchronous ring buffer, 0 in synchronous mode */
+    private final long queueCapacity;
+
+    /** Time spent rendering entries */
+    private final Latency formatLatency;
+
+    /** Time spent writing rendered entries to the sinks */
+    private final Latency writeLatency;
+
+    /**
+     * Creates a snapshot.
+     * @param events the number of entries written, indexed by level ordinal
+     * @param bytesWritten the number of bytes written to the log files
+     * @param rateLimited the number of entries dropped by the rate limit
+     * @param asyncDropped the number of entries dropped by the overflow policy
+     * @param writeErrors the number of failed writes
+     * @param queueDepth the number of entries waiting for the writer thread
+     * @param queueCapacity the capacity of the asynchronous ring buffer, 0 in synchronous mode
+     * @param formatLatency the time spent rendering entries
+     * @param writeLatency the time spent writing rendered entries to the sinks
+     */
+    LogStats(long[] events, long bytesWritten, long rateLimited, long asyncDropped, long writeErrors,
+            long queueDepth, long queueCapacity, Latency formatLatency, Latency writeLatency) {
+        this.events = events.clone();
+        this.bytesWritten = bytesWritten;
+        this.rateLimited = rateLimited;
+        this.asyncDropped = asyncDropped;
+        this.writeErrors = writeErrors;
+        this.queueDepth = queueDepth;
+        this.queueCapacity = queueCapacity;
+        this.formatLatency = formatLatency;
+        this.writeLatency = writeLatency;
+    }
+
+    /**
+     * Gets the number of entries written at a level.
+     * @param level the log level
+     * @return the number of entries
+     */
+    public long getEvents(LogLevel level) {
+        return events[level.ordinal()];
+    }
+
+    /**
+     * Gets the number of entries written at any level.
+     * @return the number of entries
+     */
+    public long getTotalEvents() {
+        long total = 0;
+        for(long count: events) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Gets the number of bytes written to the log files.
+     * @return the number of bytes
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Gets the number of entries dropped by the rate limit.
+     * @return the number of entries
+     */
+    public long getRateLimited() {
+        return rateLimited;
+    }
+
+    /**
+     * Gets the number of entries dropped because the asynchronous ring buffer was full.
+     * @return the number of entries
+     */
+    public long getAsyncDropped() {
+        return asyncDropped;
+    }
+
+    /**
+     * Gets the number of writes that failed with an I/O error.
+     * @return the number of failed writes
+     */
+    public long getWriteErrors() {
+        return writeErrors;
+    }
+
+    /**
+     * Gets the number of entries waiting for the writer thread.
+     * @return the queue depth, 0 in synchronous mode
+     */
+    public long getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Gets the capacity of the asynchronous ring buffer.
+     * @return the capacity, 0 in synchronous mode
+     */
+    public long getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Gets the time spent rendering entries, once per layout and entry.
+     * @return the rendering latency
+     */
+    public Latency getFormatLatency() {
+        return formatLatency;
+    }
+
+    /**
+     * Gets the time spent writing rendered entries, once per sink and entry.
+     * @return the write latency
+     */
+    public Latency getWriteLatency() {
+        return writeLatency;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder("events={");
+        for(LogLevel level: LogLevel.values()) {
+            out.append(level.ordinal() > 0 ? ", " : "").append(level).append('=').append(events[level.ordinal()]);
+        }
+        return out.append("}, bytesWritten=").append(bytesWritten)
+                .append(", rateLimited=").append(rateLimited)
+                .append(", asyncDropped=").append(asyncDropped)
+                .append(", writeErrors=").append(writeErrors)
+                .append(", queue=").append(queueDepth).append('/').append(queueCapacity)
+                .append(", format=").append(formatLatency)
+                .append(", write=").append(writeLatency).toString();
+    }
+
+    /**
+     * Latency is a snapshot of a latency histogram, in nanoseconds.
+     * Percentiles are accurate within 12.5%.
+     */
+    public static final class Latency {
+
+        /** Number of recorded durations */
+        private final long count;
+
+        /** Mean duration */
+        private final long mean;
+
+        /** Median duration */
+        private final long p50;
+
+        /** 90th percentile */
+        private final long p90;
+
+        /** 99th percentile */
+        private final long p99;
+
+        /** 99.9th percentile */
+        private final long p999;
+
+        /** Longest duration */
+        private final long max;
+
+        /**
+         * Creates a latency snapshot.
+         * @param count the number of recorded durations
+         * @param mean the mean duration
+         * @param p50 the median duration
+         * @param p90 the 90th percentile
+         * @param p99 the 99th percentile
+         * @param p999 the 99.9th percentile
+         * @param max the longest duration
+         */
+        Latency(long count, long mean, long p50, long p90, long p99, long p999, long max) {
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.p999 = p999;
+            this.max = max;
+        }
+
+        /**
+         * Gets the number of recorded durations.
+         * @return the count
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Gets the mean duration.
+         * @return the mean in nanoseconds
+         */
+        public long getMean() {
+            return mean;
+        }
+
+        /**
+         * Gets the median duration.
+         * @return the median in nanoseconds
+         */
+        public long getP50() {
+            return p50;
+        }
+
+        /**
+         * Gets the 90th percentile.
+         * @return the percentile in nanoseconds
+         */
+        public long getP90() {
+            return p90;
+        }
+
+        /**
+         * Gets the 99th percentile.
+         * @return the percentile in nanoseconds
+         */
+        public long getP99() {
+            return p99;
+        }
+
+        /**
+         * Gets the 99.9th percentile.
+         * @return the percentile in nanoseconds
+         */
+        public long getP999() {
+            return p999;
+        }
+
+        /**
+         * Gets the longest duration.
+         * @return the maximum in nanoseconds
+         */
+        public long getMax() {
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return "{count=" + count + ", mean=" + mean + ", p50=" + p50 + ", p90=" + p90 + ", p99=" + p99
+                    + ", p999=" + p999 + ", max=" + max + "}";
+        }
+    }
+}
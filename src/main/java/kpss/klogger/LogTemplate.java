@@ -0,0 +1,228 @@
+package kpss.klogger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * LogTemplate is a compiled log format such as {@code "{date} [{type}]: {message}"}.
+ * Diagnostic context fields are referenced as {mdc.key}, or all at once as {mdc}.
+ * The pattern is parsed once into literal segments and field references,
+ * so rendering an entry is a single pass that appends into a reusable builder.
+ *
+ * @author POUSSE Kilian
+ */
+class LogTemplate implements LogLayout {
+
+    /** Names of the fields that can be referenced by a template, indexed by field id */
+    static final String[] FIELDS = { "type", "context", "message", "date", "thread", "mdc" };
+
+    /** Field id of the log level */
+    static final int TYPE = 0;
+
+    /** Field id of the context */
+    static final int CONTEXT = 1;
+
+    /** Field id of the message */
+    static final int MESSAGE = 2;
+
+    /** Field id of the date */
+    static final int DATE = 3;
+
+    /** Field id of the thread name */
+    static final int THREAD = 4;
+
+    /** Field id of the diagnostic context fields */
+    static final int MDC = 5;
+
+    /** Prefix of the placeholders of one diagnostic context field */
+    private static final String MDC_PREFIX = "mdc.";
+
+    /** Field id of literal segments */
+    private static final int LITERAL = -1;
+
+    /** The source pattern */
+    private final String pattern;
+
+    /** Segment texts: the literal text, the field name for field segments, the key of an {mdc.key} segment, null for {mdc} */
+    private final String[] texts;
+
+    /** Segment field ids, {@link #LITERAL} for literal segments */
+    private final int[] fields;
+
+    /** Format of the exceptions written after the message */
+    private final ExceptionFormat exceptions;
+
+    /**
+     * Compiles a log format pattern.
+     * Unknown placeholders are kept verbatim as literal text.
+     * @param pattern the log format pattern
+     * @param escapes true to read "{{" and "}}" as literal braces
+     * @param exceptions the format of the exceptions written after the message
+     */
+    LogTemplate(String pattern, boolean escapes, ExceptionFormat exceptions) {
+        this.pattern = pattern;
+        this.exceptions = exceptions;
+        List<String> segTexts = new ArrayList<>();
+        List<Integer> segFields = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        int length = pattern.length();
+        while(i < length) {
+            char c = pattern.charAt(i);
+            if(escapes && (c == '{' || c == '}') && i + 1 < length && pattern.charAt(i + 1) == c) {
+                literal.append(c);
+                i += 2;
+                continue;
+            }
+            if(c == '{') {
+                int end = pattern.indexOf('}', i + 1);
+                int field = end > 0 ? fieldId(pattern.substring(i + 1, end)) : LITERAL;
+                if(field != LITERAL) {
+                    if(literal.length() > 0) {
+                        segTexts.add(literal.toString());
+                        segFields.add(LITERAL);
+                        literal.setLength(0);
+                    }
+                    String name = pattern.substring(i + 1, end);
+                    if(field == MDC) {
+                        segTexts.add(name.startsWith(MDC_PREFIX) ? name.substring(MDC_PREFIX.length()) : null);
+                    }
+                    else {
+                        segTexts.add(FIELDS[field]);
+                    }
+                    segFields.add(field);
+                    i = end + 1;
+                    continue;
+                }
+            }
+            literal.append(c);
+            i++;
+        }
+        if(literal.length() > 0) {
+            segTexts.add(literal.toString());
+            segFields.add(LITERAL);
+        }
+
+        texts = segTexts.toArray(new String[0]);
+        fields = new int[texts.length];
+        for(int j = 0; j < fields.length; j++) {
+            fields[j] = segFields.get(j);
+        }
+    }
+
+    /**
+     * Gets the field id of a placeholder name.
+     * @param name the placeholder name
+     * @return the field id, or {@link #LITERAL} if the name is not a known field
+     */
+    private static int fieldId(String name) {
+        if(name.startsWith(MDC_PREFIX) && name.length() > MDC_PREFIX.length()) {
+            return MDC;
+        }
+        for(int i = 0; i < FIELDS.length; i++) {
+            if(FIELDS[i].equals(name)) {
+                return i;
+            }
+        }
+        return LITERAL;
+    }
+
+    /**
+     * Checks if the template references a field.
+     * @param field the field id
+     * @return true if the field appears in the template, false otherwise
+     */
+    @Override
+    public boolean uses(int field) {
+        for(int f: fields) {
+            if(f == field) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the source pattern.
+     * @return the pattern this template was compiled from
+     */
+    @Override
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Renders a log entry into the given builder.
+     * The exception of the entry, if any, is written after the message.
+     * @param out the builder to append to
+     * @param event the log entry
+     * @param dateFormat the formatter of the {date} field
+     * @param colors the escape codes of the fields, null to render the entry without color
+     */
+    @Override
+    public void render(StringBuilder out, LogEvent event, TimestampFormat dateFormat, ColorScheme colors) {
+        if(colors == null) {
+            for(int i = 0; i < texts.length; i++) {
+                if(fields[i] == LITERAL) {
+                    out.append(texts[i]);
+                }
+                else {
+                    appendField(out, fields[i], texts[i], event, dateFormat);
+                }
+            }
+            return;
+        }
+        for(int i = 0; i < texts.length; i++) {
+            int field = fields[i];
+            if(field == LITERAL) {
+                out.append(texts[i]);
+                continue;
+            }
+            out.append(colors.prefix(field, event.getLevel()));
+            appendField(out, field, texts[i], event, dateFormat);
+            out.append(colors.reset());
+        }
+    }
+
+    /**
+     * Appends the value of one field of a log entry.
+     * @param out the builder to append to
+     * @param field the field id
+     * @param name the field name, the key of an {mdc.key} field, or null for {mdc}
+     * @param event the log entry
+     * @param dateFormat the formatter of the {date} field
+     */
+    private void appendField(StringBuilder out, int field, String name, LogEvent event, TimestampFormat dateFormat) {
+        switch(field) {
+            case TYPE:
+                out.append(event.getLevel().name());
+                break;
+            case CONTEXT:
+                out.append(event.getContext());
+                break;
+            case MESSAGE:
+                event.appendMessage(out);
+                if(event.getThrown() != null) {
+                    exceptions.appendText(out, event.getThrown());
+                }
+                break;
+            case DATE:
+                dateFormat.render(out, event.getTimestamp(), event.getNanos());
+                break;
+            case THREAD:
+                out.append(event.getThread());
+                break;
+            case MDC:
+                if(name == null) {
+                    event.getMdc().appendTo(out);
+                }
+                else {
+                    String value = event.getMdc().get(name);
+                    out.append(value == null ? "" : value);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+}
@@ -0,0 +1,515 @@
+package kpss.klogger;
+
+import java.util.function.Supplier;
+
+/**
+ * Logger is a named logger, returned by {@link KLog#getLogger(Class)} and {@link KLog#getLogger(String)}.
+ * Its entries use its name as context, so a log call never walks the stack, and its level threshold
+ * is resolved once per level configuration instead of being looked up for each call.
+ * Loggers are cached by name and stay valid across configuration changes, so a logger is
+ * typically held in a static field:
+ * <pre>{@code
+ * private static final Logger LOG = KLog.getLogger(MyService.class);
+ * }</pre>
+ *
+ * @author POUSSE Kilian
+ */
+public final class Logger {
+
+    /** Name of the logger, the context of its entries */
+    private final String name;
+
+    /** Threshold resolved for the current level settings, null until first used */
+    private volatile Threshold threshold = null;
+
+    /**
+     * Creates a logger.
+     * @param name the name of the logger
+     */
+    Logger(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets the name of the logger.
+     * @return the name, usually a class name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Checks if a level is enabled for this logger.
+     * Use it to guard expensive work that is only needed for logging.
+     * @param level the level to check.
+     * @return true if messages of this level are written, false otherwise.
+     */
+    public boolean isEnabled(LogLevel level) {
+        LevelFilter levels = KLog.levels();
+        Threshold current = threshold;
+        if(current == null || current.levels != levels) {
+            // The level settings changed: resolve the threshold of this logger again
+            current = new Threshold(levels, levels.resolve(name));
+            threshold = current;
+        }
+        return level.isAtLeast(current.level);
+    }
+
+    /**
+     * Creates a log event if its level is enabled for this logger.
+     * @param level the level of the log message
+     * @return the log event, to be written with {@link KLog#write(LogEvent)}, or null if the level is disabled
+     */
+    private LogEvent event(LogLevel level) {
+        return isEnabled(level) ? KLog.event(level, name) : null;
+    }
+
+    /**
+     * Logs an informational message.
+     * @param msg the message to log.
+     */
+    public void log(String msg) {
+        LogEvent event = event(LogLevel.INFO);
+        if(event != null) {
+            KLog.write(event.message(msg));
+        }
+    }
+
+    /**
+     * Logs an informational message built from a pattern and one argument.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param arg the argument.
+     */
+    public void log(String format, Object arg) {
+        LogEvent event = event(LogLevel.INFO);
+        if(event != null) {
+            KLog.write(event.message(format).arg(arg));
+        }
+    }
+
+    /**
+     * Logs an informational message built from a pattern and two arguments.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param arg1 the first argument.
+     * @param arg2 the second argument.
+     */
+    public void log(String format, Object arg1, Object arg2) {
+        LogEvent event = event(LogLevel.INFO);
+        if(event != null) {
+            KLog.write(event.message(format).arg(arg1).arg(arg2));
+        }
+    }
+
+    /**
+     * Logs an informational message built from a pattern and arguments.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param args the arguments.
+     */
+    public void log(String format, Object... args) {
+        LogEvent event = event(LogLevel.INFO);
+        if(event != null) {
+            KLog.write(event.message(format).args(args));
+        }
+    }
+
+    /**
+     * Logs an informational message built from a pattern and a long argument, without boxing it.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param arg the argument.
+     */
+    public void log(String format, long arg) {
+        LogEvent event = event(LogLevel.INFO);
+        if(event != null) {
+            KLog.write(event.message(format).arg(arg));
+        }
+    }
+
+    /**
+     * Logs an informational message built from a pattern and a double argument, without boxing it.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param arg the argument.
+     */
+    public void log(String format, double arg) {
+        LogEvent event = event(LogLevel.INFO);
+        if(event != null) {
+            KLog.write(event.message(format).arg(arg));
+        }
+    }
+
+    /**
+     * Logs an informational message supplied on demand.
+     * The supplier is only called if the entry is written, by the writer thread if every sink is asynchronous.
+     * @param msg the supplier of the message to log.
+     */
+    public void log(Supplier<String> msg) {
+        LogEvent event = event(LogLevel.INFO);
+        if(event != null) {
+            KLog.write(event.message(msg));
+        }
+    }
+
+    /**
+     * Logs a debug message if the DEBUG level is enabled.
+     * @param msg the message to log.
+     */
+    public void debug(String msg) {
+        LogEvent event = event(LogLevel.DEBUG);
+        if(event != null) {
+            KLog.write(event.message(msg));
+        }
+    }
+
+    /**
+     * Logs a debug message built from a pattern and one argument if the DEBUG level is enabled.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param arg the argument.
+     */
+    public void debug(String format, Object arg) {
+        LogEvent event = event(LogLevel.DEBUG);
+        if(event != null) {
+            KLog.write(event.message(format).arg(arg));
+        }
+    }
+
+    /**
+     * Logs a debug message built from a pattern and two arguments if the DEBUG level is enabled.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param arg1 the first argument.
+     * @param arg2 the second argument.
+     */
+    public void debug(String format, Object arg1, Object arg2) {
+        LogEvent event = event(LogLevel.DEBUG);
+        if(event != null) {
+            KLog.write(event.message(format).arg(arg1).arg(arg2));
+        }
+    }
+
+    /**
+     * Logs a debug message built from a pattern and arguments if the DEBUG level is enabled.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param args the arguments.
+     */
+    public void debug(String format, Object... args) {
+        LogEvent event = event(LogLevel.DEBUG);
+        if(event != null) {
+            KLog.write(event.message(format).args(args));
+        }
+    }
+
+    /**
+     * Logs a debug message built from a pattern and a long argument, without boxing it if the DEBUG level is enabled.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param arg the argument.
+     */
+    public void debug(String format, long arg) {
+        LogEvent event = event(LogLevel.DEBUG);
+        if(event != null) {
+            KLog.write(event.message(format).arg(arg));
+        }
+    }
+
+    /**
+     * Logs a debug message built from a pattern and a double argument, without boxing it if the DEBUG level is enabled.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param arg the argument.
+     */
+    public void debug(String format, double arg) {
+        LogEvent event = event(LogLevel.DEBUG);
+        if(event != null) {
+            KLog.write(event.message(format).arg(arg));
+        }
+    }
+
+    /**
+     * Logs a debug message supplied on demand if the DEBUG level is enabled.
+     * The supplier is only called if the entry is written, by the writer thread if every sink is asynchronous.
+     * @param msg the supplier of the message to log.
+     */
+    public void debug(Supplier<String> msg) {
+        LogEvent event = event(LogLevel.DEBUG);
+        if(event != null) {
+            KLog.write(event.message(msg));
+        }
+    }
+
+    /**
+     * Logs a warning message.
+     * @param msg the message to log.
+     */
+    public void warning(String msg) {
+        LogEvent event = event(LogLevel.WARNING);
+        if(event != null) {
+            KLog.write(event.message(msg));
+        }
+    }
+
+    /**
+     * Logs a warning message built from a pattern and one argument.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param arg the argument.
+     */
+    public void warning(String format, Object arg) {
+        LogEvent event = event(LogLevel.WARNING);
+        if(event != null) {
+            KLog.write(event.message(format).arg(arg));
+        }
+    }
+
+    /**
+     * Logs a warning message built from a pattern and two arguments.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param arg1 the first argument.
+     * @param arg2 the second argument.
+     */
+    public void warning(String format, Object arg1, Object arg2) {
+        LogEvent event = event(LogLevel.WARNING);
+        if(event != null) {
+            KLog.write(event.message(format).arg(arg1).arg(arg2));
+        }
+    }
+
+    /**
+     * Logs a warning message built from a pattern and arguments.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param args the arguments.
+     */
+    public void warning(String format, Object... args) {
+        LogEvent event = event(LogLevel.WARNING);
+        if(event != null) {
+            KLog.write(event.message(format).args(args));
+        }
+    }
+
+    /**
+     * Logs a warning message built from a pattern and a long argument, without boxing it.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param arg the argument.
+     */
+    public void warning(String format, long arg) {
+        LogEvent event = event(LogLevel.WARNING);
+        if(event != null) {
+            KLog.write(event.message(format).arg(arg));
+        }
+    }
+
+    /**
+     * Logs a warning message built from a pattern and a double argument, without boxing it.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param arg the argument.
+     */
+    public void warning(String format, double arg) {
+        LogEvent event = event(LogLevel.WARNING);
+        if(event != null) {
+            KLog.write(event.message(format).arg(arg));
+        }
+    }
+
+    /**
+     * Logs a warning message supplied on demand.
+     * The supplier is only called if the entry is written, by the writer thread if every sink is asynchronous.
+     * @param msg the supplier of the message to log.
+     */
+    public void warning(Supplier<String> msg) {
+        LogEvent event = event(LogLevel.WARNING);
+        if(event != null) {
+            KLog.write(event.message(msg));
+        }
+    }
+
+    /**
+     * Logs an error message.
+     * @param msg the message to log.
+     */
+    public void error(String msg) {
+        LogEvent event = event(LogLevel.ERROR);
+        if(event != null) {
+            KLog.write(event.message(msg));
+        }
+    }
+
+    /**
+     * Logs an error message built from a pattern and one argument.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param arg the argument.
+     */
+    public void error(String format, Object arg) {
+        LogEvent event = event(LogLevel.ERROR);
+        if(event != null) {
+            KLog.write(event.message(format).arg(arg));
+        }
+    }
+
+    /**
+     * Logs an error message built from a pattern and two arguments.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param arg1 the first argument.
+     * @param arg2 the second argument.
+     */
+    public void error(String format, Object arg1, Object arg2) {
+        LogEvent event = event(LogLevel.ERROR);
+        if(event != null) {
+            KLog.write(event.message(format).arg(arg1).arg(arg2));
+        }
+    }
+
+    /**
+     * Logs an error message built from a pattern and arguments.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param args the arguments.
+     */
+    public void error(String format, Object... args) {
+        LogEvent event = event(LogLevel.ERROR);
+        if(event != null) {
+            KLog.write(event.message(format).args(args));
+        }
+    }
+
+    /**
+     * Logs an error message built from a pattern and a long argument, without boxing it.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param arg the argument.
+     */
+    public void error(String format, long arg) {
+        LogEvent event = event(LogLevel.ERROR);
+        if(event != null) {
+            KLog.write(event.message(format).arg(arg));
+        }
+    }
+
+    /**
+     * Logs an error message built from a pattern and a double argument, without boxing it.
+     * The message is only rendered when the entry is written, each "{}" being replaced by the next argument.
+     * @param format the message pattern.
+     * @param arg the argument.
+     */
+    public void error(String format, double arg) {
+        LogEvent event = event(LogLevel.ERROR);
+        if(event != null) {
+            KLog.write(event.message(format).arg(arg));
+        }
+    }
+
+    /**
+     * Logs an error message supplied on demand.
+     * The supplier is only called if the entry is written, by the writer thread if every sink is asynchronous.
+     * @param msg the supplier of the message to log.
+     */
+    public void error(Supplier<String> msg) {
+        LogEvent event = event(LogLevel.ERROR);
+        if(event != null) {
+            KLog.write(event.message(msg));
+        }
+    }
+
+    /**
+     * Logs an error message with an exception.
+     * @param msg the message to log.
+     * @param e the exception associated with the error.
+     */
+    public void error(String msg, Exception e) {
+        LogEvent event = event(LogLevel.ERROR);
+        if(event != null) {
+            KLog.write(event.message(msg).thrown(e));
+        }
+    }
+
+    /**
+     * Logs an error message with an exception.
+     * @param e the exception associated with the error.
+     */
+    public void error(Exception e) {
+        LogEvent event = event(LogLevel.ERROR);
+        if(event != null) {
+            KLog.write(event.message("An exception was caught").thrown(e));
+        }
+    }
+
+    /**
+     * Logs a critical error message and terminates the program.
+     * @param msg the message to log.
+     */
+    public void critical(String msg) {
+        critical(msg, 1);
+    }
+
+    /**
+     * Logs a critical error message with an exit code and terminates the program.
+     * @param msg the message to log.
+     * @param code the exit code for the program termination.
+     */
+    public void critical(String msg, int code) {
+        LogEvent event = event(LogLevel.CRITICAL);
+        if(event != null) {
+            KLog.write(event.message(msg + KLog.criticalCode(code)));
+        }
+        KLog.terminate(code);
+    }
+
+    /**
+     * Logs a critical error message with an exception and terminates the program.
+     * @param msg the message to log.
+     * @param e the exception associated with the critical error.
+     */
+    public void critical(String msg, Exception e) {
+        int code = e.hashCode();
+        LogEvent event = event(LogLevel.CRITICAL);
+        if(event != null) {
+            KLog.write(event.message(msg + KLog.criticalCode(code)).thrown(e));
+        }
+        KLog.terminate(code);
+    }
+
+    /**
+     * Logs a critical error message with an exception and terminates the program.
+     * @param e the exception associated with the critical error.
+     */
+    public void critical(Exception e) {
+        critical("An exception was caught", e);
+    }
+
+    @Override
+    public String toString() {
+        return "Logger[" + name + "]";
+    }
+
+    /**
+     * Threshold is the level threshold of a logger, resolved for one level configuration.
+     */
+    private static final class Threshold {
+
+        /** Level settings the threshold was resolved with */
+        final LevelFilter levels;
+
+        /** Least severe level written by the logger */
+        final LogLevel level;
+
+        /**
+         * Creates a resolved threshold.
+         * @param levels the level settings
+         * @param level the least severe level written by the logger
+         */
+        Threshold(LevelFilter levels, LogLevel level) {
+            this.levels = levels;
+            this.level = level;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package kpss.klogger;
+
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+/**
+ * MDC (mapped diagnostic context) holds key-value fields attached to every log entry of a thread,
+ * such as a trace id, a user or a tenant. The fields are written by the {mdc.key} and {mdc}
+ * placeholders of the text formats and in the "mdc" object of the JSON format.
+ * <p>
+ * The context of a thread is an immutable map: log entries and wrapped tasks capture it
+ * by reference, so capturing it is free whatever its size.
+ * The context is not inherited by new threads, since pooled threads would keep the context
+ * of the request that happened to create them: wrap the tasks handed to a thread, an executor
+ * or a virtual thread with {@link #wrap(Runnable)} or {@link #wrap(Callable)} to run them with
+ * the context of the submitting thread.
+ * Use {@link #with(String, String)} to set a field for a block of code only:
+ * <pre>
+ * try(MDC.Scope scope = MDC.with("traceId", id)) {
+ *     KLog.log("Handling request");
+ * }
+ * </pre>
+ *
+ * @author POUSSE Kilian
+ */
+public final class MDC {
+
+    /** Context of each thread */
+    private static final ThreadLocal<ContextMap> CONTEXT = ThreadLocal.withInitial(() -> ContextMap.EMPTY);
+
+    /**
+     * Sets a field of the current thread's context.
+     * @param key the field name
+     * @param value the field value, or null to remove the field
+     */
+    public static void put(String key, String value) {
+        CONTEXT.set(CONTEXT.get().with(key, value));
+    }
+
+    /**
+     * Gets a field of the current thread's context.
+     * @param key the field name
+     * @return the field value, or null if the field is not set
+     */
+    public static String get(String key) {
+        return CONTEXT.get().get(key);
+    }
+
+    /**
+     * Removes a field from the current thread's context.
+     * @param key the field name
+     */
+    public static void remove(String key) {
+        CONTEXT.set(CONTEXT.get().without(key));
+    }
+
+    /**
+     * Removes every field from the current thread's context.
+     */
+    public static void clear() {
+        CONTEXT.set(ContextMap.EMPTY);
+    }
+
+    /**
+     * Sets a field of the current thread's context until the returned scope is closed.
+     * Closing the scope restores the context as it was before this call.
+     * @param key the field name
+     * @param value the field value, or null to remove the field
+     * @return the scope to close
+     */
+    public static Scope with(String key, String value) {
+        ContextMap previous = CONTEXT.get();
+        CONTEXT.set(previous.with(key, value));
+        return new Scope(previous);
+    }
+
+    /**
+     * Wraps a task so that it runs with the current thread's context, on whatever thread runs it.
+     * @param task the task to wrap
+     * @return the wrapped task
+     */
+    public static Runnable wrap(Runnable task) {
+        ContextMap captured = CONTEXT.get();
+        return () -> {
+            ContextMap previous = CONTEXT.get();
+            CONTEXT.set(captured);
+            try {
+                task.run();
+            }
+            finally {
+                CONTEXT.set(previous);
+            }
+        };
+    }
+
+    /**
+     * Wraps a task so that it runs with the current thread's context, on whatever thread runs it.
+     * @param <T> the result type of the task
+     * @param task the task to wrap
+     * @return the wrapped task
+     */
+    public static <T> Callable<T> wrap(Callable<T> task) {
+        ContextMap captured = CONTEXT.get();
+        return () -> {
+            ContextMap previous = CONTEXT.get();
+            CONTEXT.set(captured);
+            try {
+                return task.call();
+            }
+            finally {
+                CONTEXT.set(previous);
+            }
+        };
+    }
+
+    /**
+     * Wraps a supplier so that it runs with the current thread's context, on whatever thread runs it
+     * (e.g. a {@code CompletableFuture.supplyAsync} task).
+     * @param <T> the result type of the supplier
+     * @param task the supplier to wrap
+     * @return the wrapped supplier
+     */
+    public static <T> Supplier<T> wrapSupplier(Supplier<T> task) {
+        ContextMap captured = CONTEXT.get();
+        return () -> {
+            ContextMap previous = CONTEXT.get();
+            CONTEXT.set(captured);
+            try {
+                return task.get();
+            }
+            finally {
+                CONTEXT.set(previous);
+            }
+        };
+    }
+
+    /**
+     * Gets the context of the current thread.
+     * @return the immutable context map
+     */
+    static ContextMap current() {
+        return CONTEXT.get();
+    }
+
+    /**
+     * Scope restores the context of a thread when it is closed.
+     */
+    public static final class Scope implements AutoCloseable {
+
+        /** Context restored on close */
+        private final ContextMap previous;
+
+        /**
+         * Creates a scope.
+         * @param previous the context restored on close
+         */
+        private Scope(ContextMap previous) {
+            this.previous = previous;
+        }
+
+        /**
+         * Restores the context as it was when the scope was opened.
+         */
+        @Override
+        public void close() {
+            CONTEXT.set(previous);
+        }
+    }
+
+    /**
+     * Private constructor to prevent instantiation of the MDC class.
+     */
+    private MDC() { /* ... */ }
+}
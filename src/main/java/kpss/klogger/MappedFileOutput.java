@@ -0,0 +1,197 @@
+package kpss.klogger;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * MappedFileOutput writes log lines into a memory-mapped region of the log file.
+ * The file is mapped in chunks: a write is a plain memory copy, and the next chunk is
+ * mapped when the current one is full. The operating system writes the pages back to
+ * the file, so the lines survive a crash of the program.
+ * Since a mapped chunk extends the file with zeros, the file is truncated to the written
+ * length when it is closed; after a crash, the trailing zeros are detected and overwritten
+ * when the file is opened again in append mode.
+ * <p>
+ * A chunk is unmapped as soon as the next one is mapped, and the last one before the file
+ * is truncated: Windows refuses to truncate a file with a mapped region. Unmapping relies on
+ * {@code sun.misc.Unsafe.invokeCleaner}; on a JDK without it, the chunks are unmapped by the
+ * garbage collector, and on Windows the file may keep its trailing zeros once closed.
+ *
+ * @author POUSSE Kilian
+ */
+class MappedFileOutput extends BufferedFileOutput {
+
+    /** Block size used to look for the end of the written data */
+    private static final int SCAN_BLOCK = 64 * 1024;
+
+    /** Unmapper of the chunks, null if the JDK does not provide one */
+    private static final MethodHandle UNMAPPER = unmapper();
+
+    /** File channel of the log file */
+    private final FileChannel channel;
+
+    /** Size of a mapped chunk in bytes */
+    private final int chunkSize;
+
+    /** File position of the current chunk */
+    private long chunkStart;
+
+    /** Current mapped chunk, null once closed */
+    private MappedByteBuffer mapped;
+
+    /**
+     * Opens a memory-mapped log file.
+     * @param path the path to the log file
+     * @param append true to append to the file, false to overwrite it
+     * @param chunkSize the size of a mapped chunk in bytes
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    MappedFileOutput(String path, boolean append, int chunkSize) throws IOException {
+        this.channel = FileChannel.open(Path.of(path), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.chunkSize = Math.max(4096, chunkSize);
+        if(append) {
+            chunkStart = writtenLength();
+        }
+        else {
+            channel.truncate(0);
+            chunkStart = 0;
+        }
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE, chunkStart, this.chunkSize);
+    }
+
+    /**
+     * Looks up Unsafe.invokeCleaner, which unmaps a mapped buffer at once.
+     * @return the unmapper, taking the buffer, or null if it is not available
+     */
+    private static MethodHandle unmapper() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup().findVirtual(unsafeClass, "invokeCleaner",
+                    MethodType.methodType(void.class, ByteBuffer.class)).bindTo(field.get(null));
+        }
+        catch(ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Unmaps a chunk at once, or leaves it to the garbage collector if there is no unmapper.
+     * The chunk must not be used afterwards. Called with the lock held.
+     * @param chunk the chunk
+     */
+    private static void unmap(MappedByteBuffer chunk) {
+        if(UNMAPPER == null) {
+            return;
+        }
+        try {
+            UNMAPPER.invokeExact((ByteBuffer) chunk);
+        }
+        catch(Throwable e) {
+            // Left to the garbage collector
+        }
+    }
+
+    /**
+     * Finds the length of the data written in the file, ignoring the zeros
+     * left at the end of the last chunk if the program did not close the file.
+     * @return the written length in bytes
+     * @throws IOException if an I/O error occurs
+     */
+    private long writtenLength() throws IOException {
+        long end = channel.size();
+        ByteBuffer block = ByteBuffer.allocate(SCAN_BLOCK);
+        while(end > 0) {
+            long start = Math.max(0, end - SCAN_BLOCK);
+            block.clear().limit((int) (end - start));
+            while(block.hasRemaining() && channel.read(block, start + block.position()) >= 0) {
+                // Read the whole block
+            }
+            for(int i = block.position() - 1; i >= 0; i--) {
+                if(block.get(i) != 0) {
+                    return start + i + 1;
+                }
+            }
+            end = start;
+        }
+        return 0;
+    }
+
+    @Override
+    protected ByteBuffer buffer() {
+        return mapped;
+    }
+
+    @Override
+    protected ByteBuffer overflow() throws IOException {
+        MappedByteBuffer full = mapped;
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE, chunkStart + full.position(), chunkSize);
+        chunkStart += full.position();
+        // The written pages stay in the page cache of the file
+        unmap(full);
+        return mapped;
+    }
+
+    @Override
+    protected void written(boolean urgent) {
+        // The mapped pages are already shared with the operating system
+    }
+
+    @Override
+    long length() {
+        lock.lock();
+        try {
+            return mapped == null ? chunkStart : chunkStart + mapped.position();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    void flush(boolean force) {
+        lock.lock();
+        try {
+            if(force && mapped != null) {
+                mapped.force();
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    void close() throws IOException {
+        lock.lock();
+        try {
+            if(mapped == null) {
+                return;
+            }
+            long length = chunkStart + mapped.position();
+            MappedByteBuffer last = mapped;
+            last.force();
+            mapped = null;
+            closed = true;
+            unmap(last);
+            try {
+                channel.truncate(length);
+            }
+            finally {
+                channel.close();
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package kpss.klogger;
+
+import java.util.Locale;
+
+/**
+ * OverflowPolicy defines what a caller does when the asynchronous ring buffer is full.
+ *
+ * @author POUSSE Kilian
+ */
+enum OverflowPolicy {
+
+    /** Waits until the writer thread frees a slot: no log entry is lost */
+    BLOCK,
+
+    /** Drops DEBUG entries once the buffer is three quarters full, blocks for other types */
+    DROP_DEBUG,
+
+    /** Drops the entry being logged when the buffer is full */
+    DROP_NEWEST;
+
+    /**
+     * Parses an overflow policy from its configuration name (e.g. "block", "drop-debug", "drop-newest").
+     * @param name the configuration name
+     * @return the overflow policy
+     * @throws IllegalArgumentException if the name is unknown
+     */
+    static OverflowPolicy of(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+}
@@ -0,0 +1,164 @@
+package kpss.klogger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * RateLimiter throttles log entries per call site: only the first entries of each
+ * interval are written, the next ones are dropped until the interval ends.
+ * The call site is the context of the entry: the caller class and method when it is captured,
+ * the class or logger name it was logged with. The caller is not captured for the rate limit:
+ * an entry without context is counted by its message pattern instead.
+ * The first entry of a new interval reports how many entries were dropped in the
+ * previous one, so that a summary line can be written; the entries dropped by a site that
+ * stopped logging are reported by {@link #summarize}, called periodically and on flush.
+ * The bookkeeping is lock-free: a site is a few atomic counters, and an entry over the limit
+ * only reads the written counter and counts itself in a LongAdder, so that a flooding call
+ * site does not become a contention point itself.
+ *
+ * @author POUSSE Kilian
+ */
+final class RateLimiter {
+
+    /** Maximum number of call sites tracked before the table is reset */
+    private static final int MAX_SITES = 10_000;
+
+    /** Number of entries written per call site and interval */
+    private final long limit;
+
+    /** Interval length in milliseconds */
+    private final long interval;
+
+    /** State of each call site identified by a context */
+    private final Map<String, Site> contexts = new ConcurrentHashMap<>();
+
+    /** State of each call site identified by a message pattern */
+    private final Map<String, Site> patterns = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a rate limiter.
+     * @param limit the number of entries written per call site and interval
+     * @param interval the interval length in milliseconds
+     */
+    RateLimiter(long limit, long interval) {
+        this.limit = limit;
+        this.interval = interval;
+    }
+
+    /**
+     * Counts a log entry of a call site.
+     * @param context the context of the entry, empty if it has none
+     * @param pattern the message pattern of the entry, null to identify the call site by its context
+     * @param now the current time in milliseconds since the epoch
+     * @return -1 if the entry must be dropped, otherwise the number of entries dropped
+     *         in the previous interval of the site (0 if no summary is needed)
+     */
+    long acquire(String context, String pattern, long now) {
+        Map<String, Site> sites = pattern != null ? patterns : contexts;
+        String site = pattern != null ? pattern : context;
+        Site state = sites.get(site);
+        if(state == null) {
+            if(sites.size() >= MAX_SITES) {
+                sites.clear();
+            }
+            state = sites.computeIfAbsent(site, key -> new Site());
+        }
+
+        long dropped = state.roll(now, interval);
+        if(state.written.get() >= limit || state.written.incrementAndGet() > limit) {
+            // The summary of the previous interval goes with the next summary
+            state.dropped.add(dropped + 1);
+            return -1;
+        }
+        return dropped;
+    }
+
+    /**
+     * Reports the entries dropped by the call sites and not reported yet.
+     * @param now the current time in milliseconds since the epoch
+     * @param all true to report every site, false to report only the sites whose interval ended,
+     *            starting their next interval
+     * @param summary the consumer of the call sites and their number of dropped entries
+     */
+    void summarize(long now, boolean all, Summary summary) {
+        for(Map.Entry<String, Site> entry: contexts.entrySet()) {
+            long dropped = entry.getValue().summarize(now, interval, all);
+            if(dropped > 0) {
+                summary.report(entry.getKey(), null, dropped);
+            }
+        }
+        for(Map.Entry<String, Site> entry: patterns.entrySet()) {
+            long dropped = entry.getValue().summarize(now, interval, all);
+            if(dropped > 0) {
+                summary.report("", entry.getKey(), dropped);
+            }
+        }
+    }
+
+    /**
+     * Gets the interval length.
+     * @return the interval length in milliseconds
+     */
+    long getInterval() {
+        return interval;
+    }
+
+    /**
+     * Summary is the consumer of the entries dropped by a call site.
+     */
+    @FunctionalInterface
+    interface Summary {
+
+        /**
+         * Reports the entries dropped by a call site.
+         * @param context the context of the call site, empty if it is identified by its message pattern
+         * @param pattern the message pattern of the call site, null if it is identified by its context
+         * @param dropped the number of dropped entries
+         */
+        void report(String context, String pattern, long dropped);
+    }
+
+    /**
+     * Site is the state of one call site in the current interval.
+     */
+    private static final class Site {
+
+        /** Start of the current interval in milliseconds since the epoch */
+        final AtomicLong start = new AtomicLong();
+
+        /** Entries written in the current interval */
+        final AtomicLong written = new AtomicLong();
+
+        /** Entries dropped since the last summary */
+        final LongAdder dropped = new LongAdder();
+
+        /**
+         * Starts the next interval if the current one ended.
+         * @param now the current time in milliseconds since the epoch
+         * @param interval the interval length in milliseconds
+         * @return the number of entries dropped since the last summary if the next interval
+         *         was started by this call, 0 otherwise
+         */
+        long roll(long now, long interval) {
+            long begin = start.get();
+            if(now - begin < interval || !start.compareAndSet(begin, now)) {
+                return 0;
+            }
+            written.set(0);
+            return dropped.sumThenReset();
+        }
+
+        /**
+         * Takes the entries dropped since the last summary.
+         * @param now the current time in milliseconds since the epoch
+         * @param interval the interval length in milliseconds
+         * @param all true to take them now, false to take them only if the interval ended, starting the next one
+         * @return the number of entries dropped since the last summary, 0 if there are none to report
+         */
+        long summarize(long now, long interval, boolean all) {
+            return all ? dropped.sumThenReset() : roll(now, interval);
+        }
+    }
+}
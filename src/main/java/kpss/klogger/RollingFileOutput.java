@@ -0,0 +1,387 @@
+package kpss.klogger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * RollingFileOutput writes log lines to a file that is rolled over when it reaches a maximum
+ * size or at the start of each day or hour. The full file is renamed with the start of the
+ * period it covers as suffix (e.g. "app.log.2024-05-01-000000" for a daily file, or the time
+ * it was opened without schedule) and a new file is opened in its place.
+ * The logging thread only renames the file and swaps the output: closing the old output,
+ * compressing the rolled file and deleting the expired ones run on a background thread.
+ * A roll is all or nothing: if the new file cannot be opened, the active file keeps its name
+ * and its output, and the roll is tried again later.
+ *
+ * @author POUSSE Kilian
+ */
+class RollingFileOutput extends FileOutput {
+
+    /** Suffix format of the rolled files */
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyy-MM-dd-HHmmss");
+
+    /** Shared background thread closing, compressing and deleting the rolled files */
+    private static ExecutorService roller = null;
+
+    /** Lock guarding the creation of the background thread */
+    private static final ReentrantLock ROLLER_LOCK = new ReentrantLock();
+
+    /** Delay before a failed roll is tried again, in milliseconds */
+    private static final long RETRY_DELAY = 1000;
+
+    /**
+     * Opener creates the output of one log file.
+     */
+    interface Opener {
+
+        /**
+         * Opens the output of a log file.
+         * @param path the path to the log file
+         * @param append true to append to the file, false to overwrite it
+         * @return the output
+         * @throws IOException if the file cannot be opened
+         */
+        FileOutput open(String path, boolean append) throws IOException;
+    }
+
+    /** Path to the active log file */
+    private final Path path;
+
+    /** Opener of the active log file */
+    private final Opener opener;
+
+    /** Maximum size of the active file in bytes, 0 for no limit */
+    private final long maxSize;
+
+    /** Schedule unit ("daily" = DAYS, "hourly" = HOURS), null for no schedule */
+    private final ChronoUnit schedule;
+
+    /** Maximum number of rolled files kept, 0 for no limit */
+    private final int maxFiles;
+
+    /** Maximum total size of the rolled files in bytes, 0 for no limit */
+    private final long maxTotalSize;
+
+    /** Compression flag: true to gzip the rolled files */
+    private final boolean compress;
+
+    /** Name of the rolled files: the active file name, the suffix, a counter, and ".gz" once compressed */
+    private final Pattern rolledName;
+
+    /** Output of the active log file */
+    private FileOutput current;
+
+    /** Bytes written to the active log file */
+    private long size;
+
+    /** Start of the period covered by the active log file: the scheduled period, or the time it was opened */
+    private LocalDateTime start;
+
+    /** Time of the next scheduled roll in milliseconds since the epoch */
+    private long nextRoll;
+
+    /** Time before which a failed roll is not tried again, in milliseconds since the epoch */
+    private long retry = 0;
+
+    /**
+     * Opens a rolling log file.
+     * @param path the path to the active log file
+     * @param append true to append to the file, false to overwrite it
+     * @param opener the opener of the active log file
+     * @param maxSize the maximum size of the active file in bytes, 0 for no limit
+     * @param schedule "daily", "hourly", or null for no schedule
+     * @param maxFiles the maximum number of rolled files kept, 0 for no limit
+     * @param maxTotalSize the maximum total size of the rolled files in bytes, 0 for no limit
+     * @param compress true to gzip the rolled files
+     * @throws IOException if the file cannot be opened
+     * @throws IllegalArgumentException if the schedule is unknown
+     */
+    RollingFileOutput(String path, boolean append, Opener opener, long maxSize, String schedule,
+            int maxFiles, long maxTotalSize, boolean compress) throws IOException {
+        this.path = Path.of(path).toAbsolutePath();
+        this.opener = opener;
+        this.maxSize = maxSize;
+        this.schedule = parseSchedule(schedule);
+        this.maxFiles = maxFiles;
+        this.maxTotalSize = maxTotalSize;
+        this.compress = compress;
+        this.rolledName = Pattern.compile(Pattern.quote(this.path.getFileName() + ".")
+                + "(\\d{4}-\\d{2}-\\d{2}-\\d{6})(?:\\.(\\d+))?(?:\\.gz)?");
+        this.current = opener.open(path, append);
+        this.size = current.length();
+        long now = System.currentTimeMillis();
+        this.start = periodStart(now);
+        this.nextRoll = nextRoll(now);
+    }
+
+    /**
+     * Parses a roll schedule.
+     * @param schedule "daily", "hourly", or null for no schedule
+     * @return the schedule unit, or null for no schedule
+     */
+    private static ChronoUnit parseSchedule(String schedule) {
+        if(schedule == null || schedule.isEmpty()) {
+            return null;
+        }
+        switch(schedule.toLowerCase(Locale.ROOT)) {
+            case "daily":
+                return ChronoUnit.DAYS;
+            case "hourly":
+                return ChronoUnit.HOURS;
+            default:
+                throw new IllegalArgumentException("Invalid rolling schedule. Expected \"daily\" or \"hourly\".");
+        }
+    }
+
+    /**
+     * Gets the shared background thread, starting it on first use.
+     * @return the background executor
+     */
+    private static ExecutorService roller() {
+        ROLLER_LOCK.lock();
+        try {
+            if(roller == null) {
+                roller = Executors.newSingleThreadExecutor(task -> {
+                    Thread thread = new Thread(task, "KLogger-roller");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            return roller;
+        }
+        finally {
+            ROLLER_LOCK.unlock();
+        }
+    }
+
+    /**
+     * Computes the start of the period of a new active file.
+     * @param now the current time in milliseconds since the epoch
+     * @return the start of the scheduled period, or the current time if there is no schedule
+     */
+    private LocalDateTime periodStart(long now) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(now), ZoneId.systemDefault());
+        return schedule != null ? time.truncatedTo(schedule) : time.truncatedTo(ChronoUnit.SECONDS);
+    }
+
+    /**
+     * Computes the time of the next scheduled roll.
+     * @param now the current time in milliseconds since the epoch
+     * @return the time of the next roll, or Long.MAX_VALUE if there is no schedule
+     */
+    private long nextRoll(long now) {
+        if(schedule == null) {
+            return Long.MAX_VALUE;
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDateTime next = LocalDateTime.ofInstant(Instant.ofEpochMilli(now), zone)
+                .truncatedTo(schedule).plus(1, schedule);
+        return next.atZone(zone).toInstant().toEpochMilli();
+    }
+
+    @Override
+    int write(CharSequence line, boolean urgent) throws IOException {
+        lock.lock();
+        try {
+            if(closed) {
+                throw new ClosedChannelException();
+            }
+            if((maxSize > 0 && size >= maxSize) || System.currentTimeMillis() >= nextRoll) {
+                roll();
+            }
+            int bytes = current.write(line, urgent);
+            size += bytes;
+            return bytes;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Renames the active file, opens a new one and hands the old output to the background thread.
+     * The state changes only once both succeed: if the file cannot be renamed or the new one
+     * cannot be opened, the error is reported, the entries keep going to the active file
+     * and the roll is tried again after a delay. Called with the lock held.
+     */
+    private void roll() {
+        long now = System.currentTimeMillis();
+        if(size == 0) {
+            start = periodStart(now);
+            nextRoll = nextRoll(now);
+            return;
+        }
+        if(now < retry) {
+            return;
+        }
+
+        String base = path.getFileName() + "." + SUFFIX.format(start);
+        Path rolled = path.resolveSibling(base);
+        for(int i = 1; Files.exists(rolled) || Files.exists(rolled.resolveSibling(rolled.getFileName() + ".gz")); i++) {
+            rolled = path.resolveSibling(base + "." + i);
+        }
+        try {
+            Files.move(path, rolled);
+        }
+        catch(IOException e) {
+            retry = now + RETRY_DELAY;
+            e.printStackTrace();
+            return;
+        }
+        FileOutput next;
+        try {
+            next = opener.open(path.toString(), true);
+        }
+        catch(IOException | RuntimeException e) {
+            // Give the active file its name back, over a new file left empty by the failed open;
+            // its output writes to it under either name
+            try {
+                Files.move(rolled, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch(IOException restore) {
+                e.addSuppressed(restore);
+            }
+            retry = now + RETRY_DELAY;
+            e.printStackTrace();
+            return;
+        }
+
+        FileOutput old = current;
+        current = next;
+        size = 0;
+        start = periodStart(now);
+        nextRoll = nextRoll(now);
+        retry = 0;
+
+        Path target = rolled;
+        roller().execute(() -> archive(old, target));
+    }
+
+    /**
+     * Background task: closes the old output, compresses the rolled file and deletes the expired ones.
+     * @param old the output of the rolled file
+     * @param rolled the rolled file
+     */
+    private void archive(FileOutput old, Path rolled) {
+        try {
+            old.close();
+            if(compress) {
+                Path gzip = rolled.resolveSibling(rolled.getFileName() + ".gz");
+                try(InputStream in = Files.newInputStream(rolled);
+                    OutputStream out = new GZIPOutputStream(Files.newOutputStream(gzip))) {
+                    in.transferTo(out);
+                }
+                Files.delete(rolled);
+            }
+            deleteExpired();
+        }
+        catch(IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Deletes the oldest rolled files beyond the maximum count or total size.
+     * Only the files named by this roller are considered: the active file name followed by
+     * a suffix, an optional counter and an optional ".gz", not any file sharing its prefix.
+     * @throws IOException if the directory cannot be listed
+     */
+    private void deleteExpired() throws IOException {
+        if(maxFiles <= 0 && maxTotalSize <= 0) {
+            return;
+        }
+        List<Path> files = new ArrayList<>();
+        try(DirectoryStream<Path> dir = Files.newDirectoryStream(path.getParent(), path.getFileName() + ".*")) {
+            for(Path file: dir) {
+                if(rolledName.matcher(file.getFileName().toString()).matches()) {
+                    files.add(file);
+                }
+            }
+        }
+        // Newest first: by suffix, then by counter
+        files.sort(Comparator.comparing(this::rolledSuffix).thenComparingLong(this::rolledCounter).reversed());
+
+        long total = 0;
+        for(int i = 0; i < files.size(); i++) {
+            total += Files.size(files.get(i));
+            if((maxFiles > 0 && i >= maxFiles) || (maxTotalSize > 0 && total > maxTotalSize)) {
+                Files.deleteIfExists(files.get(i));
+            }
+        }
+    }
+
+    /**
+     * Gets the suffix of a rolled file.
+     * @param file the rolled file
+     * @return the start of the period it covers, as formatted in its name
+     */
+    private String rolledSuffix(Path file) {
+        Matcher matcher = rolledName.matcher(file.getFileName().toString());
+        return matcher.matches() ? matcher.group(1) : "";
+    }
+
+    /**
+     * Gets the counter of a rolled file, told apart from the files of the same period.
+     * @param file the rolled file
+     * @return the counter, 0 for the first file of its period
+     */
+    private long rolledCounter(Path file) {
+        Matcher matcher = rolledName.matcher(file.getFileName().toString());
+        return matcher.matches() && matcher.group(2) != null ? Long.parseLong(matcher.group(2)) : 0;
+    }
+
+    @Override
+    long length() throws IOException {
+        lock.lock();
+        try {
+            return current.length();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    void flush(boolean force) throws IOException {
+        lock.lock();
+        try {
+            current.flush(force);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            current.close();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package kpss.klogger;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * RoutingAppender writes each log entry to a log file chosen by a diagnostic context field,
+ * such as "logs/{mdc.tenant}.log" for one log file per tenant. Entries without the field
+ * go to the fallback route.
+ * <p>
+ * The log files are opened on first use and kept open in a bounded cache: once the maximum
+ * number of open files is reached, the least recently used one is flushed and closed, and it is
+ * opened again in append mode by its next entry. Without the append mode, a log file is only truncated
+ * when it is first opened: a file modified since the appender was created is opened in append mode,
+ * so that no route needs to be remembered once its file is closed. ERROR and CRITICAL entries are handed to the
+ * operating system immediately. An appender can share the open files of another one, so that
+ * a configuration reload keeps them open while changing the layout or level.
+ *
+ * @author POUSSE Kilian
+ */
+class RoutingAppender extends LogAppender {
+
+    /** Default maximum number of open log files */
+    static final int DEFAULT_MAX_OPEN = 128;
+
+    /** Prefix of the routing placeholder in the path */
+    private static final String PLACEHOLDER = "{mdc.";
+
+    /** Path to the log files, with the routing placeholder */
+    private final String path;
+
+    /** Diagnostic context key of the route */
+    private final String key;
+
+    /** Route of the entries without the routing key */
+    private final String fallback;
+
+    /** Open log files */
+    private final Routes routes;
+
+    /**
+     * Creates a routing appender. The log files are opened on first use.
+     * @param name the name of the appender
+     * @param layout the layout of the log entries
+     * @param threshold the least severe level written, null to write every entry
+     * @param async true to be written by the writer thread, false to be written by the caller
+     * @param path the path to the log files, with one {mdc.key} placeholder
+     * @param fallback the route of the entries without the routing key
+     * @param maxOpen the maximum number of open log files
+     * @param settings the settings to open the log files with
+     * @throws IllegalArgumentException if the path has no routing placeholder
+     */
+    RoutingAppender(String name, LogLayout layout, LogLevel threshold, boolean async, String path, String fallback,
+            int maxOpen, FileSettings settings) {
+        super(name, layout, threshold, async);
+        this.path = path;
+        this.key = routingKey(path);
+        this.fallback = sanitize(fallback);
+        int start = path.indexOf(PLACEHOLDER);
+        this.routes = new Routes(path.substring(0, start), path.substring(path.indexOf('}', start) + 1), settings, maxOpen);
+    }
+
+    /**
+     * Creates a routing appender sharing the log files of another one.
+     * @param name the name of the appender
+     * @param layout the layout of the log entries
+     * @param threshold the least severe level written, null to write every entry
+     * @param async true to be written by the writer thread, false to be written by the caller
+     * @param source the appender whose log files are shared
+     */
+    RoutingAppender(String name, LogLayout layout, LogLevel threshold, boolean async, RoutingAppender source) {
+        super(name, layout, threshold, async);
+        this.path = source.path;
+        this.key = source.key;
+        this.fallback = source.fallback;
+        this.routes = source.routes;
+    }
+
+    /**
+     * Gets the diagnostic context key of a routing path.
+     * @param path the path to the log files, with one {mdc.key} placeholder
+     * @return the key
+     * @throws IllegalArgumentException if the path has no routing placeholder
+     */
+    static String routingKey(String path) {
+        int start = path.indexOf(PLACEHOLDER);
+        int end = start < 0 ? -1 : path.indexOf('}', start);
+        if(end <= start + PLACEHOLDER.length()) {
+            throw new IllegalArgumentException("Routing sink without {mdc.key} in its file: " + path);
+        }
+        return path.substring(start + PLACEHOLDER.length(), end);
+    }
+
+    /**
+     * Checks if the appender writes to log files opened with given settings.
+     * The append mode is not compared: it only matters when the files are opened.
+     * @param path the path to the log files
+     * @param fallback the route of the entries without the routing key
+     * @param maxOpen the maximum number of open log files
+     * @param settings the settings
+     * @return true if the paths denote the same files and the other settings are equal, false otherwise
+     */
+    boolean opens(String path, String fallback, int maxOpen, FileSettings settings) {
+        return this.fallback.equals(sanitize(fallback)) && routes.maxOpen == maxOpen
+                && routes.settings.withAppend(true).equals(settings.withAppend(true)) && samePath(path);
+    }
+
+    /**
+     * Checks if a routing path denotes the same log files as this appender.
+     * @param path the path to the log files
+     * @return true if both paths are equal once made absolute and normalized, false otherwise
+     */
+    boolean samePath(String path) {
+        return FileAppender.sameFile(this.path, path);
+    }
+
+    /**
+     * Gets the open log files, shared by the appenders created from this one.
+     * @return the open log files
+     */
+    Object getRoutes() {
+        return routes;
+    }
+
+    /**
+     * Creates an appender with the same settings as this closed one, opening its log files again
+     * in append mode or sharing the log files of another appender opened again.
+     * @param reopened an appender opened again on the same log files, null to open them
+     * @return the new appender
+     */
+    @Override
+    LogAppender reopen(LogAppender reopened) {
+        if(reopened instanceof RoutingAppender) {
+            return new RoutingAppender(getName(), getLayout(), getThreshold(), isAsync(), (RoutingAppender) reopened);
+        }
+        return new RoutingAppender(getName(), getLayout(), getThreshold(), isAsync(), path, fallback, routes.maxOpen,
+                routes.settings.withAppend(true));
+    }
+
+    /**
+     * Gets the route of a log entry.
+     * @param event the log entry
+     * @return the value of the routing key, made safe for a file name, or the fallback route
+     */
+    String route(LogEvent event) {
+        String value = event.getMdc().get(key);
+        return value == null || value.isEmpty() ? fallback : sanitize(value);
+    }
+
+    /**
+     * Makes a route safe for a file name: every character other than a letter, a digit,
+     * '-', '_' and a '.' that is not the first character is replaced by '_'.
+     * @param route the route
+     * @return the safe route
+     */
+    static String sanitize(String route) {
+        StringBuilder safe = null;
+        for(int i = 0; i < route.length(); i++) {
+            char c = route.charAt(i);
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || (c == '.' && i > 0);
+            if(!valid && safe == null) {
+                safe = new StringBuilder(route.length()).append(route, 0, i);
+            }
+            if(safe != null) {
+                safe.append(valid ? c : '_');
+            }
+        }
+        return safe != null ? safe.toString() : route.isEmpty() ? "_" : route;
+    }
+
+    /**
+     * Writes a rendered log entry to the log file of its route,
+     * opening it again if it was closed meanwhile.
+     * @param line the rendered entry, without line separator
+     * @param event the log entry
+     * @return the number of bytes written
+     * @throws ClosedChannelException if the appender is closed
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    int append(CharSequence line, LogEvent event) throws IOException {
+        String route = route(event);
+        boolean urgent = event.getLevel().isAtLeast(LogLevel.ERROR);
+        while(true) {
+            FileOutput output = routes.get(route);
+            try {
+                return output.write(line, urgent);
+            }
+            catch(ClosedChannelException e) {
+                // Evicted by another thread: open it again, unless the appender is closed
+                if(routes.closed) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the buffered entries to the open log files.
+     * @param force true to also force them to the storage device
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    void flush(boolean force) throws IOException {
+        routes.flush(force);
+    }
+
+    /**
+     * Closes the open log files.
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    void close() throws IOException {
+        routes.close();
+    }
+
+    /**
+     * Routes is the bounded cache of the open log files of a routing path,
+     * in least recently used order.
+     */
+    private static final class Routes {
+
+        /** Path to the log files before the route */
+        private final String prefix;
+
+        /** Path to the log files after the route */
+        private final String suffix;
+
+        /** Settings the log files are opened with */
+        private final FileSettings settings;
+
+        /** Maximum number of open log files */
+        private final int maxOpen;
+
+        /** Lock guarding the cache */
+        private final ReentrantLock lock = new ReentrantLock();
+
+        /** Open log files by route, least recently used first */
+        private final LinkedHashMap<String, FileOutput> open = new LinkedHashMap<>(16, 0.75f, true);
+
+        /** Creation time of the cache in milliseconds since the epoch, truncated to the second for coarse file times */
+        private final long created = System.currentTimeMillis() / 1000 * 1000;
+
+        /** Closed flag */
+        private volatile boolean closed = false;
+
+        /**
+         * Creates an empty cache.
+         * @param prefix the path to the log files before the route
+         * @param suffix the path to the log files after the route
+         * @param settings the settings to open the log files with
+         * @param maxOpen the maximum number of open log files
+         */
+        Routes(String prefix, String suffix, FileSettings settings, int maxOpen) {
+            this.prefix = prefix;
+            this.suffix = suffix;
+            this.settings = settings;
+            this.maxOpen = maxOpen;
+        }
+
+        /**
+         * Gets the log file of a route, opening it if needed
+         * and closing the least recently used one if too many are open.
+         * @param route the route
+         * @return the log file output
+         * @throws ClosedChannelException if the cache is closed
+         * @throws IOException if the file cannot be opened
+         */
+        FileOutput get(String route) throws IOException {
+            lock.lock();
+            try {
+                if(closed) {
+                    throw new ClosedChannelException();
+                }
+                FileOutput output = open.get(route);
+                if(output == null) {
+                    if(open.size() >= maxOpen) {
+                        Iterator<FileOutput> eldest = open.values().iterator();
+                        FileOutput evicted = eldest.next();
+                        eldest.remove();
+                        try {
+                            evicted.close();
+                        }
+                        catch(IOException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                    String file = prefix + route + suffix;
+                    Path parent = Path.of(file).toAbsolutePath().getParent();
+                    if(parent != null) {
+                        Files.createDirectories(parent);
+                    }
+                    // Only the first opening of a route may truncate its file
+                    boolean append = settings.isAppend() || modified(Path.of(file));
+                    output = settings.withAppend(append).open(file);
+                    open.put(route, output);
+                }
+                return output;
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Checks if a log file was modified since the cache was created, and so was opened already.
+         * @param file the log file
+         * @return true if the file was modified since, or its modification time cannot be read, false if it does not exist
+         *         or was last modified before
+         */
+        private boolean modified(Path file) {
+            try {
+                return Files.getLastModifiedTime(file).toMillis() >= created;
+            }
+            catch(NoSuchFileException e) {
+                return false;
+            }
+            catch(IOException e) {
+                // Appending never loses entries
+                return true;
+            }
+        }
+
+        /**
+         * Writes the buffered entries to the open log files.
+         * @param force true to also force them to the storage device
+         * @throws IOException if an I/O error occurs
+         */
+        void flush(boolean force) throws IOException {
+            lock.lock();
+            try {
+                for(FileOutput output: open.values()) {
+                    output.flush(force);
+                }
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Closes the open log files. A log file that cannot be closed does not keep the others open.
+         * @throws IOException if a log file cannot be closed
+         */
+        void close() throws IOException {
+            lock.lock();
+            try {
+                closed = true;
+                IOException error = null;
+                for(FileOutput output: open.values()) {
+                    try {
+                        output.close();
+                    }
+                    catch(IOException e) {
+                        error = e;
+                    }
+                }
+                open.clear();
+                if(error != null) {
+                    throw error;
+                }
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+    }
+}
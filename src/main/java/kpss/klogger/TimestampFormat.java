@@ -0,0 +1,206 @@
+package kpss.klogger;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * TimestampFormat renders log timestamps with a compiled date pattern.
+ * The text of the current second is cached and shared by all entries logged within it:
+ * if the pattern has a fraction-of-second field ("SSS"), only its digits are written
+ * for each entry. Patterns the cache cannot split are cached per millisecond instead.
+ * The special patterns {@value #EPOCH_MILLIS} and {@value #EPOCH_NANOS} write the raw
+ * time since the epoch for machine-readable output.
+ *
+ * @author POUSSE Kilian
+ */
+class TimestampFormat {
+
+    /** Pattern writing the milliseconds since the epoch */
+    static final String EPOCH_MILLIS = "epoch-millis";
+
+    /** Pattern writing the nanoseconds since the epoch */
+    static final String EPOCH_NANOS = "epoch-nanos";
+
+    /** The source pattern */
+    private final String pattern;
+
+    /** Time zone of the rendered dates */
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    /** Formatter of the whole pattern, null for the epoch patterns */
+    private final DateTimeFormatter formatter;
+
+    /** Formatter of the part before the fraction digits, null if the cache is per millisecond */
+    private DateTimeFormatter prefixFormatter = null;
+
+    /** Formatter of the part after the fraction digits, null if there is none */
+    private DateTimeFormatter suffixFormatter = null;
+
+    /** Number of fraction-of-second digits */
+    private int fractionDigits = 0;
+
+    /** Sub-millisecond flag: true if the pattern has a nano-of-second or nano-of-day field */
+    private boolean subMillis = false;
+
+    /** Last rendered second (or millisecond) */
+    private volatile Cached cached = new Cached(Long.MIN_VALUE, "", "");
+
+    /**
+     * Compiles a date pattern.
+     * @param pattern a DateTimeFormatter pattern, or one of the epoch patterns
+     * @throws IllegalArgumentException if the pattern is invalid
+     */
+    TimestampFormat(String pattern) {
+        this.pattern = pattern;
+        if(isEpoch()) {
+            formatter = null;
+            return;
+        }
+        formatter = DateTimeFormatter.ofPattern(pattern);
+
+        int start = -1;
+        int end = -1;
+        boolean splittable = true;
+        boolean quoted = false;
+        for(int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if(c == '\'') {
+                quoted = !quoted;
+            }
+            else if(!quoted && c == 'S') {
+                if(start == -1) {
+                    start = i;
+                    end = i + 1;
+                }
+                else if(end == i) {
+                    end++;
+                }
+                else {
+                    splittable = false;
+                }
+            }
+            else if(!quoted && "nNA[]#{}".indexOf(c) >= 0) {
+                // Sub-second, optional or reserved fields: the text may change within a second
+                splittable = false;
+                subMillis = subMillis || c == 'n' || c == 'N';
+            }
+        }
+        if(!splittable || end - start > 9) {
+            return;
+        }
+
+        if(start == -1) {
+            prefixFormatter = formatter;
+        }
+        else {
+            prefixFormatter = DateTimeFormatter.ofPattern(pattern.substring(0, start));
+            suffixFormatter = end < pattern.length() ? DateTimeFormatter.ofPattern(pattern.substring(end)) : null;
+            fractionDigits = end - start;
+        }
+    }
+
+    /**
+     * Gets the source pattern.
+     * @return the pattern this format was compiled from
+     */
+    String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Checks if this format writes the raw time since the epoch.
+     * @return true for the epoch patterns, false otherwise
+     */
+    boolean isEpoch() {
+        return EPOCH_MILLIS.equals(pattern) || EPOCH_NANOS.equals(pattern);
+    }
+
+    /**
+     * Checks if this format needs a sub-millisecond timestamp.
+     * @return true if nanoseconds are rendered, false otherwise
+     */
+    boolean needsNanos() {
+        return EPOCH_NANOS.equals(pattern) || fractionDigits > 3 || subMillis;
+    }
+
+    /**
+     * Renders a timestamp into the given builder.
+     * @param out the builder to append to
+     * @param millis the time in milliseconds since the epoch
+     * @param nanos the nanoseconds within the millisecond (0-999999)
+     */
+    void render(StringBuilder out, long millis, int nanos) {
+        if(formatter == null) {
+            if(EPOCH_MILLIS.equals(pattern)) {
+                out.append(millis);
+            }
+            else {
+                out.append(millis * 1_000_000L + nanos);
+            }
+            return;
+        }
+
+        if(subMillis) {
+            formatter.formatTo(LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), zone).plusNanos(nanos), out);
+            return;
+        }
+        if(prefixFormatter == null) {
+            Cached current = cached;
+            if(current.key != millis) {
+                LocalDateTime date = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), zone);
+                current = new Cached(millis, formatter.format(date), "");
+                cached = current;
+            }
+            out.append(current.prefix);
+            return;
+        }
+
+        long second = Math.floorDiv(millis, 1000L);
+        Cached current = cached;
+        if(current.key != second) {
+            LocalDateTime date = LocalDateTime.ofInstant(Instant.ofEpochSecond(second), zone);
+            current = new Cached(second,
+                    prefixFormatter.format(date),
+                    suffixFormatter == null ? "" : suffixFormatter.format(date));
+            cached = current;
+        }
+        out.append(current.prefix);
+        if(fractionDigits > 0) {
+            int fraction = (int) Math.floorMod(millis, 1000L) * 1_000_000 + nanos;
+            for(int divisor = 100_000_000, i = 0; i < fractionDigits; i++, divisor /= 10) {
+                out.append((char) ('0' + fraction / divisor % 10));
+            }
+        }
+        out.append(current.suffix);
+    }
+
+    /**
+     * Cached is the rendered text of one second (or millisecond),
+     * split around the fraction digits.
+     */
+    private static final class Cached {
+
+        /** The cached second or millisecond */
+        final long key;
+
+        /** Text before the fraction digits */
+        final String prefix;
+
+        /** Text after the fraction digits */
+        final String suffix;
+
+        /**
+         * Creates a cached text.
+         * @param key the cached second or millisecond
+         * @param prefix the text before the fraction digits
+         * @param suffix the text after the fraction digits
+         */
+        Cached(long key, String prefix, String suffix) {
+            this.key = key;
+            this.prefix = prefix;
+            this.suffix = suffix;
+        }
+    }
+}
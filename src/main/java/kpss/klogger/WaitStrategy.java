@@ -0,0 +1,55 @@
+package kpss.klogger;
+
+import java.util.Locale;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * WaitStrategy defines how the asynchronous writer thread and blocked callers wait
+ * when there is nothing to consume or no free slot in the ring buffer.
+ *
+ * @author POUSSE Kilian
+ */
+enum WaitStrategy {
+
+    /** Busy spin: lowest latency, burns a core while idle */
+    SPIN {
+        @Override
+        void idle() {
+            Thread.onSpinWait();
+        }
+    },
+
+    /** Yields the processor to other threads between checks */
+    YIELD {
+        @Override
+        void idle() {
+            Thread.yield();
+        }
+    },
+
+    /** Parks the thread for a short time between checks: lowest CPU usage */
+    PARK {
+        @Override
+        void idle() {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    };
+
+    /** Park duration between checks, in nanoseconds */
+    private static final long PARK_NANOS = 50_000L;
+
+    /**
+     * Waits once before the caller checks its condition again.
+     */
+    abstract void idle();
+
+    /**
+     * Parses a wait strategy from its configuration name (e.g. "spin", "yield", "park").
+     * @param name the configuration name
+     * @return the wait strategy
+     * @throws IllegalArgumentException if the name is unknown
+     */
+    static WaitStrategy of(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+}
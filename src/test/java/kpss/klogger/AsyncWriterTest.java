@@ -0,0 +1,125 @@
+package kpss.klogger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Tests of the asynchronous writer: every accepted entry is written once, also when the writer
+ * closes while entries are published, and written slots do not keep the data of their entry.
+ *
+ * @author POUSSE Kilian
+ */
+class AsyncWriterTest {
+
+    /** Temporary directory of the log files */
+    @TempDir
+    Path dir;
+
+    /**
+     * Writers are closed while several threads publish entries: every entry the writer accepted is
+     * written once before it stops, in both producer modes. In single-producer mode, the entries
+     * losing their claim to another thread are refused, to be written by their caller.
+     * @param multiProducer true for the multi-producer mode
+     * @throws IOException if the log file cannot be opened or read
+     * @throws InterruptedException if the test is interrupted
+     */
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void acceptedEntriesAreWrittenWhenClosing(boolean multiProducer) throws IOException, InterruptedException {
+        Path log = dir.resolve("closing-" + multiProducer + ".log");
+        LogConfig config = new LogConfig();
+        config.init(LogConfigTest.json("{ \"sinks\": [ { \"type\": \"file\", \"file\": \"" + LogConfigTest.path(log)
+                + "\", \"format\": \"{message}\", \"async\": true } ] }"));
+        AtomicLong accepted = new AtomicLong();
+        for(int round = 0; round < 200; round++) {
+            AsyncWriter writer = new AsyncWriter(config, 64, multiProducer, WaitStrategy.YIELD, OverflowPolicy.BLOCK);
+            AtomicBoolean closing = new AtomicBoolean();
+            List<Thread> producers = new ArrayList<>();
+            for(int t = 0; t < 3; t++) {
+                String prefix = round + " " + t + " ";
+                Thread producer = new Thread(() -> {
+                    for(int i = 0; ; i++) {
+                        if(writer.publish(LogConfigTest.event(LogLevel.INFO, prefix + i))) {
+                            accepted.incrementAndGet();
+                        }
+                        else if(closing.get()) {
+                            return;
+                        }
+                    }
+                });
+                producer.start();
+                producers.add(producer);
+            }
+            Thread.sleep(round % 3);
+            closing.set(true);
+            writer.close();
+            for(Thread producer: producers) {
+                producer.join();
+            }
+        }
+        config.flush();
+
+        List<String> lines = Files.readAllLines(log);
+        Set<String> unique = new HashSet<>(lines);
+        assertEquals(lines.size(), unique.size(), "Entries written twice");
+        assertEquals(accepted.get(), lines.size(), "Accepted entries not written");
+        assertTrue(accepted.get() > 0);
+    }
+
+    /**
+     * Once an entry is written, its arguments, exception and context can be garbage collected,
+     * although its ring buffer slot is not reused.
+     * @throws IOException if the log file cannot be opened or read
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test
+    void writtenSlotsReleaseTheirEntry() throws IOException, InterruptedException {
+        Path log = dir.resolve("async.log");
+        LogConfig config = new LogConfig();
+        config.init(LogConfigTest.json("{ \"async\": { \"enabled\": true, \"bufferSize\": 1024 }, \"sinks\": [ { \"type\": \"file\","
+                + " \"file\": \"" + LogConfigTest.path(log) + "\", \"format\": \"{message}\" } ] }"));
+        Object arg = new Object() {
+
+            @Override
+            public String toString() {
+                return "large payload";
+            }
+        };
+        Throwable thrown = new IllegalStateException("failure");
+        ContextMap mdc = ContextMap.EMPTY.with("request", "42");
+        WeakReference<Object> argRef = new WeakReference<>(arg);
+        WeakReference<Throwable> thrownRef = new WeakReference<>(thrown);
+        WeakReference<ContextMap> mdcRef = new WeakReference<>(mdc);
+        config.write(LogConfigTest.event(LogLevel.INFO, "Sent {}").arg(arg).thrown(thrown).mdc(mdc));
+        config.flush();
+        arg = null;
+        thrown = null;
+        mdc = null;
+
+        for(int i = 0; i < 50 && (argRef.get() != null || thrownRef.get() != null || mdcRef.get() != null); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(argRef.get());
+        assertNull(thrownRef.get());
+        assertNull(mdcRef.get());
+        assertEquals("Sent large payload", Files.readAllLines(log).get(0));
+    }
+}
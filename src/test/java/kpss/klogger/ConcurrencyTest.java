@@ -0,0 +1,150 @@
+package kpss.klogger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Stress test of concurrent logging: entries written by many threads while the settings change
+ * are all written once, each on its own line.
+ *
+ * @author POUSSE Kilian
+ */
+class ConcurrencyTest {
+
+    /** Number of logging threads */
+    private static final int WRITERS = 8;
+
+    /** Number of entries per logging thread */
+    private static final int ENTRIES = 20_000;
+
+    /** Written line: writer, entry number, then as many 'x' as the entry number modulo 100 */
+    private static final Pattern LINE = Pattern.compile("w(\\d+) (\\d+) (x*)");
+
+    /** Temporary directory of the log files */
+    @TempDir
+    Path dir;
+
+    /**
+     * Logs from several threads while another one switches the writer thread on and off,
+     * reopens the log file in append mode and changes the levels and caller mode.
+     * Every line of the log file must be a whole entry, and every entry must be written once.
+     * @param mode the log file mode
+     * @throws Exception if a thread fails or the log file cannot be read
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {"channel", "mmap"})
+    void concurrentWritesAndSettingsKeepLinesWhole(String mode) throws Exception {
+        Path log = dir.resolve(mode + ".log");
+        LogConfig config = new LogConfig();
+        config.init(LogConfigTest.json("{ \"fileMode\": \"" + mode + "\", \"sinks\": [ { \"type\": \"file\", \"file\": \""
+                + LogConfigTest.path(log) + "\", \"format\": \"{message}\" } ] }"));
+
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> writers = new ArrayList<>();
+        for(int t = 0; t < WRITERS; t++) {
+            String prefix = "w" + t + " ";
+            writers.add(thread("writer-" + t, start, failure, () -> {
+                for(int i = 0; i < ENTRIES; i++) {
+                    LogConfigTest.write(config, prefix + i + " " + "x".repeat(i % 100));
+                }
+            }));
+        }
+        Thread setter = thread("setter", start, failure, () -> {
+            for(int i = 0; !done.get(); i++) {
+                config.setAsyncMode(i % 2 == 0);
+                config.setAppendMode(true);
+                config.setLevel(i % 3 == 0 ? LogLevel.DEBUG : LogLevel.INFO);
+                config.setLevel("kpss.klogger", i % 2 == 0 ? LogLevel.WARNING : null);
+                config.setCallerMode(i % 2 == 0 ? CallerMode.NEVER : CallerMode.ALWAYS);
+                Thread.sleep(1);
+            }
+        });
+        start.countDown();
+        for(Thread writer: writers) {
+            writer.join();
+        }
+        done.set(true);
+        setter.join();
+        config.flush();
+        if(failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+
+        BitSet[] written = new BitSet[WRITERS];
+        for(int t = 0; t < WRITERS; t++) {
+            written[t] = new BitSet(ENTRIES);
+        }
+        // A mapped log file ends with the unused part of its last chunk until it is closed
+        String content = Files.readString(log);
+        int end = content.length();
+        while(end > 0 && content.charAt(end - 1) == '\0') {
+            end--;
+        }
+        List<String> lines = content.substring(0, end).lines().toList();
+        for(String line: lines) {
+            Matcher matcher = LINE.matcher(line);
+            assertTrue(matcher.matches(), () -> "Torn line: " + line);
+            int writer = Integer.parseInt(matcher.group(1));
+            int entry = Integer.parseInt(matcher.group(2));
+            assertEquals(entry % 100, matcher.group(3).length(), () -> "Torn line: " + line);
+            assertTrue(!written[writer].get(entry), () -> "Duplicate line: " + line);
+            written[writer].set(entry);
+        }
+        for(int t = 0; t < WRITERS; t++) {
+            assertEquals(ENTRIES, written[t].cardinality(), "Lines of writer " + t);
+        }
+        assertEquals(WRITERS * ENTRIES, lines.size());
+    }
+
+    /**
+     * Task of a test thread.
+     */
+    @FunctionalInterface
+    private interface Task {
+
+        /**
+         * Runs the task.
+         * @throws Exception if the task fails
+         */
+        void run() throws Exception;
+    }
+
+    /**
+     * Starts a thread running a task once the start signal is given.
+     * @param name the name of the thread
+     * @param start the start signal
+     * @param failure the first failure of the test threads
+     * @param task the task
+     * @return the started thread
+     */
+    private static Thread thread(String name, CountDownLatch start, AtomicReference<Throwable> failure, Task task) {
+        Thread thread = new Thread(() -> {
+            try {
+                start.await();
+                task.run();
+            }
+            catch(Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+        }, name);
+        thread.start();
+        return thread;
+    }
+}
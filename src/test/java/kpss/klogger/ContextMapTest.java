@@ -0,0 +1,110 @@
+package kpss.klogger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the diagnostic context: the immutable context maps, the {mdc.key} and {mdc}
+ * placeholders, and the context of a thread.
+ *
+ * @author POUSSE Kilian
+ */
+class ContextMapTest {
+
+    /**
+     * Clears the context of the test thread.
+     */
+    @AfterEach
+    void clearContext() {
+        MDC.clear();
+    }
+
+    /**
+     * Adding, replacing and removing keys builds new maps sorted by key, and leaves the previous maps as they were.
+     */
+    @Test
+    void mapsAreCopiedOnChange() {
+        ContextMap one = ContextMap.EMPTY.with("user", "alice");
+        ContextMap three = one.with("tenant", "acme").with("request", "7");
+        assertEquals("request=7 tenant=acme user=alice", text(three));
+        assertEquals("user=alice", text(one));
+
+        ContextMap replaced = three.with("tenant", "other");
+        assertEquals("other", replaced.get("tenant"));
+        assertEquals("acme", three.get("tenant"));
+        assertSame(three, three.with("user", "alice"));
+
+        assertEquals("request=7 user=alice", text(three.without("tenant")));
+        assertEquals("tenant=acme user=alice", text(three.with("request", null)));
+        assertSame(three, three.without("missing"));
+        assertSame(ContextMap.EMPTY, one.without("user"));
+        assertNull(three.get("missing"));
+        assertEquals(0, ContextMap.EMPTY.size());
+    }
+
+    /**
+     * {mdc.key} writes one field, or nothing if it is not set, and {mdc} writes every field.
+     */
+    @Test
+    void placeholdersWriteTheFields() {
+        LogTemplate template = new LogTemplate("{mdc.user}|{mdc.missing}|{mdc}|{message}", true, ExceptionFormat.DEFAULT);
+        LogEvent event = LogConfigTest.event(LogLevel.INFO, "hello").mdc(ContextMap.EMPTY.with("user", "bob").with("id", "3"));
+        StringBuilder out = new StringBuilder();
+        template.render(out, event, new TimestampFormat("yyyy"), null);
+        assertEquals("bob||id=3 user=bob|hello", out.toString());
+
+        out.setLength(0);
+        template.render(out, LogConfigTest.event(LogLevel.INFO, "hello"), new TimestampFormat("yyyy"), null);
+        assertEquals("|||hello", out.toString());
+    }
+
+    /**
+     * Scopes restore the previous context, and wrapped tasks run with the context of the submitting thread.
+     * @throws Exception if a task fails
+     */
+    @Test
+    void contextFollowsScopesAndTasks() throws Exception {
+        MDC.put("user", "alice");
+        try(MDC.Scope scope = MDC.with("user", "bob")) {
+            assertEquals("bob", MDC.get("user"));
+            MDC.put("request", "1");
+        }
+        assertEquals("alice", MDC.get("user"));
+        assertNull(MDC.get("request"));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            List<String> seen = new ArrayList<>();
+            Runnable task = MDC.wrap((Runnable) () -> seen.add(MDC.get("user")));
+            MDC.remove("user");
+            executor.submit(task).get();
+            executor.submit(() -> seen.add(MDC.get("user"))).get();
+            assertEquals(Arrays.asList("alice", null), seen);
+        }
+        finally {
+            executor.shutdown();
+        }
+        assertNull(MDC.get("user"));
+    }
+
+    /**
+     * Gets the fields of a map as text.
+     * @param map the context map
+     * @return the "key=value" pairs
+     */
+    private static String text(ContextMap map) {
+        StringBuilder out = new StringBuilder();
+        map.appendTo(out);
+        return out.toString();
+    }
+}
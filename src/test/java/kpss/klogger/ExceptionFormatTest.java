@@ -0,0 +1,118 @@
+package kpss.klogger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the exception rendering cache and of the deduplication of repeated traces.
+ *
+ * @author POUSSE Kilian
+ */
+class ExceptionFormatTest {
+
+    /** Line written for a repeated trace */
+    private static final Pattern REPEATED = Pattern.compile("same stack trace seen (\\d+) times");
+
+    /**
+     * Exceptions with the same stack trace, the same object or new ones, are written in full once per window.
+     */
+    @Test
+    void repeatedTracesAreCounted() {
+        ExceptionFormat format = new ExceptionFormat(0, 16, 60_000);
+        // Two exceptions created at the same place
+        List<IllegalStateException> thrown = new ArrayList<>();
+        for(int i = 0; i < 2; i++) {
+            thrown.add(failure("down"));
+        }
+        List<String> lines = new ArrayList<>();
+        for(Throwable logged: List.of(thrown.get(0), thrown.get(1), thrown.get(0))) {
+            lines.add(render(format, logged));
+        }
+        assertTrue(lines.get(0).contains("├── kpss.klogger.ExceptionFormatTest.failure"), lines.get(0));
+        assertEquals(List.of(2L, 3L), List.of(count(lines.get(1)), count(lines.get(2))));
+        // Another stack trace is written in full
+        assertEquals(-1, count(render(format, failure("timeout"))));
+    }
+
+    /**
+     * Concurrent occurrences of a trace are each counted once: one is written in full,
+     * the others are numbered without gap or repetition.
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test
+    void concurrentOccurrencesAreCountedOnce() throws InterruptedException {
+        ExceptionFormat format = new ExceptionFormat(0, 16, 60_000);
+        IllegalStateException logged = failure("down");
+        int threads = 8;
+        int occurrences = 5000;
+        ConcurrentLinkedQueue<Long> counts = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for(int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                }
+                catch(InterruptedException e) {
+                    return;
+                }
+                for(int i = 0; i < occurrences; i++) {
+                    counts.add(count(render(format, logged)));
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for(Thread worker: workers) {
+            worker.join();
+        }
+
+        List<Long> sorted = counts.stream().sorted().toList();
+        assertEquals(threads * occurrences, sorted.size());
+        assertEquals(-1L, sorted.get(0));
+        for(int i = 1; i < sorted.size(); i++) {
+            assertEquals(i + 1, sorted.get(i));
+        }
+    }
+
+    /**
+     * Creates an exception, always at the same line.
+     * @param message the message
+     * @return the exception
+     */
+    private static IllegalStateException failure(String message) {
+        return new IllegalStateException(message);
+    }
+
+    /**
+     * Renders an exception as text.
+     * @param format the exception format
+     * @param thrown the exception
+     * @return the rendered text
+     */
+    private static String render(ExceptionFormat format, Throwable thrown) {
+        StringBuilder out = new StringBuilder();
+        format.appendText(out, thrown);
+        return out.toString();
+    }
+
+    /**
+     * Gets the number of occurrences of a repeated trace.
+     * @param text the rendered text
+     * @return the number of occurrences, -1 if the trace is written in full
+     */
+    private static long count(String text) {
+        Matcher matcher = REPEATED.matcher(text);
+        return matcher.find() ? Long.parseLong(matcher.group(1)) : -1;
+    }
+}
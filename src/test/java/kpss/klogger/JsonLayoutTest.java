@@ -0,0 +1,68 @@
+package kpss.klogger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the JSON layout: string escaping and the fields of an entry.
+ *
+ * @author POUSSE Kilian
+ */
+class JsonLayoutTest {
+
+    /**
+     * Quotes, backslashes and control characters are escaped, other characters are written as they are.
+     */
+    @Test
+    void specialCharactersAreEscaped() {
+        assertEquals("\"say \\\"hi\\\" to C:\\\\temp\"", string("say \"hi\" to C:\\temp"));
+        assertEquals("\"\\n\\r\\t\\b\\f\"", string("\n\r\t\b\f"));
+        assertEquals("\"\\u0000\\u0001\\u001f \u007f\"", string("\u0000\u0001\u001f \u007f"));
+        assertEquals("\"é €/<>\"", string("é €/<>"));
+        assertEquals("\"\"", string(""));
+        assertEquals("null", string(null));
+    }
+
+    /**
+     * Surrogate pairs are kept, and unpaired surrogates are escaped so the line stays valid UTF-8.
+     */
+    @Test
+    void unpairedSurrogatesAreEscaped() {
+        assertEquals("\"a\uD83D\uDE00b\"", string("a\uD83D\uDE00b"));
+        assertEquals("\"\\ud83d\"", string("\uD83D"));
+        assertEquals("\"\\ude00x\\ud83d\"", string("\uDE00x\uD83D"));
+        assertEquals("\"\\ud83d\uD83D\uDE00\"", string("\uD83D\uD83D\uDE00"));
+        // The escaped text survives the encoding of the log file
+        String line = string("\uDE00\uD83D\uDE00");
+        assertEquals(line, new String(line.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * An entry is one object: an epoch timestamp is a number, the other fields are escaped strings,
+     * and the diagnostic context is an object in key order.
+     */
+    @Test
+    void entryIsOneObject() {
+        LogEvent event = new LogEvent().set(LogLevel.WARNING, "kpss.klogger.JsonLayoutTest", "{} \"{}\"", 1_700_000_000_123L, 0, "pool \"1\"")
+                .arg(42L).arg("a\tb").mdc(ContextMap.EMPTY.with("user", "alice").with("request", "7\n"));
+        StringBuilder out = new StringBuilder();
+        new JsonLayout(ExceptionFormat.DEFAULT).render(out, event, new TimestampFormat(TimestampFormat.EPOCH_MILLIS), null);
+        assertEquals("{\"timestamp\":1700000000123,\"level\":\"WARNING\",\"thread\":\"pool \\\"1\\\"\","
+                + "\"context\":\"kpss.klogger.JsonLayoutTest\",\"message\":\"42 \\\"a\\tb\\\"\","
+                + "\"mdc\":{\"request\":\"7\\n\",\"user\":\"alice\"}}", out.toString());
+    }
+
+    /**
+     * Writes a JSON string.
+     * @param text the text to write
+     * @return the JSON string
+     */
+    private static String string(String text) {
+        StringBuilder out = new StringBuilder();
+        JsonLayout.appendString(out, text);
+        return out.toString();
+    }
+}
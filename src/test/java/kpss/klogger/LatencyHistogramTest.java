@@ -0,0 +1,83 @@
+package kpss.klogger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the latency histogram: the bucket math and the percentiles of the recorded durations.
+ *
+ * @author POUSSE Kilian
+ */
+class LatencyHistogramTest {
+
+    /**
+     * Every value falls in a bucket whose range holds it, at most 12.5% above the value,
+     * and the buckets follow the order of the values without gap.
+     */
+    @Test
+    void bucketsHoldTheirValues() {
+        List<Long> values = new ArrayList<>();
+        for(long value = 0; value < 5000; value++) {
+            values.add(value);
+        }
+        for(int shift = 3; shift < 63; shift++) {
+            values.add((1L << shift) - 1);
+            values.add(1L << shift);
+            values.add((1L << shift) + 1);
+        }
+        Random random = new Random(42);
+        for(int i = 0; i < 10_000; i++) {
+            values.add(random.nextLong() >>> (1 + random.nextInt(63)));
+        }
+        values.add(Long.MAX_VALUE);
+
+        for(long value: values) {
+            int bucket = LatencyHistogram.bucket(value);
+            long highest = LatencyHistogram.highestValue(bucket);
+            assertTrue(highest >= value, () -> value + " above its bucket " + bucket);
+            assertTrue(bucket == 0 || LatencyHistogram.highestValue(bucket - 1) < value, () -> value + " below its bucket " + bucket);
+            assertTrue(highest - value <= value / 8, () -> value + " too far from its bucket " + bucket);
+        }
+        // The last bucket ends with the largest value
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValue(LatencyHistogram.bucket(Long.MAX_VALUE)));
+        for(int bucket = 1; bucket <= LatencyHistogram.bucket(Long.MAX_VALUE); bucket++) {
+            assertEquals(bucket, LatencyHistogram.bucket(LatencyHistogram.highestValue(bucket - 1) + 1));
+        }
+    }
+
+    /**
+     * The percentiles are the highest values of the buckets holding them, bounded by the largest
+     * recorded value, and a reset clears the recorded durations.
+     */
+    @Test
+    void percentilesFollowTheRecordedDurations() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.snapshot().getCount());
+        assertEquals(0, histogram.snapshot().getP99());
+        for(long value = 1; value <= 1000; value++) {
+            histogram.record(value);
+        }
+        histogram.record(-5);
+
+        LogStats.Latency latency = histogram.snapshot();
+        assertEquals(1001, latency.getCount());
+        assertEquals(500_500 / 1001, latency.getMean());
+        assertEquals(LatencyHistogram.highestValue(LatencyHistogram.bucket(500)), latency.getP50());
+        assertEquals(LatencyHistogram.highestValue(LatencyHistogram.bucket(900)), latency.getP90());
+        // The bucket of the higher percentiles ends above the largest value
+        assertEquals(1000, latency.getP99());
+        assertEquals(1000, latency.getP999());
+        assertEquals(1000, latency.getMax());
+
+        histogram.reset();
+        latency = histogram.snapshot();
+        assertEquals(0, latency.getCount());
+        assertEquals(0, latency.getMax());
+    }
+}
@@ -0,0 +1,91 @@
+package kpss.klogger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the classes loaded by the logger: a program logging with the default configuration
+ * loads neither AWT nor Jackson. Each program runs in a new JVM with {@code -verbose:class},
+ * since the classes already loaded by the test JVM cannot be unloaded.
+ *
+ * @author POUSSE Kilian
+ */
+class LazyLoadingTest {
+
+    /** Prefix of the AWT classes */
+    private static final String AWT = "java.awt.";
+
+    /** Prefix of the Jackson classes */
+    private static final String JACKSON = "com.fasterxml.jackson.";
+
+    /**
+     * Logging a line with the default configuration loads neither AWT nor Jackson.
+     * @throws Exception if the program cannot be run
+     */
+    @Test
+    void defaultPathLoadsNeitherAwtNorJackson() throws Exception {
+        List<String> loaded = loadedClasses(false);
+        assertTrue(loaded.contains("kpss.klogger.LogColor"), "LogColor not loaded");
+        assertEquals(List.of(), loaded.stream().filter(name -> name.startsWith(AWT) || name.startsWith(JACKSON)).toList());
+    }
+
+    /**
+     * Loading a JSON configuration loads Jackson, and still not AWT.
+     * @throws Exception if the program cannot be run
+     */
+    @Test
+    void configurationLoadsJackson() throws Exception {
+        List<String> loaded = loadedClasses(true);
+        assertTrue(loaded.contains("com.fasterxml.jackson.databind.ObjectMapper"), "ObjectMapper not loaded");
+        assertEquals(List.of(), loaded.stream().filter(name -> name.startsWith(AWT)).toList());
+    }
+
+    /**
+     * Runs the {@link Probe} in a new JVM and lists the classes it loads.
+     * @param config true to load a JSON configuration before logging
+     * @return the names of the loaded classes
+     * @throws IOException if the JVM cannot be started
+     * @throws InterruptedException if the test is interrupted
+     */
+    private static List<String> loadedClasses(boolean config) throws IOException, InterruptedException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        Process process = new ProcessBuilder(java, "-verbose:class", "-cp", System.getProperty("java.class.path"),
+                Probe.class.getName(), String.valueOf(config)).redirectErrorStream(true).start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertTrue(process.waitFor(60, TimeUnit.SECONDS), "Probe still running");
+        assertEquals(0, process.exitValue(), output);
+        assertTrue(output.contains("probe line"), output);
+        // Lines such as "[0.012s][info][class,load] java.lang.Object source: jrt:/java.base"
+        return output.lines().filter(line -> line.contains("[class,load] "))
+                .map(line -> line.substring(line.indexOf("[class,load] ") + 13).split(" ")[0]).toList();
+    }
+
+    /**
+     * Probe is the program run in a new JVM: it logs one line, after loading a JSON configuration
+     * if its argument is "true".
+     */
+    static final class Probe {
+
+        /**
+         * Logs one line.
+         * @param args "true" to load a JSON configuration first
+         * @throws IOException if the configuration cannot be loaded
+         */
+        public static void main(String[] args) throws IOException {
+            if(Boolean.parseBoolean(args[0])) {
+                KLog.setConfig(new ByteArrayInputStream("{ }".getBytes(StandardCharsets.UTF_8)));
+            }
+            KLog.log("probe line");
+            KLog.flush();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package kpss.klogger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the level thresholds: package prefixes, the most specific override,
+ * and the cached thresholds after a level change.
+ *
+ * @author POUSSE Kilian
+ */
+class LevelFilterTest {
+
+    /**
+     * Restores the global levels changed by the tests.
+     */
+    @AfterEach
+    void restoreLevels() {
+        KLog.setLevel(LevelFilterTest.class.getName(), null);
+        KLog.setLevel(LevelFilterTest.Inner.class.getName(), null);
+    }
+
+    /**
+     * An override applies to its name and to the names below it, on a package or nested class
+     * boundary only, and the longest matching override wins.
+     */
+    @Test
+    void mostSpecificPrefixWins() {
+        LevelFilter filter = new LevelFilter(LogLevel.INFO,
+                Map.of("com.example", LogLevel.DEBUG, "com.example.db", LogLevel.ERROR, "com.example.Service", LogLevel.WARNING));
+        assertEquals(LogLevel.DEBUG, filter.resolve("com.example"));
+        assertEquals(LogLevel.DEBUG, filter.resolve("com.example.web.Controller"));
+        assertEquals(LogLevel.ERROR, filter.resolve("com.example.db.Pool"));
+        assertEquals(LogLevel.WARNING, filter.resolve("com.example.Service$Inner"));
+        assertEquals(LogLevel.DEBUG, filter.resolve("com.example.ServiceImpl"));
+        assertEquals(LogLevel.INFO, filter.resolve("com.examples.Other"));
+        assertEquals(LogLevel.INFO, filter.resolve("com"));
+
+        assertTrue(filter.isEnabledSomewhere(LogLevel.DEBUG));
+        assertFalse(filter.isEnabledEverywhere(LogLevel.WARNING));
+        assertTrue(filter.isEnabledEverywhere(LogLevel.ERROR));
+        assertTrue(filter.isEnabled(LogLevel.DEBUG, "com.example.web"));
+        assertFalse(filter.isEnabled(LogLevel.WARNING, "com.example.db.Pool"));
+    }
+
+    /**
+     * A level change builds a new filter: the thresholds cached per class and per name
+     * by the previous filter are not reused.
+     */
+    @Test
+    void cachedThresholdsFollowLevelChanges() {
+        LevelFilter filter = new LevelFilter(LogLevel.INFO, Map.of("kpss.klogger", LogLevel.WARNING));
+        assertFalse(filter.isEnabled(LogLevel.INFO, Inner.class));
+        assertFalse(filter.isEnabled(LogLevel.INFO, Inner.class.getName()));
+
+        LevelFilter changed = filter.withOverride(LevelFilterTest.class.getName(), LogLevel.DEBUG);
+        assertTrue(changed.isEnabled(LogLevel.DEBUG, Inner.class));
+        assertTrue(changed.isEnabled(LogLevel.DEBUG, Inner.class.getName()));
+        assertFalse(changed.isEnabled(LogLevel.DEBUG, LevelFilter.class));
+        // The previous filter keeps its own thresholds
+        assertFalse(filter.isEnabled(LogLevel.INFO, Inner.class));
+
+        LevelFilter removed = changed.withOverride("kpss.klogger", null).withThreshold(LogLevel.ERROR);
+        assertFalse(removed.isEnabled(LogLevel.INFO, LevelFilter.class));
+        assertTrue(removed.isEnabled(LogLevel.DEBUG, Inner.class));
+        assertEquals(Map.of(LevelFilterTest.class.getName(), LogLevel.DEBUG), removed.getOverrides());
+    }
+
+    /**
+     * The thresholds of the classes and of the loggers created before a level change follow the change.
+     */
+    @Test
+    void loggersFollowLevelChanges() {
+        KLog.setLevel(LogLevel.INFO);
+        Logger logger = KLog.getLogger(Inner.class);
+        assertFalse(logger.isEnabled(LogLevel.DEBUG));
+        assertFalse(KLog.isEnabled(LogLevel.DEBUG, Inner.class));
+
+        KLog.setLevel(LevelFilterTest.class.getName(), LogLevel.DEBUG);
+        assertTrue(logger.isEnabled(LogLevel.DEBUG));
+        assertTrue(KLog.isEnabled(LogLevel.DEBUG, Inner.class));
+
+        KLog.setLevel(Inner.class.getName(), LogLevel.ERROR);
+        assertFalse(logger.isEnabled(LogLevel.WARNING));
+        assertFalse(KLog.isEnabled(LogLevel.WARNING, Inner.class));
+
+        KLog.setLevel(Inner.class.getName(), null);
+        assertTrue(logger.isEnabled(LogLevel.DEBUG));
+    }
+
+    /**
+     * Inner is a nested class, whose name is below the name of the test class.
+     */
+    private static final class Inner {
+    }
+}
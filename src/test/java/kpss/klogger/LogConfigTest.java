@@ -0,0 +1,171 @@
+package kpss.klogger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests of the configuration loading: a failed load keeps the current settings.
+ *
+ * @author POUSSE Kilian
+ */
+class LogConfigTest {
+
+    /** Temporary directory of the log files */
+    @TempDir
+    Path dir;
+
+    /**
+     * A load failing after a log file was closed to be opened with other settings
+     * keeps the writer thread and the log file of the current settings.
+     * @throws IOException if a log file cannot be read
+     */
+    @Test
+    void failedLoadKeepsTheCurrentSettings() throws IOException {
+        LogConfig config = new LogConfig();
+        Path log = dir.resolve("app.log");
+        config.init(json("{ \"async\": { \"enabled\": true }, \"sinks\": ["
+                + "{ \"type\": \"file\", \"file\": \"" + path(log) + "\", \"format\": \"{message}\" } ] }"));
+        AsyncWriter writer = config.getSnapshot().getWriter();
+        assertNotNull(writer);
+        write(config, "before");
+
+        // The same log file with another buffer size, then a log file that cannot be opened
+        String failing = "{ \"async\": { \"enabled\": true, \"bufferSize\": 64 }, \"buffer\": { \"size\": 4096 }, \"sinks\": ["
+                + "{ \"type\": \"file\", \"file\": \"" + path(log) + "\", \"format\": \"{message}\" },"
+                + "{ \"type\": \"file\", \"name\": \"broken\", \"file\": \"" + path(dir) + "\" } ] }";
+        assertThrows(IOException.class, () -> config.init(json(failing)));
+
+        assertTrue(config.isAsyncMode());
+        assertNotNull(config.getSnapshot().getWriter());
+        assertEquals(List.of("file"), names(config));
+        write(config, "after");
+        config.flush();
+        assertEquals(List.of("before", "after"), Files.readAllLines(log));
+    }
+
+    /**
+     * A load failing with a closed log file shared by two sinks opens it again once for both.
+     * @throws IOException if a log file cannot be read
+     */
+    @Test
+    void failedLoadReopensSharedLogFiles() throws IOException {
+        LogConfig config = new LogConfig();
+        Path log = dir.resolve("shared.log");
+        String sink = "\"file\": \"" + path(log) + "\", \"format\": \"{message}\" }";
+        config.init(json("{ \"sinks\": [ { \"type\": \"file\", \"name\": \"all\", " + sink + " ] }"));
+        // The second sink shares the log file kept open by the reload
+        config.init(json("{ \"sinks\": [ { \"type\": \"file\", \"name\": \"all\", " + sink
+                + ", { \"type\": \"file\", \"name\": \"errors\", \"level\": \"error\", " + sink + " ] }"));
+        String failing = "{ \"fileMode\": \"mmap\", \"sinks\": [ { \"type\": \"file\", \"name\": \"all\", " + sink
+                + ", { \"type\": \"file\", \"name\": \"broken\", \"file\": \"" + path(dir) + "\" } ] }";
+        assertThrows(IOException.class, () -> config.init(json(failing)));
+
+        assertEquals(List.of("all", "errors"), names(config));
+        write(config, "info");
+        config.write(event(LogLevel.ERROR, "error"));
+        config.flush();
+        assertEquals(List.of("info", "error", "error"), Files.readAllLines(log));
+    }
+
+    /**
+     * Lowercase and uppercase setting names load whatever the default locale, including Turkish,
+     * whose uppercase of "i" is not "I".
+     * @throws IOException if the configuration cannot be loaded
+     */
+    @Test
+    void settingNamesDoNotDependOnTheLocale() throws IOException {
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+        try {
+            LogConfig config = new LogConfig();
+            config.init(json("{ \"level\": \"info\", \"levels\": { \"kpss.klogger\": \"critical\" }, \"caller\": \"warning\","
+                    + " \"color\": \"auto\", \"async\": { \"enabled\": true, \"wait\": \"spin\", \"overflow\": \"drop-debug\" },"
+                    + " \"rolling\": { \"schedule\": \"DAILY\" }, \"sinks\": [ { \"type\": \"file\", \"file\": \""
+                    + path(dir.resolve("turkish.log")) + "\" } ] }"));
+            assertEquals(LogLevel.INFO, config.getLevels().getThreshold());
+            assertEquals(CallerMode.WARNING, config.getSnapshot().getCallerMode());
+            assertEquals(ColorMode.AUTO, config.getColorMode());
+            config.flush();
+        }
+        finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    /**
+     * Two sinks of one configuration on the same path share one log file.
+     * @throws IOException if a log file cannot be read
+     */
+    @Test
+    void sinksOnTheSamePathShareTheLogFile() throws IOException {
+        LogConfig config = new LogConfig();
+        Path log = dir.resolve("same.log");
+        String sink = "\"file\": \"" + path(log) + "\", \"format\": \"{message}\" }";
+        config.init(json("{ \"sinks\": [ { \"type\": \"file\", \"name\": \"all\", " + sink
+                + ", { \"type\": \"file\", \"name\": \"errors\", \"level\": \"error\", " + sink + " ] }"));
+        write(config, "info");
+        config.write(event(LogLevel.ERROR, "error"));
+        config.flush();
+        assertEquals(List.of("info", "error", "error"), Files.readAllLines(log));
+    }
+
+    /**
+     * Writes an INFO entry.
+     * @param config the configuration
+     * @param message the message
+     */
+    static void write(LogConfig config, String message) {
+        config.write(event(LogLevel.INFO, message));
+    }
+
+    /**
+     * Creates a log entry.
+     * @param level the level
+     * @param message the message
+     * @return the entry
+     */
+    static LogEvent event(LogLevel level, String message) {
+        return new LogEvent().set(level, "kpss.klogger.LogConfigTest", message, System.currentTimeMillis(), 0, "main");
+    }
+
+    /**
+     * Gets a path as a JSON string content.
+     * @param path the path
+     * @return the path with its backslashes escaped
+     */
+    static String path(Path path) {
+        return path.toString().replace("\\", "\\\\");
+    }
+
+    /**
+     * Gets a JSON configuration as a stream.
+     * @param json the configuration
+     * @return the stream
+     */
+    static InputStream json(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Gets the names of the current appenders.
+     * @param config the configuration
+     * @return the names, in configuration order
+     */
+    private static List<String> names(LogConfig config) {
+        return config.getSnapshot().getPipeline().getAppenders().stream().map(LogAppender::getName).toList();
+    }
+}
@@ -0,0 +1,193 @@
+package kpss.klogger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests of the binary log files: the entries written by a {@link BinaryOutput} are read back
+ * as they were logged by the {@link LogDecoder}.
+ *
+ * @author POUSSE Kilian
+ */
+class LogDecoderTest {
+
+    /** Temporary directory of the log files */
+    @TempDir
+    Path dir;
+
+    /**
+     * Entries going back in time, negative and large numbers, many arguments, diagnostic context
+     * fields and exceptions are decoded as they were written, across two segments of the file.
+     * @throws IOException if the log file cannot be written or read
+     */
+    @Test
+    void entriesAreDecodedAsWritten() throws IOException {
+        Path log = dir.resolve("trace.klog");
+        List<LogEvent> events = List.of(
+                event(LogLevel.INFO, "first {} {}", 1_700_000_000_123L, 456_789).arg(-1L).arg(Long.MIN_VALUE),
+                // Earlier than the previous entry: negative time delta
+                event(LogLevel.ERROR, "back {}", 1_700_000_000_000L, 1).arg(-0.5),
+                event(LogLevel.DEBUG, "many {} {} {} {}", 1_700_000_000_000L, 1)
+                        .args(new Object[] {null, "text", Integer.MIN_VALUE, 1e300}),
+                event(LogLevel.WARNING, "context", 1_700_000_001_000L, 0)
+                        .mdc(ContextMap.EMPTY.with("tenant", "acme").with("request", "42")),
+                event(LogLevel.CRITICAL, "before epoch", -1L, 999_999));
+        write(log, events.subList(0, 3));
+        write(log, events.subList(3, events.size()));
+
+        LogDecoder decoder = decoder(Files.newInputStream(log));
+        for(LogEvent expected: events) {
+            assertTrue(decoder.next());
+            LogEvent decoded = decoder.getEvent();
+            assertEquals(expected.getLevel(), decoded.getLevel());
+            assertEquals(expected.getContext(), decoded.getContext());
+            assertEquals(expected.getMessage(), decoded.getMessage());
+            assertEquals(expected.getThread(), decoded.getThread());
+            assertEquals(expected.getTimestamp(), decoded.getTimestamp());
+            assertEquals(expected.getNanos(), decoded.getNanos());
+            assertEquals(render(expected), render(decoded));
+            assertEquals(expected.getMdc().size(), decoded.getMdc().size());
+            for(int i = 0; i < expected.getMdc().size(); i++) {
+                assertEquals(expected.getMdc().valueAt(i), decoded.getMdc().get(expected.getMdc().keyAt(i)));
+            }
+        }
+        assertFalse(decoder.next());
+    }
+
+    /**
+     * An exception referring to itself through its suppressed exceptions and causes is decoded
+     * with the same references, each exception being decoded once.
+     * @throws IOException if the log file cannot be written or read
+     */
+    @Test
+    void circularExceptionsAreDecoded() throws IOException {
+        Path log = dir.resolve("thrown.klog");
+        IllegalStateException top = new IllegalStateException("top");
+        IllegalArgumentException cause = new IllegalArgumentException("cause");
+        top.initCause(cause);
+        top.addSuppressed(cause);
+        // The cause refers back to the top exception
+        cause.addSuppressed(top);
+        write(log, List.of(event(LogLevel.ERROR, "failed", 1_700_000_000_000L, 0).thrown(top)));
+
+        LogDecoder decoder = decoder(Files.newInputStream(log));
+        assertTrue(decoder.next());
+        DecodedException decoded = (DecodedException) decoder.getEvent().getThrown();
+        assertEquals("java.lang.IllegalStateException", decoded.getClassName());
+        assertEquals("top", decoded.getMessage());
+        // Frames are printed the same, the class loader and module version being kept when printed
+        assertArrayEquals(Arrays.stream(top.getStackTrace()).map(String::valueOf).toArray(),
+                Arrays.stream(decoded.getStackTrace()).map(String::valueOf).toArray());
+        DecodedException decodedCause = (DecodedException) decoded.getCause();
+        assertEquals("java.lang.IllegalArgumentException", decodedCause.getClassName());
+        assertEquals("cause", decodedCause.getMessage());
+        assertEquals(1, decoded.getSuppressed().length);
+        assertSame(decodedCause, decoded.getSuppressed()[0]);
+        assertEquals(1, decodedCause.getSuppressed().length);
+        assertSame(decoded, decodedCause.getSuppressed()[0]);
+        assertFalse(decoder.next());
+    }
+
+    /**
+     * A memory-mapped file opened again in append mode keeps the records written before, even when
+     * their encoding ends with zeros (no argument, null argument), and its new segment follows them.
+     * @throws IOException if the log file cannot be written or read
+     */
+    @Test
+    void reopenedMappedFileKeepsItsRecords() throws IOException {
+        Path log = dir.resolve("mapped.klog");
+        List<LogEvent> events = List.of(event(LogLevel.INFO, "no argument", 1_700_000_000_000L, 0),
+                event(LogLevel.INFO, "null {}", 1_700_000_000_001L, 0).arg((Object) null),
+                event(LogLevel.INFO, "no argument again", 1_700_000_000_002L, 0));
+        for(LogEvent event: events) {
+            BinaryOutput output = new BinaryOutput(new MappedFileOutput(log.toString(), true, 4096));
+            output.write(event, false);
+            output.close();
+        }
+
+        LogDecoder decoder = decoder(Files.newInputStream(log));
+        StringWriter out = new StringWriter();
+        assertEquals(3, decoder.decode(out));
+        assertEquals("no argument\nnull null\nno argument again\n", out.toString());
+    }
+
+    /**
+     * A file cut within its last entry is decoded up to that entry, then reported as truncated.
+     * @throws IOException if the log file cannot be written or read
+     */
+    @Test
+    void truncatedFileIsDecodedUpToItsLastEntry() throws IOException {
+        Path log = dir.resolve("cut.klog");
+        write(log, List.of(event(LogLevel.INFO, "kept", 1_700_000_000_000L, 0),
+                event(LogLevel.INFO, "cut", 1_700_000_000_001L, 0)));
+        byte[] bytes = Files.readAllBytes(log);
+
+        LogDecoder decoder = decoder(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 2)));
+        StringWriter out = new StringWriter();
+        assertThrows(EOFException.class, () -> decoder.decode(out));
+        assertEquals("kept\n", out.toString());
+    }
+
+    /**
+     * Creates a log entry of the test thread.
+     * @param level the log level
+     * @param message the message pattern
+     * @param timestamp the creation time in milliseconds since the epoch
+     * @param nanos the nanoseconds within the creation millisecond
+     * @return the entry
+     */
+    private static LogEvent event(LogLevel level, String message, long timestamp, int nanos) {
+        return new LogEvent().set(level, "kpss.klogger.LogDecoderTest", message, timestamp, nanos, "main");
+    }
+
+    /**
+     * Writes log entries as a new segment of a binary log file.
+     * @param log the path to the log file
+     * @param events the entries
+     * @throws IOException if the log file cannot be written
+     */
+    private static void write(Path log, List<LogEvent> events) throws IOException {
+        BinaryOutput output = new BinaryOutput(new ChannelFileOutput(log.toString(), true, 8192, 0, false));
+        for(LogEvent event: events) {
+            output.write(event, false);
+        }
+        output.close();
+    }
+
+    /**
+     * Creates a decoder writing the rendered message of each entry.
+     * @param in the binary log file
+     * @return the decoder
+     */
+    private static LogDecoder decoder(InputStream in) {
+        return new LogDecoder(in, LogLayout.compile("{message}", false, ExceptionFormat.DEFAULT), new TimestampFormat("yyyy-MM-dd"));
+    }
+
+    /**
+     * Renders the message of an entry with its arguments.
+     * @param event the entry
+     * @return the rendered message
+     */
+    private static String render(LogEvent event) {
+        StringBuilder out = new StringBuilder();
+        LogLayout.compile("{message}", false, ExceptionFormat.DEFAULT).render(out, event, new TimestampFormat("yyyy-MM-dd"), null);
+        return out.toString();
+    }
+}
@@ -0,0 +1,116 @@
+package kpss.klogger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests of the recycled log events: the steady-state logging path allocates nothing.
+ *
+ * @author POUSSE Kilian
+ */
+class LogEventTest {
+
+    /** Number of entries written per measurement */
+    private static final int ENTRIES = 100_000;
+
+    /** Temporary directory of the log files */
+    @TempDir
+    Path dir;
+
+    /**
+     * A thread gets its recycled event back once released, and a new one for a nested log call.
+     */
+    @Test
+    void eventsAreRecycledPerThread() {
+        LogEvent event = LogEvent.acquire();
+        LogEvent nested = LogEvent.acquire();
+        assertNotSame(event, nested);
+        event.release();
+        assertSame(event, LogEvent.acquire());
+        event.release();
+    }
+
+    /**
+     * A message supplier is called once, by the writer thread if every sink is asynchronous,
+     * and by the caller when a synchronous sink renders the entry.
+     * @throws IOException if the log files cannot be opened or read
+     */
+    @Test
+    void supplierIsCalledOnceWhereTheEntryIsRendered() throws IOException {
+        Path log = dir.resolve("supplied.log");
+        Path copy = dir.resolve("copy.log");
+        LogConfig config = new LogConfig();
+        config.init(LogConfigTest.json("{ \"async\": { \"enabled\": true }, \"sinks\": ["
+                + " { \"type\": \"file\", \"file\": \"" + LogConfigTest.path(log) + "\", \"format\": \"{message}\" },"
+                + " { \"type\": \"file\", \"name\": \"copy\", \"file\": \"" + LogConfigTest.path(copy) + "\", \"format\": \"{message}\" } ] }"));
+        AtomicInteger calls = new AtomicInteger();
+        Supplier<String> message = () -> calls.incrementAndGet() + " " + Thread.currentThread().getName();
+        config.write(LogConfigTest.event(LogLevel.INFO, null).message(message));
+        config.flush();
+        assertEquals(List.of("1 KLogger-writer"), Files.readAllLines(log));
+        assertEquals(List.of("1 KLogger-writer"), Files.readAllLines(copy));
+
+        config.setAsyncMode(false);
+        config.write(LogConfigTest.event(LogLevel.INFO, null).message(message));
+        config.flush();
+        assertEquals("2 " + Thread.currentThread().getName(), Files.readAllLines(log).get(1));
+        assertEquals(2, calls.get());
+    }
+
+    /**
+     * Writing recycled events with a message pattern and arguments to a file sink allocates nothing
+     * once warmed up, as counted by the per-thread allocation counter of the JVM.
+     * @throws IOException if the log file cannot be opened or read
+     */
+    @Test
+    void recycledEventPathDoesNotAllocate() throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        Path log = dir.resolve("alloc.log");
+        LogConfig config = new LogConfig();
+        config.init(LogConfigTest.json("{ \"caller\": \"never\", \"formats\": { \"date\": \"yyyy-MM-dd HH:mm:ss.SSS\" },"
+                + " \"sinks\": [ { \"type\": \"file\", \"file\": \"" + LogConfigTest.path(log) + "\","
+                + " \"format\": \"{date} [{type}][{thread}]: {message}\" } ] }"));
+        String thread = Thread.currentThread().getName();
+        long id = Thread.currentThread().getId();
+
+        long allocated = Long.MAX_VALUE;
+        for(int round = 0; round < 5; round++) {
+            long before = threads.getThreadAllocatedBytes(id);
+            for(int i = 0; i < ENTRIES; i++) {
+                LogEvent event = LogEvent.acquire().set(LogLevel.INFO, "kpss.klogger.LogEventTest",
+                        "Request {} took {} ms", System.currentTimeMillis(), 0, thread).arg("GET /").arg(i);
+                try {
+                    config.write(event);
+                }
+                finally {
+                    event.release();
+                }
+            }
+            allocated = Math.min(allocated, threads.getThreadAllocatedBytes(id) - before);
+        }
+        config.flush();
+
+        // Only the date of each new second is rendered into a new string
+        assertTrue(allocated < ENTRIES / 10, "Allocated " + allocated + " bytes for " + ENTRIES + " entries");
+        List<String> lines = Files.readAllLines(log);
+        assertEquals(5 * ENTRIES, lines.size());
+        assertTrue(lines.get(lines.size() - 1).endsWith("]: Request GET / took " + (ENTRIES - 1) + " ms"));
+    }
+}
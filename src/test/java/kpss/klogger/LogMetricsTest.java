@@ -0,0 +1,108 @@
+package kpss.klogger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests of the logger metrics: entries, bytes and dropped entries are counted,
+ * and the metrics are readable through JMX.
+ *
+ * @author POUSSE Kilian
+ */
+class LogMetricsTest {
+
+    /** Temporary directory of the log files */
+    @TempDir
+    Path dir;
+
+    /**
+     * Written entries are counted per level with the bytes written to the log file,
+     * entries over the rate limit are counted as dropped, and a reset clears the counts.
+     * @throws IOException if the log file cannot be opened or read
+     */
+    @Test
+    void writtenAndDroppedEntriesAreCounted() throws IOException {
+        Path log = dir.resolve("metrics.log");
+        LogConfig config = new LogConfig();
+        config.init(LogConfigTest.json("{ \"rateLimit\": { \"limit\": 3, \"interval\": 60000 }, \"sinks\": [ { \"type\": \"file\","
+                + " \"file\": \"" + LogConfigTest.path(log) + "\", \"format\": \"{message}\" } ] }"));
+        for(int i = 0; i < 5; i++) {
+            LogConfigTest.write(config, "entry " + i);
+        }
+        config.write(LogConfigTest.event(LogLevel.CRITICAL, "critical"));
+        config.flush();
+
+        LogStats stats = config.stats();
+        assertEquals(3, stats.getEvents(LogLevel.INFO));
+        assertEquals(1, stats.getEvents(LogLevel.CRITICAL));
+        // The summary of the dropped entries written by the flush
+        assertEquals(1, stats.getEvents(LogLevel.WARNING));
+        assertEquals(0, stats.getEvents(LogLevel.ERROR));
+        assertEquals(2, stats.getRateLimited());
+        assertEquals(0, stats.getWriteErrors());
+        assertEquals(Files.size(log), stats.getBytesWritten());
+        assertEquals(5, stats.getWriteLatency().getCount());
+        assertEquals(5, stats.getFormatLatency().getCount());
+
+        config.getMetrics().reset();
+        stats = config.stats();
+        assertEquals(0, stats.getTotalEvents());
+        assertEquals(0, stats.getBytesWritten());
+        assertEquals(0, stats.getWriteLatency().getCount());
+    }
+
+    /**
+     * Without timing, entries are counted but no latency is recorded.
+     * @throws IOException if the log file cannot be opened
+     */
+    @Test
+    void timingCanBeDisabled() throws IOException {
+        LogConfig config = new LogConfig();
+        config.init(LogConfigTest.json("{ \"metrics\": { \"timing\": false }, \"sinks\": [ { \"type\": \"file\","
+                + " \"file\": \"" + LogConfigTest.path(dir.resolve("untimed.log")) + "\" } ] }"));
+        LogConfigTest.write(config, "entry");
+
+        LogStats stats = config.stats();
+        assertEquals(1, stats.getTotalEvents());
+        assertEquals(0, stats.getWriteLatency().getCount());
+        assertEquals(0, stats.getFormatLatency().getCount());
+    }
+
+    /**
+     * Registered metrics are read through the platform MBean server, and reset through it.
+     * @throws JMException if the metrics cannot be read through JMX
+     */
+    @Test
+    void metricsAreReadableThroughJmx() throws JMException {
+        LogMetrics metrics = new LogMetrics();
+        metrics.event(LogLevel.WARNING);
+        metrics.event(LogLevel.WARNING);
+        metrics.bytes(10);
+        metrics.register(true, () -> metrics.snapshot(null));
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(LogMetrics.OBJECT_NAME);
+        try {
+            assertEquals(2L, server.getAttribute(name, "WarningEvents"));
+            assertEquals(2L, server.getAttribute(name, "TotalEvents"));
+            assertEquals(10L, server.getAttribute(name, "BytesWritten"));
+            server.invoke(name, "reset", null, null);
+            assertEquals(0L, server.getAttribute(name, "TotalEvents"));
+        }
+        finally {
+            metrics.register(false, null);
+        }
+        assertFalse(server.isRegistered(name));
+    }
+}
@@ -0,0 +1,183 @@
+package kpss.klogger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the pipeline of appenders: entries are rendered once per layout, only when an appender
+ * accepts them, and handed to the appenders of the requested writing mode.
+ *
+ * @author POUSSE Kilian
+ */
+class LogPipelineTest {
+
+    /** Formatter of the date */
+    private static final TimestampFormat DATE = new TimestampFormat("yyyy-MM-dd");
+
+    /** Configuration resolving the closed appenders */
+    private final LogConfig config = new LogConfig();
+
+    /**
+     * Appenders sharing a layout get the same line, rendered once; another layout renders its own.
+     */
+    @Test
+    void entryIsRenderedOncePerLayout() {
+        Counting shared = new Counting("{type} {message}");
+        Counting other = new Counting("{message}");
+        Recording first = new Recording("first", shared, null, false);
+        Recording second = new Recording("second", shared, null, false);
+        Recording third = new Recording("third", other, null, false);
+        LogPipeline pipeline = new LogPipeline(List.of(first, second, third), null, false);
+
+        pipeline.write(LogConfigTest.event(LogLevel.INFO, "hello"), DATE, true, true, config);
+        assertEquals(1, shared.renders);
+        assertEquals(1, other.renders);
+        assertEquals(List.of("INFO hello"), first.lines);
+        assertEquals(List.of("INFO hello"), second.lines);
+        assertEquals(List.of("hello"), third.lines);
+    }
+
+    /**
+     * An entry below the threshold of every appender of a layout is not rendered with that layout,
+     * and a binary appender is handed the entry without rendering it.
+     */
+    @Test
+    void filteredAndBinaryEntriesAreNotRendered() {
+        Counting layout = new Counting("{message}");
+        Recording warnings = new Recording("warnings", layout, LogLevel.WARNING, false);
+        Recording errors = new Recording("errors", layout, LogLevel.ERROR, false);
+        Recording binary = new Recording("binary", new Counting("{message}"), null, false) {
+
+            @Override
+            boolean isBinary() {
+                return true;
+            }
+        };
+        LogPipeline pipeline = new LogPipeline(List.of(warnings, errors, binary), null, false);
+
+        pipeline.write(LogConfigTest.event(LogLevel.INFO, "info"), DATE, true, true, config);
+        assertEquals(0, layout.renders);
+        assertEquals(0, ((Counting) binary.getLayout()).renders);
+        assertEquals(1, binary.lines.size());
+        assertNull(binary.lines.get(0));
+
+        pipeline.write(LogConfigTest.event(LogLevel.WARNING, "warning"), DATE, true, true, config);
+        assertEquals(1, layout.renders);
+        assertEquals(List.of("warning"), warnings.lines);
+        assertEquals(List.of(), errors.lines);
+    }
+
+    /**
+     * The calling thread writes the synchronous appenders and the writer thread the asynchronous ones,
+     * or all of them in asynchronous mode.
+     */
+    @Test
+    void appendersAreWrittenInTheirMode() {
+        Counting layout = new Counting("{message}");
+        Recording sync = new Recording("sync", layout, null, false);
+        Recording async = new Recording("async", layout, null, true);
+        LogPipeline pipeline = new LogPipeline(List.of(sync, async), null, false);
+        assertTrue(pipeline.hasAsync());
+
+        pipeline.write(LogConfigTest.event(LogLevel.INFO, "caller"), DATE, true, false, config);
+        pipeline.write(LogConfigTest.event(LogLevel.INFO, "writer"), DATE, false, true, config);
+        assertEquals(List.of("caller"), sync.lines);
+        assertEquals(List.of("writer"), async.lines);
+
+        LogPipeline all = pipeline.withAsync(true);
+        all.write(LogConfigTest.event(LogLevel.INFO, "caller again"), DATE, true, false, config);
+        all.write(LogConfigTest.event(LogLevel.INFO, "all"), DATE, false, true, config);
+        assertEquals(List.of("caller", "all"), sync.lines);
+        assertEquals(List.of("writer", "all"), async.lines);
+        assertFalse(new LogPipeline(List.of(sync), null, false).hasAsync());
+    }
+
+    /**
+     * Adding an appender replaces the one with the same name in place, and the pipelines are immutable.
+     */
+    @Test
+    void appendersAreReplacedByName() {
+        Counting layout = new Counting("{message}");
+        Recording first = new Recording("first", layout, null, false);
+        Recording second = new Recording("second", layout, null, false);
+        Recording replaced = new Recording("first", layout, null, false);
+        LogPipeline pipeline = new LogPipeline(List.of(first, second), null, false);
+
+        LogPipeline changed = pipeline.with(replaced);
+        assertEquals(List.of(replaced, second), changed.getAppenders());
+        assertEquals(List.of(first, second), pipeline.getAppenders());
+        assertSame(replaced, changed.get("first"));
+        assertEquals(List.of(second), changed.without("first").getAppenders());
+        assertNull(changed.without("first").get("first"));
+    }
+
+    /**
+     * Counting is a text layout counting the entries it renders.
+     */
+    private static final class Counting implements LogLayout {
+
+        /** Rendering layout */
+        private final LogLayout layout;
+
+        /** Number of rendered entries */
+        int renders = 0;
+
+        /**
+         * Creates a counting layout.
+         * @param pattern the log format pattern
+         */
+        Counting(String pattern) {
+            this.layout = LogLayout.compile(pattern, false, ExceptionFormat.DEFAULT);
+        }
+
+        @Override
+        public boolean uses(int field) {
+            return layout.uses(field);
+        }
+
+        @Override
+        public String getPattern() {
+            return layout.getPattern();
+        }
+
+        @Override
+        public void render(StringBuilder out, LogEvent event, TimestampFormat dateFormat, ColorScheme colors) {
+            renders++;
+            layout.render(out, event, dateFormat, colors);
+        }
+    }
+
+    /**
+     * Recording is an appender keeping the lines it is handed.
+     */
+    private static class Recording extends LogAppender {
+
+        /** Lines handed to the appender, null for the entries handed without rendering */
+        final List<String> lines = new ArrayList<>();
+
+        /**
+         * Creates a recording appender.
+         * @param name the name of the appender
+         * @param layout the layout of the log entries
+         * @param threshold the least severe level written, null to write every entry
+         * @param async true to be written by the writer thread, false to be written by the caller
+         */
+        Recording(String name, LogLayout layout, LogLevel threshold, boolean async) {
+            super(name, layout, threshold, async);
+        }
+
+        @Override
+        int append(CharSequence line, LogEvent event) {
+            lines.add(line == null ? null : line.toString());
+            return 0;
+        }
+    }
+}
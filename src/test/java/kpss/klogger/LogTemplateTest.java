@@ -0,0 +1,76 @@
+package kpss.klogger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the compiled log formats: field references, escaped braces and unknown placeholders.
+ *
+ * @author POUSSE Kilian
+ */
+class LogTemplateTest {
+
+    /**
+     * Known fields are replaced by their value, everything else is written as it is.
+     */
+    @Test
+    void fieldsAreReplaced() {
+        assertEquals("[INFO] kpss.klogger.LogConfigTest (main): hello",
+                render("[{type}] {context} ({thread}): {message}", false, "hello"));
+        assertEquals("no field", render("no field", false, "hello"));
+        assertEquals("hellohello", render("{message}{message}", false, "hello"));
+    }
+
+    /**
+     * With escapes, doubled braces are written as one brace and never start a placeholder.
+     */
+    @Test
+    void doubledBracesAreEscaped() {
+        assertEquals("{type} INFO {}", render("{{type}} {type} {{}}", true, "hello"));
+        assertEquals("{{}} x", render("{{}} {message}", false, "x"));
+        // Without escapes, the inner placeholder is still a field
+        assertEquals("{INFO}", render("{{type}}", false, "hello"));
+        // A single closing brace stays as it is
+        assertEquals("} hello", render("} {message}", true, "hello"));
+    }
+
+    /**
+     * Unknown, empty and unterminated placeholders are kept verbatim as literal text.
+     */
+    @Test
+    void unknownPlaceholdersAreLiteral() {
+        assertEquals("{foo} hello {} {mdc.}", render("{foo} {message} {} {mdc.}", true, "hello"));
+        assertEquals("hello {message", render("{message} {message", true, "hello"));
+        assertEquals("{TYPE} {Message}", render("{TYPE} {Message}", true, "hello"));
+    }
+
+    /**
+     * A template only reports the fields it references.
+     */
+    @Test
+    void usedFieldsAreKnown() {
+        LogTemplate template = new LogTemplate("{type} {foo} {mdc.user}", true, ExceptionFormat.DEFAULT);
+        assertTrue(template.uses(LogTemplate.TYPE));
+        assertTrue(template.uses(LogTemplate.MDC));
+        assertFalse(template.uses(LogTemplate.MESSAGE));
+        assertFalse(template.uses(LogTemplate.DATE));
+        assertFalse(new LogTemplate("{{date}}", true, ExceptionFormat.DEFAULT).uses(LogTemplate.DATE));
+    }
+
+    /**
+     * Renders an INFO entry without color.
+     * @param pattern the log format pattern
+     * @param escapes true to read "{{" and "}}" as literal braces
+     * @param message the message of the entry
+     * @return the rendered entry
+     */
+    private static String render(String pattern, boolean escapes, String message) {
+        StringBuilder out = new StringBuilder();
+        new LogTemplate(pattern, escapes, ExceptionFormat.DEFAULT)
+                .render(out, LogConfigTest.event(LogLevel.INFO, message), new TimestampFormat("yyyy"), null);
+        return out.toString();
+    }
+}
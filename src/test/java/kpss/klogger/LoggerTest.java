@@ -0,0 +1,108 @@
+package kpss.klogger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests of the cached named loggers: one logger per name, whose cached threshold follows
+ * the level changes and configuration reloads.
+ *
+ * @author POUSSE Kilian
+ */
+class LoggerTest {
+
+    /** Name of the logger with a level override in the configuration */
+    private static final String QUIET = "kpss.klogger.quiet.Service";
+
+    /** Temporary directory of the log files */
+    @TempDir
+    Path dir;
+
+    /**
+     * Restores the default configuration of the static logger.
+     * @throws IOException never, the configuration is valid
+     */
+    @AfterEach
+    void restore() throws IOException {
+        KLog.setConfig(LogConfigTest.json("{ }"));
+        KLog.setLevel(LogLevel.INFO);
+    }
+
+    /**
+     * The same logger is returned for a name, whether it is given as a class or as a string.
+     */
+    @Test
+    void loggersAreCachedByName() {
+        Logger logger = KLog.getLogger(LoggerTest.class);
+        assertSame(logger, KLog.getLogger(LoggerTest.class));
+        assertSame(logger, KLog.getLogger("kpss.klogger.LoggerTest"));
+        assertEquals("kpss.klogger.LoggerTest", logger.getName());
+        assertNotSame(logger, KLog.getLogger(QUIET));
+    }
+
+    /**
+     * The cached threshold of a logger follows the global level, the overrides of its name and its
+     * parents, and the levels of a loaded configuration.
+     * @throws IOException if the configuration cannot be loaded
+     */
+    @Test
+    void thresholdFollowsTheLevelChanges() throws IOException {
+        Logger logger = KLog.getLogger("kpss.klogger.cached.Service");
+        KLog.setLevel(LogLevel.INFO);
+        assertFalse(logger.isEnabled(LogLevel.DEBUG));
+        assertTrue(logger.isEnabled(LogLevel.INFO));
+
+        KLog.setLevel("kpss.klogger.cached", LogLevel.DEBUG);
+        assertTrue(logger.isEnabled(LogLevel.DEBUG));
+        KLog.setLevel("kpss.klogger.cached.Service", LogLevel.ERROR);
+        assertFalse(logger.isEnabled(LogLevel.WARNING));
+        KLog.setLevel("kpss.klogger.cached.Service", null);
+        assertTrue(logger.isEnabled(LogLevel.DEBUG));
+        KLog.setLevel("kpss.klogger.cached", null);
+        assertFalse(logger.isEnabled(LogLevel.DEBUG));
+
+        KLog.setConfig(LogConfigTest.json("{ \"level\": \"WARNING\", \"levels\": { \"kpss.klogger.cached\": \"DEBUG\" } }"));
+        assertTrue(logger.isEnabled(LogLevel.DEBUG));
+        assertFalse(KLog.getLogger("kpss.klogger.Other").isEnabled(LogLevel.INFO));
+    }
+
+    /**
+     * Entries of a logger have its name as context; the entries below its threshold are not written
+     * and their message suppliers are not called.
+     * @throws IOException if the configuration cannot be loaded or the log file cannot be read
+     */
+    @Test
+    void entriesAreWrittenWithTheLoggerName() throws IOException {
+        Path log = dir.resolve("loggers.log");
+        KLog.setConfig(LogConfigTest.json("{ \"levels\": { \"kpss.klogger.quiet\": \"WARNING\" }, \"sinks\": [ { \"type\": \"file\","
+                + " \"file\": \"" + LogConfigTest.path(log) + "\", \"format\": \"{context} {type} {message}\" } ] }"));
+        Logger service = KLog.getLogger("kpss.klogger.loud.Service");
+        Logger quiet = KLog.getLogger(QUIET);
+        AtomicInteger calls = new AtomicInteger();
+
+        service.log("started {}", 1);
+        service.debug(() -> "debug " + calls.incrementAndGet());
+        quiet.log("hidden {}", 2L);
+        quiet.log(() -> "hidden " + calls.incrementAndGet());
+        quiet.warning("shown {} {}", "a", 3.5);
+        KLog.flush();
+
+        assertEquals(0, calls.get());
+        // Without the entry of the loaded configuration
+        List<String> lines = Files.readAllLines(log).stream().filter(line -> line.contains(".Service ")).toList();
+        assertEquals(List.of("kpss.klogger.loud.Service INFO started 1", QUIET + " WARNING shown a 3.5"), lines);
+    }
+}
@@ -0,0 +1,84 @@
+package kpss.klogger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests of the memory-mapped log files: chunks are unmapped, and the file is truncated to its content.
+ *
+ * @author POUSSE Kilian
+ */
+class MappedFileOutputTest {
+
+    /** Memory mappings of the process, on Linux */
+    private static final Path MAPS = Path.of("/proc/self/maps");
+
+    /** Temporary directory of the log files */
+    @TempDir
+    Path dir;
+
+    /**
+     * Lines written over several chunks are all in the file once closed, without trailing zeros,
+     * and a file opened again in append mode continues it.
+     * @throws IOException if the log file cannot be opened or read
+     */
+    @Test
+    void closedFileHoldsTheWrittenLines() throws IOException {
+        Path log = dir.resolve("mapped.log");
+        List<String> lines = new ArrayList<>();
+        MappedFileOutput output = new MappedFileOutput(log.toString(), false, 4096);
+        long written = 0;
+        for(int i = 0; i < 1000; i++) {
+            lines.add("line " + i);
+            written += output.write(lines.get(i), false);
+        }
+        output.close();
+        assertEquals(written, Files.size(log));
+
+        output = new MappedFileOutput(log.toString(), true, 4096);
+        output.write("appended", false);
+        output.close();
+        lines.add("appended");
+        assertEquals(lines, Files.readAllLines(log));
+    }
+
+    /**
+     * The chunks left behind and the last chunk are unmapped by the time the file is closed,
+     * instead of waiting for the garbage collector.
+     * @throws IOException if the log file cannot be opened or the mappings cannot be read
+     */
+    @Test
+    void chunksAreUnmapped() throws IOException {
+        assumeTrue(Files.isReadable(MAPS));
+        Path log = dir.resolve("unmapped.log");
+        MappedFileOutput output = new MappedFileOutput(log.toString(), false, 4096);
+        for(int i = 0; i < 1000; i++) {
+            output.write("line " + i, false);
+        }
+        assertEquals(1, mappings(log));
+        output.close();
+        assertEquals(0, mappings(log));
+        assertFalse(Files.readString(log).contains("\0"));
+    }
+
+    /**
+     * Counts the memory mappings of a file.
+     * @param file the file
+     * @return the number of mapped regions of the file
+     * @throws IOException if the mappings cannot be read
+     */
+    private static long mappings(Path file) throws IOException {
+        String path = file.toRealPath().toString();
+        return Files.readAllLines(MAPS).stream().filter(line -> line.endsWith(path)).count();
+    }
+}
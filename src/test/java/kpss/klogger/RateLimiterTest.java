@@ -0,0 +1,95 @@
+package kpss.klogger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests of the rate limit: entries over the limit are dropped and reported once.
+ *
+ * @author POUSSE Kilian
+ */
+class RateLimiterTest {
+
+    /** Temporary directory of the log files */
+    @TempDir
+    Path dir;
+
+    /**
+     * Entries over the limit are dropped until the interval ends; the dropped entries of a call site
+     * are reported by its next entry, or by a summary once its interval ended.
+     */
+    @Test
+    void droppedEntriesAreReportedOnce() {
+        RateLimiter limiter = new RateLimiter(2, 1000);
+        List<Long> results = new ArrayList<>();
+        for(int i = 0; i < 5; i++) {
+            results.add(limiter.acquire("a", null, 0));
+            limiter.acquire("b", null, 0);
+        }
+        assertEquals(List.of(0L, 0L, -1L, -1L, -1L), results);
+
+        List<String> summaries = new ArrayList<>();
+        limiter.summarize(999, false, (site, pattern, dropped) -> summaries.add(site + "=" + dropped));
+        assertEquals(List.of(), summaries);
+        // Site "a" logs again after its interval: its next entry reports the dropped ones
+        assertEquals(3, limiter.acquire("a", null, 1000));
+        limiter.summarize(1000, false, (site, pattern, dropped) -> summaries.add(site + "=" + dropped));
+        assertEquals(List.of("b=3"), summaries);
+        limiter.summarize(2000, false, (site, pattern, dropped) -> summaries.add(site + "=" + dropped));
+        assertEquals(List.of("b=3"), summaries);
+    }
+
+    /**
+     * The entries dropped by a call site that stopped logging are reported on flush.
+     * @throws IOException if the log file cannot be opened or read
+     */
+    @Test
+    void flushReportsTheDroppedEntries() throws IOException {
+        Path log = dir.resolve("limited.log");
+        LogConfig config = new LogConfig();
+        config.init(LogConfigTest.json("{ \"rateLimit\": { \"limit\": 2, \"interval\": 60000 }, \"sinks\": [ { \"type\": \"file\","
+                + " \"file\": \"" + LogConfigTest.path(log) + "\", \"format\": \"{context} {message}\" } ] }"));
+        for(int i = 0; i < 5; i++) {
+            LogConfigTest.write(config, "entry " + i);
+        }
+        config.flush();
+        config.flush();
+        assertEquals(List.of("kpss.klogger.LogConfigTest entry 0", "kpss.klogger.LogConfigTest entry 1",
+                "kpss.klogger.LogConfigTest 3 log entries suppressed by the rate limit in the last 60000 ms"),
+                Files.readAllLines(log));
+    }
+
+    /**
+     * The rate limit does not capture the caller: with the caller capture off, entries keep an empty
+     * context and are limited per message pattern.
+     * @throws IOException if the log file cannot be opened or read
+     */
+    @Test
+    void entriesWithoutContextAreLimitedPerPattern() throws IOException {
+        Path log = dir.resolve("patterns.log");
+        LogConfig config = new LogConfig();
+        config.init(LogConfigTest.json("{ \"caller\": \"never\", \"rateLimit\": { \"limit\": 1, \"interval\": 60000 },"
+                + " \"sinks\": [ { \"type\": \"file\", \"file\": \"" + LogConfigTest.path(log) + "\","
+                + " \"format\": \"[{context}] {message}\" } ] }"));
+        assertFalse(config.getSnapshot().needsContext(LogLevel.INFO));
+        for(int i = 0; i < 3; i++) {
+            config.write(new LogEvent().set(LogLevel.INFO, "", "retry {}", i, 0, "main").arg(i));
+            config.write(new LogEvent().set(LogLevel.INFO, "", "timeout {}", i, 0, "main").arg(i));
+        }
+        config.flush();
+        List<String> lines = Files.readAllLines(log);
+        assertEquals(List.of("[] retry 0", "[] timeout 0"), lines.subList(0, 2));
+        assertEquals(List.of("[] 2 log entries \"retry {}\" suppressed by the rate limit in the last 60000 ms",
+                "[] 2 log entries \"timeout {}\" suppressed by the rate limit in the last 60000 ms"),
+                lines.subList(2, lines.size()).stream().sorted().toList());
+    }
+}
@@ -0,0 +1,123 @@
+package kpss.klogger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests of the rolling log files: rolls are all or nothing, and only the rolled files are deleted.
+ *
+ * @author POUSSE Kilian
+ */
+class RollingFileOutputTest {
+
+    /** Temporary directory of the log files */
+    @TempDir
+    Path dir;
+
+    /**
+     * A roll whose new file cannot be opened keeps writing to the active file, under its name,
+     * and is tried again later.
+     * @throws IOException if the log file cannot be opened or read
+     */
+    @Test
+    void failedRollKeepsTheActiveFile() throws IOException {
+        Path log = dir.resolve("app.log");
+        int[] opened = {0};
+        RollingFileOutput output = new RollingFileOutput(log.toString(), false, (path, append) -> {
+            if(opened[0]++ > 0) {
+                throw new IOException("Cannot open " + path);
+            }
+            return new ChannelFileOutput(path, append, 8192, 0, true);
+        }, 10, null, 0, 0, false);
+        output.write("first line", false);
+        output.write("second line", false);
+        output.flush(false);
+
+        assertEquals(List.of("first line", "second line"), Files.readAllLines(log));
+        assertEquals(List.of("app.log"), names());
+        output.close();
+    }
+
+    /**
+     * A file rolled by size in a daily schedule is named after the start of the day it covers.
+     * @throws IOException if the log file cannot be opened or read
+     */
+    @Test
+    void rolledFileIsNamedAfterItsPeriod() throws IOException {
+        Path log = dir.resolve("app.log");
+        RollingFileOutput output = open(log, "daily", 0);
+        output.write("first line", false);
+        output.write("second line", false);
+        output.close();
+
+        String day = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+        List<String> names = names();
+        // Unless the day ended meanwhile
+        if(names.contains("app.log." + day + "-000000")) {
+            assertEquals(List.of("first line"), Files.readAllLines(dir.resolve("app.log." + day + "-000000")));
+            assertEquals(List.of("second line"), Files.readAllLines(log));
+        }
+        assertEquals(2, names.size());
+    }
+
+    /**
+     * Expired rolled files are deleted, the files only sharing the prefix of the log file are not.
+     * @throws Exception if a log file cannot be opened or listed
+     */
+    @Test
+    void onlyRolledFilesExpire() throws Exception {
+        Path log = dir.resolve("app.log");
+        Files.writeString(dir.resolve("app.log.bak"), "backup");
+        Files.writeString(dir.resolve("app.log.2020-01-01-000000.txt"), "notes");
+        RollingFileOutput output = open(log, null, 2);
+        for(int i = 0; i < 5; i++) {
+            output.write("line " + i, false);
+        }
+        output.close();
+
+        // The expired files are deleted by the background thread
+        long deadline = System.currentTimeMillis() + 5000;
+        while(names().size() > 5 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        List<String> names = names();
+        assertEquals(5, names.size(), names::toString);
+        assertTrue(names.containsAll(List.of("app.log", "app.log.bak", "app.log.2020-01-01-000000.txt")));
+        assertEquals(List.of("line 4"), Files.readAllLines(log));
+    }
+
+    /**
+     * Opens a log file rolled after each line.
+     * @param log the path to the log file
+     * @param schedule the roll schedule, null for none
+     * @param maxFiles the maximum number of rolled files kept, 0 for no limit
+     * @return the output
+     * @throws IOException if the file cannot be opened
+     */
+    private static RollingFileOutput open(Path log, String schedule, int maxFiles) throws IOException {
+        return new RollingFileOutput(log.toString(), false, (path, append) -> new ChannelFileOutput(path, append, 8192, 0, true),
+                5, schedule, maxFiles, 0, false);
+    }
+
+    /**
+     * Lists the file names of the temporary directory.
+     * @return the sorted names
+     * @throws IOException if the directory cannot be listed
+     */
+    private List<String> names() throws IOException {
+        try(Stream<Path> files = Files.list(dir)) {
+            return files.map(file -> file.getFileName().toString()).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package kpss.klogger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests of the routing log files: evicted files are opened again in append mode,
+ * and only the files of a previous run are truncated.
+ *
+ * @author POUSSE Kilian
+ */
+class RoutingAppenderTest {
+
+    /** Temporary directory of the log files */
+    @TempDir
+    Path dir;
+
+    /**
+     * With a single open file, every change of route evicts the other file: it keeps its entries
+     * when it is opened again, while the content left by a previous run is truncated.
+     * @throws IOException if a log file cannot be opened or read
+     */
+    @Test
+    void evictedFilesAreReopenedInAppendMode() throws IOException {
+        FileTime past = FileTime.from(Instant.now().minus(1, ChronoUnit.HOURS));
+        for(String route: List.of("a", "b")) {
+            Path old = dir.resolve(route + ".log");
+            Files.writeString(old, "previous run\n");
+            Files.setLastModifiedTime(old, past);
+        }
+        LogConfig config = new LogConfig();
+        config.init(LogConfigTest.json("{ \"append\": false, \"sinks\": [ { \"type\": \"routing\", \"file\": \""
+                + LogConfigTest.path(dir) + "/{mdc.tenant}.log\", \"maxOpen\": 1, \"format\": \"{message}\" } ] }"));
+        for(String route: List.of("a", "b", "a", "c", "b", "a")) {
+            config.write(LogConfigTest.event(LogLevel.INFO, "to " + route).mdc(ContextMap.EMPTY.with("tenant", route)));
+        }
+        config.write(LogConfigTest.event(LogLevel.INFO, "no route"));
+        config.flush();
+
+        assertEquals(List.of("to a", "to a", "to a"), Files.readAllLines(dir.resolve("a.log")));
+        assertEquals(List.of("to b", "to b"), Files.readAllLines(dir.resolve("b.log")));
+        assertEquals(List.of("to c"), Files.readAllLines(dir.resolve("c.log")));
+        assertEquals(List.of("no route"), Files.readAllLines(dir.resolve("default.log")));
+    }
+}
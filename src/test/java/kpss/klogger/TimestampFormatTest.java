@@ -0,0 +1,65 @@
+package kpss.klogger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Tests of the cached timestamp rendering: the cached text of a second, split around the
+ * fraction digits, must render the same dates as the formatter of the whole pattern.
+ *
+ * @author POUSSE Kilian
+ */
+class TimestampFormatTest {
+
+    /** Rendered times, in milliseconds since the epoch: several per second, and seconds before the epoch */
+    private static final long[] TIMES = { 1_700_000_000_000L, 1_700_000_000_001L, 1_700_000_000_999L, 1_700_000_001_042L,
+            1_700_000_000_500L, 86_399_999L, 0L, -1L, -1_500L };
+
+    /** Nanoseconds within the millisecond of each rendered time */
+    private static final int[] NANOS = { 0, 999_999, 123_456, 7, 0, 500_000, 1, 999_999, 250_000 };
+
+    /**
+     * Every pattern renders the dates of the formatter, whether the cache splits it around the
+     * fraction digits, keeps a text after them, skips quoted letters or caches per millisecond.
+     * @param pattern the date pattern
+     */
+    @ParameterizedTest
+    @ValueSource(strings = { "yyyy-MM-dd HH:mm:ss.SSS", "HH:mm:ss,SSS 'ms on' yyyy-MM-dd", "'at S' HH:mm:ss.SS 'S'",
+            "SSS ss", "ss.SSSSSSSSS", "HH:mm:ss", "ss.SSS.S", "ss 'it''s' S", "HH:mm:ss.nnnnnnnnn" })
+    void cachedTextMatchesTheFormatter(String pattern) {
+        TimestampFormat format = new TimestampFormat(pattern);
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(pattern);
+        for(int i = 0; i < TIMES.length; i++) {
+            StringBuilder out = new StringBuilder("> ");
+            format.render(out, TIMES[i], NANOS[i]);
+            LocalDateTime date = LocalDateTime.ofInstant(Instant.ofEpochMilli(TIMES[i]), ZoneId.systemDefault());
+            String expected = formatter.format(format.needsNanos() ? date.plusNanos(NANOS[i]) : date);
+            assertEquals("> " + expected, out.toString(), pattern + " at " + TIMES[i]);
+        }
+    }
+
+    /**
+     * Only the patterns with sub-millisecond fields need the nanoseconds of the entries;
+     * quoted letters are not fields.
+     */
+    @Test
+    void subMillisecondPatternsNeedNanos() {
+        for(String pattern: List.of("ss.SSSS", "HH:mm:ss.n", "HH:mm:ss.N", TimestampFormat.EPOCH_NANOS)) {
+            assertTrue(new TimestampFormat(pattern).needsNanos(), pattern);
+        }
+        for(String pattern: List.of("ss.SSS", "HH:mm:ss 'n N SSSS'", TimestampFormat.EPOCH_MILLIS)) {
+            assertFalse(new TimestampFormat(pattern).needsNanos(), pattern);
+        }
+    }
+}
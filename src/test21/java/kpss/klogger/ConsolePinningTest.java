@@ -0,0 +1,107 @@
+package kpss.klogger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Tests of the console and file appenders with virtual threads, run on JDK 21 and later with
+ * {@code -Djdk.tracePinnedThreads=full}: the JVM prints the stack of every virtual thread
+ * blocked while pinned to its carrier, with the monitors it holds.
+ *
+ * @author POUSSE Kilian
+ */
+class ConsolePinningTest {
+
+    /** Number of virtual threads */
+    private static final int THREADS = 100_000;
+
+    /** Number of entries per thread */
+    private static final int ENTRIES = 2;
+
+    /** Temporary directory of the log file */
+    @TempDir
+    Path dir;
+
+    /**
+     * Many virtual threads log to a slow console and to a file at once: none of them is pinned
+     * while waiting for the sinks, for a slot of the asynchronous ring buffer or for the writer
+     * thread, and every entry is written on its own line.
+     * @param async true to write the sinks from the writer thread, false to write them from the callers
+     * @throws IOException if the configuration cannot be loaded or the log file cannot be read
+     * @throws InterruptedException if the test is interrupted
+     */
+    @ParameterizedTest
+    @ValueSource(booleans = { false, true })
+    void virtualThreadsAreNotPinned(boolean async) throws IOException, InterruptedException {
+        Path log = dir.resolve("pinning.log");
+        PrintStream console = System.out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        // A slow terminal: a thread holding a monitor while writing is reported as pinned
+        OutputStream terminal = new OutputStream() {
+
+            @Override
+            public void write(int b) {
+                captured.write(b);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) {
+                LockSupport.parkNanos(10_000);
+                captured.write(bytes, offset, length);
+            }
+        };
+        System.setOut(new PrintStream(terminal, true, StandardCharsets.UTF_8));
+        try {
+            LogConfig config = new LogConfig();
+            // A small ring buffer, so that callers also wait for free slots
+            config.init(LogConfigTest.json("{ \"caller\": \"never\", \"async\": { \"enabled\": " + async + ", \"bufferSize\": 256 },"
+                    + " \"sinks\": [ { \"type\": \"console\", \"format\": \"{message}\", \"color\": false },"
+                    + " { \"type\": \"file\", \"file\": \"" + LogConfigTest.path(log) + "\", \"format\": \"{message}\" } ] }"));
+            List<Thread> threads = new ArrayList<>();
+            for(int t = 0; t < THREADS; t++) {
+                String prefix = "v" + t + " ";
+                threads.add(Thread.ofVirtual().start(() -> {
+                    for(int i = 0; i < ENTRIES; i++) {
+                        LogConfigTest.write(config, prefix + i);
+                    }
+                }));
+            }
+            // Pinned carriers deadlock the virtual threads waiting for them
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(120);
+            for(Thread thread: threads) {
+                assertTrue(thread.join(Duration.ofNanos(Math.max(1, deadline - System.nanoTime()))),
+                        "Virtual threads still blocked: their carriers are pinned");
+            }
+            config.flush();
+        }
+        finally {
+            System.setOut(console);
+        }
+
+        String output = captured.toString(StandardCharsets.UTF_8);
+        assertFalse(output.contains("<== monitors"), () -> "Pinned virtual thread:\n" + output.substring(output.indexOf("<== monitors")));
+        assertEquals(THREADS * ENTRIES, output.lines().filter(line -> line.matches("v\\d+ \\d+")).count());
+        try(Stream<String> lines = Files.lines(log)) {
+            assertEquals(THREADS * ENTRIES, lines.filter(line -> line.matches("v\\d+ \\d+")).count());
+        }
+    }
+}